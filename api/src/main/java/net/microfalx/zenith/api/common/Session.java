@@ -38,6 +38,14 @@ public class Session extends NamedIdentityAware<String> implements Serializable
     public static final String NAMESPACE_CAPABILITY = "sessionNamespace";
     public static final String CATEGORY_CAPABILITY = "sessionCategory";
     public static final String TAGS_CAPABILITY = "sessionTags";
+    public static final String NODE_CAPABILITY = "sessionNode";
+    public static final String RECORDING_CAPABILITY = "sessionRecording";
+
+    /**
+     * The path (relative to the hub or node) used by clients to report that a session failed, which decides whether
+     * the recording of a session is kept.
+     */
+    public static final String FAILED_PATH = "/session/{sessionId}/zenith/failed";
 
     public static final String DEFAULT_PROJECT = "Default";
 
@@ -46,7 +46,7 @@ public class Hub extends NamedIdentityAware<String> implements Serializable {
      * @return a non-null instance
      */
     public URI getUri() {
-        return URI.create("http://" + Server.get().getHostname() + ":" + port);
+        return URI.create("http://" + server.getHostname() + ":" + port);
     }
 
     /**
@@ -0,0 +1,46 @@
+package net.microfalx.zenith.api.hub;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToDoubleFunction;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Selects a hub among the hubs which are alive, preferring the least loaded ones.
+ * <p>
+ * The selection picks two hubs at random and keeps the one with the lower load. Nodes and clients which select a hub
+ * at the same time (for example, after a hub goes away) spread across the remaining hubs, instead of all moving to
+ * the hub which happened to be the least loaded.
+ */
+public final class HubSelector {
+
+    private HubSelector() {
+    }
+
+    /**
+     * Selects a hub.
+     *
+     * @param candidates the hubs which are alive
+     * @param load       a function which returns the load of a hub (lower is better)
+     * @param <T>        the type of the hub
+     * @return the selected hub, empty if there are no candidates
+     */
+    public static <T> Optional<T> select(Collection<T> candidates, ToDoubleFunction<T> load) {
+        requireNonNull(candidates);
+        requireNonNull(load);
+        if (candidates.isEmpty()) return Optional.empty();
+        List<T> hubs = new ArrayList<>(candidates);
+        if (hubs.size() == 1) return Optional.of(hubs.get(0));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(hubs.size());
+        int second = random.nextInt(hubs.size() - 1);
+        if (second >= first) second++;
+        T firstHub = hubs.get(first);
+        T secondHub = hubs.get(second);
+        return Optional.of(load.applyAsDouble(secondHub) < load.applyAsDouble(firstHub) ? secondHub : firstHub);
+    }
+}
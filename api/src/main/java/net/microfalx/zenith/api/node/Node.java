@@ -75,16 +75,16 @@ public class Node extends NamedIdentityAware<String> implements Serializable {
     }
 
     /**
-     * Returns the URI to the Selenium HUB.
+     * Returns the URI to the Selenium Node.
      *
      * @return a non-null instance
      */
     public URI getUri() {
-        return URI.create("http://" + Server.get().getHostname() + ":" + port);
+        return URI.create("http://" + server.getHostname() + ":" + port);
     }
 
     /**
-     * Returns the URI which can give the status of the HUB.
+     * Returns the URI which can give the status of the Node.
      *
      * @return a non-null instance
      */
@@ -98,6 +98,27 @@ public class Node extends NamedIdentityAware<String> implements Serializable {
         DOWN
     }
 
+    /**
+     * Whether a node accepts new sessions, decided by the node based on its resource usage.
+     */
+    public enum Admission {
+
+        /**
+         * The node accepts new sessions.
+         */
+        ACCEPTING,
+
+        /**
+         * The node is under pressure, new sessions should go to other nodes.
+         */
+        THROTTLED,
+
+        /**
+         * The node is overloaded, new sessions should go to other nodes until the running sessions complete.
+         */
+        DRAINING
+    }
+
     public static class Builder extends NamedIdentityAware.Builder<String> {
 
         private final Server server;
@@ -0,0 +1,105 @@
+package net.microfalx.zenith.base;
+
+import net.microfalx.zenith.api.common.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * A named lease, stored in the database ({@code zenith_lease}), which elects a single process (hub or node) to
+ * execute a task.
+ * <p>
+ * The holder renews the lease by calling {@link #acquire()} periodically; if it stops doing so, another process
+ * takes over once the lease expires.
+ */
+public final class Lease {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Lease.class);
+
+    private static final String OWNER = Server.get().getHostname() + "/" + ProcessHandle.current().pid();
+
+    private static final String ACQUIRE_SQL = "INSERT INTO zenith_lease (name, owner, expires_at) "
+            + "VALUES (?, ?, DATE_ADD(NOW(), INTERVAL ? SECOND)) ON DUPLICATE KEY UPDATE "
+            + "owner = IF(owner = VALUES(owner) OR expires_at < NOW(), VALUES(owner), owner), "
+            + "expires_at = IF(owner = VALUES(owner), VALUES(expires_at), expires_at)";
+    private static final String SELECT_SQL = "SELECT owner FROM zenith_lease WHERE name = ?";
+    private static final String RELEASE_SQL = "DELETE FROM zenith_lease WHERE name = ? AND owner = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String name;
+    private final Duration duration;
+
+    private volatile boolean held;
+
+    public Lease(JdbcTemplate jdbcTemplate, String name, Duration duration) {
+        requireNonNull(jdbcTemplate);
+        requireNonNull(name);
+        requireNonNull(duration);
+        this.jdbcTemplate = jdbcTemplate;
+        this.name = name;
+        this.duration = duration;
+    }
+
+    /**
+     * Returns the name of the lease.
+     *
+     * @return a non-null instance
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns whether the lease was held by this process after the last call to {@link #acquire()}.
+     *
+     * @return {@code true} if held, {@code false} otherwise
+     */
+    public boolean isHeld() {
+        return held;
+    }
+
+    /**
+     * Acquires (or renews) the lease.
+     *
+     * @return {@code true} if this process holds the lease, {@code false} otherwise
+     */
+    public boolean acquire() {
+        boolean held;
+        try {
+            jdbcTemplate.update(ACQUIRE_SQL, name, OWNER, duration.toSeconds());
+            List<String> owners = jdbcTemplate.queryForList(SELECT_SQL, String.class, name);
+            held = owners.size() == 1 && OWNER.equals(owners.get(0));
+        } catch (Exception e) {
+            LOGGER.warn("Failed to acquire lease '" + name + "', root cause: " + e.getMessage());
+            held = false;
+        }
+        if (held != this.held) {
+            LOGGER.info("Lease '{}' {} by {}", name, held ? "acquired" : "lost", OWNER);
+        }
+        this.held = held;
+        return held;
+    }
+
+    /**
+     * Releases the lease, if held by this process.
+     */
+    public void release() {
+        if (!held) return;
+        held = false;
+        try {
+            jdbcTemplate.update(RELEASE_SQL, name, OWNER);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to release lease '" + name + "', root cause: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Lease{name='" + name + "', owner='" + OWNER + "', held=" + held + '}';
+    }
+}
@@ -14,6 +14,7 @@ import java.io.File;
 public class ZenithUtils {
 
     public static final String DIRECTORY_NAME = ".zenith";
+    public static final String SESSION_DIRECTORY_NAME = "selenium_session";
     public static Metrics ZENITH_METRICS=Metrics.of("Zenith");
 
     /**
@@ -35,6 +36,15 @@ public class ZenithUtils {
         return SharedResource.directory("zenith");
     }
 
+    /**
+     * Returns a directory (shared between hubs and nodes) which stores the artifacts of sessions.
+     *
+     * @return a non-null instance
+     */
+    public static Resource getSessionStorage() {
+        return SharedResource.directory(SESSION_DIRECTORY_NAME);
+    }
+
     /**
      * Parses the node state from its string representation (based on Selenium Rest API response).
      *
@@ -0,0 +1,26 @@
+package net.microfalx.zenith.base.archive;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties("zenith.retention")
+@Getter
+@Setter
+@ToString
+public class RetentionProperties {
+
+    private boolean enabled = true;
+    private Duration maxAge = Duration.ofDays(7);
+    private DataSize maxSize = DataSize.ofGigabytes(20);
+    private Duration interval = Duration.ofHours(1);
+    private Duration compactAfter = Duration.ofDays(1);
+    private int maxFrames = 60;
+    private int maxDeletesPerSecond = 100;
+}
@@ -0,0 +1,257 @@
+package net.microfalx.zenith.base.archive;
+
+import com.google.common.util.concurrent.RateLimiter;
+import net.microfalx.metrics.Metrics;
+import net.microfalx.resource.FileResource;
+import net.microfalx.zenith.base.Lease;
+import net.microfalx.zenith.base.ZenithUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.lang.System.currentTimeMillis;
+import static net.microfalx.lang.TimeUtils.millisSince;
+
+/**
+ * Applies the retention policy to the session storage (see {@link SessionArchive}).
+ * <p>
+ * The storage is shared between all processes, so only the process which holds the retention lease does the work.
+ * Whole day directories are deleted when they are older than the maximum age or when the storage exceeds the
+ * maximum size (oldest first), and archives of successful sessions are compacted (recordings are downsampled to a
+ * time-lapse, see {@link SessionArchive#compact(int)}).
+ * <p>
+ * The size of a day directory is calculated once, when the day is first seen (or after it is compacted); only the
+ * current day is measured again on every run. Files are deleted at a limited rate, to keep the I/O on the shared
+ * volume low.
+ */
+@Service
+public class RetentionService implements ApplicationListener<ApplicationStartedEvent>, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetentionService.class);
+
+    private static final Metrics METRICS = ZenithUtils.ZENITH_METRICS.withGroup("Retention");
+
+    private static final String LEASE_NAME = "retention";
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(5);
+    private static final Duration CHECK_INTERVAL = Duration.ofMinutes(1);
+    private static final String COMPACTED_MARKER = ".compacted";
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private static final String SELECT_SUCCESSFUL_SQL = "SELECT natural_id FROM zenith_session WHERE status = 'SUCCESSFUL' "
+            + "AND started_at >= ? AND started_at < ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private RetentionProperties properties = new RetentionProperties();
+
+    private final Map<LocalDate, Day> days = new ConcurrentHashMap<>();
+    private volatile Lease lease;
+    private volatile RateLimiter rateLimiter;
+    private volatile long lastRun;
+
+    /**
+     * Returns the size of the session storage, as of the last run.
+     *
+     * @return the size in bytes
+     */
+    public long getSize() {
+        return days.values().stream().mapToLong(day -> day.size).sum();
+    }
+
+    /**
+     * Returns the number of days available in the session storage, as of the last run.
+     *
+     * @return a positive integer
+     */
+    public int getDayCount() {
+        return days.size();
+    }
+
+    /**
+     * Returns whether this process applies the retention policy.
+     *
+     * @return {@code true} if this process holds the lease, {@code false} otherwise
+     */
+    public boolean isLeader() {
+        return lease != null && lease.isHeld();
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationStartedEvent event) {
+        if (!properties.isEnabled()) {
+            LOGGER.info("Retention of session storage is disabled");
+            return;
+        }
+        lease = new Lease(jdbcTemplate, LEASE_NAME, LEASE_DURATION);
+        rateLimiter = RateLimiter.create(properties.getMaxDeletesPerSecond());
+        taskScheduler.scheduleWithFixedDelay(new RetentionWorker(), CHECK_INTERVAL);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (lease != null) lease.release();
+    }
+
+    private void apply(Path root) throws IOException {
+        LocalDate today = LocalDate.now();
+        refresh(root, today);
+        LocalDate oldest = today.minusDays(Math.max(1, properties.getMaxAge().toDays()));
+        long maxSize = properties.getMaxSize().toBytes();
+        long size = getSize();
+        for (Day day : new TreeMap<>(days).values()) {
+            if (!day.date.isBefore(today)) break;
+            if (day.date.isBefore(oldest)) {
+                LOGGER.info("Delete sessions of {}, older than {}", day.date, properties.getMaxAge());
+            } else if (size > maxSize) {
+                LOGGER.info("Delete sessions of {}, storage size {} exceeds {}", day.date, size, properties.getMaxSize());
+            } else {
+                break;
+            }
+            delete(day);
+            size -= day.size;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (Day day : new TreeMap<>(days).values()) {
+            if (now.isBefore(day.date.plusDays(1).atStartOfDay().plus(properties.getCompactAfter()))) break;
+            if (!day.compacted) compact(day);
+        }
+    }
+
+    private void refresh(Path root, LocalDate today) throws IOException {
+        Set<LocalDate> existing = new HashSet<>();
+        try (Stream<Path> stream = Files.list(root)) {
+            for (Path path : (Iterable<Path>) stream::iterator) {
+                LocalDate date = parseDay(path);
+                if (date == null || !Files.isDirectory(path)) continue;
+                existing.add(date);
+                Day day = days.get(date);
+                if (day == null || !day.date.isBefore(today)) {
+                    day = new Day(date, path);
+                    day.measure();
+                    days.put(date, day);
+                }
+            }
+        }
+        days.keySet().retainAll(existing);
+    }
+
+    private void delete(Day day) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> stream = Files.walk(day.path)) {
+            paths = stream.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path path : paths) {
+            rateLimiter.acquire();
+            Files.deleteIfExists(path);
+            METRICS.count("Deleted Files");
+        }
+        days.remove(day.date);
+        METRICS.count("Deleted Days");
+    }
+
+    private void compact(Day day) throws IOException {
+        List<String> successful = jdbcTemplate.queryForList(SELECT_SUCCESSFUL_SQL, String.class,
+                Timestamp.valueOf(day.date.atStartOfDay()), Timestamp.valueOf(day.date.plusDays(1).atStartOfDay()));
+        for (String sessionId : successful) {
+            Path path = day.path.resolve(sessionId + SessionArchive.EXTENSION);
+            if (!Files.exists(path)) continue;
+            rateLimiter.acquire();
+            try {
+                SessionArchive archive = new SessionArchive(FileResource.file(path.toFile()));
+                if (archive.compact(properties.getMaxFrames())) METRICS.count("Compacted Sessions");
+            } catch (IOException e) {
+                LOGGER.warn("Failed to compact session " + sessionId + " from " + day.date + ", root cause: " + e.getMessage());
+            }
+        }
+        Files.createFile(day.path.resolve(COMPACTED_MARKER));
+        day.measure();
+    }
+
+    private static LocalDate parseDay(Path path) {
+        try {
+            return LocalDate.parse(path.getFileName().toString(), DAY_FORMATTER);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Path getRoot() {
+        URI uri = ZenithUtils.getSessionStorage().toURI();
+        if (!"file".equalsIgnoreCase(uri.getScheme())) return null;
+        Path root = Paths.get(uri);
+        return Files.isDirectory(root) ? root : null;
+    }
+
+    private static class Day {
+
+        private final LocalDate date;
+        private final Path path;
+        private volatile long size;
+        private volatile boolean compacted;
+
+        private Day(LocalDate date, Path path) {
+            this.date = date;
+            this.path = path;
+        }
+
+        private void measure() throws IOException {
+            compacted = Files.exists(path.resolve(COMPACTED_MARKER));
+            try (Stream<Path> stream = Files.walk(path)) {
+                size = stream.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+            }
+        }
+    }
+
+    private class RetentionWorker implements Runnable {
+
+        @Override
+        public void run() {
+            if (!lease.acquire()) return;
+            if (millisSince(lastRun) < properties.getInterval().toMillis()) return;
+            lastRun = currentTimeMillis();
+            Path root = getRoot();
+            if (root == null) {
+                LOGGER.debug("Session storage is not available on a local (or mounted) file system, retention skipped");
+                return;
+            }
+            try {
+                METRICS.time("Apply", (t) -> {
+                    try {
+                        apply(root);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (Exception e) {
+                LOGGER.error("Failed to apply retention to " + root, e);
+            }
+        }
+    }
+}
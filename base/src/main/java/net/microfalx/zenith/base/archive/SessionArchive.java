@@ -0,0 +1,615 @@
+package net.microfalx.zenith.base.archive;
+
+import net.microfalx.resource.Resource;
+import net.microfalx.zenith.api.common.Log;
+import net.microfalx.zenith.base.ZenithUtils;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.zip.*;
+
+import static java.util.Collections.unmodifiableCollection;
+import static net.microfalx.lang.ArgumentUtils.requireBounded;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * A single file which holds all the artifacts (logs, the last screenshot & recordings) of a session.
+ * <p>
+ * The archive is a ZIP file: logs are compressed while they are streamed into the archive, screenshots and video
+ * streams (already compressed images) are stored as they are ({@link ZipEntry#STORED}). Entries are only appended, an archive is never rewritten. The
+ * central directory of the archive is the index, which allows a single log or screenshot to be read without
+ * unpacking the whole archive.
+ * <p>
+ * Archives are stored under the session storage, in a directory per day ({@code yyyy-MM-dd/[session].zip}).
+ */
+public final class SessionArchive {
+
+    public static final String EXTENSION = ".zip";
+    public static final String LOG_PREFIX = "logs/";
+    public static final String SCREENSHOT_PREFIX = "screenshots/";
+    public static final String RECORDING_PREFIX = "recordings/";
+    public static final String INDEX_EXTENSION = ".idx";
+
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LOOKUP_DAYS = 31;
+
+    private final Resource resource;
+
+    /**
+     * Returns the archive of a session, created (or to be created) in a given day.
+     *
+     * @param sessionId the session identifier
+     * @param day       the day when the session was created
+     * @return a non-null instance
+     */
+    public static SessionArchive get(String sessionId, LocalDate day) {
+        requireNonNull(sessionId);
+        requireNonNull(day);
+        Resource directory = ZenithUtils.getSessionStorage().resolve(DAY_FORMATTER.format(day), Resource.Type.DIRECTORY);
+        return new SessionArchive(directory.resolve(sessionId + EXTENSION, Resource.Type.FILE));
+    }
+
+    /**
+     * Locates the archive of a session, looking in the most recent days first.
+     *
+     * @param sessionId the session identifier
+     * @return the archive, empty if the session has no archive
+     */
+    public static Optional<SessionArchive> find(String sessionId) {
+        requireNonNull(sessionId);
+        LocalDate day = LocalDate.now();
+        for (int i = 0; i < MAX_LOOKUP_DAYS; i++) {
+            SessionArchive archive = get(sessionId, day.minusDays(i));
+            if (archive.exists()) return Optional.of(archive);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the name of the log entry which stores a given type of log.
+     * <p>
+     * Only the summary (the lifecycle of the session recorded by the node) is archived, the browser and driver logs
+     * are not captured by the node.
+     *
+     * @param type the type of log
+     * @return the name, null if the log type is not archived
+     */
+    public static String getLogName(Log.Type type) {
+        requireNonNull(type);
+        return type == Log.Type.ALL ? "session.log" : null;
+    }
+
+    public SessionArchive(Resource resource) {
+        requireNonNull(resource);
+        this.resource = resource;
+    }
+
+    /**
+     * Returns the resource which stores the archive.
+     *
+     * @return a non-null instance
+     */
+    public Resource getResource() {
+        return resource;
+    }
+
+    /**
+     * Returns whether the archive was created.
+     *
+     * @return {@code true} if the archive exists, {@code false} otherwise
+     */
+    public boolean exists() {
+        try {
+            return resource.exists();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates a writer, which replaces the current content of the archive.
+     *
+     * @return a non-null instance
+     * @throws IOException if an I/O error occurs
+     */
+    public Writer create() throws IOException {
+        return new Writer(resource.getOutputStream());
+    }
+
+    /**
+     * Returns the entries available in the archive.
+     *
+     * @return a non-null instance
+     * @throws IOException if an I/O error occurs
+     */
+    public Collection<Entry> getEntries() throws IOException {
+        Collection<Entry> entries = new ArrayList<>();
+        File file = getFile();
+        if (file != null) {
+            try (ZipFile zipFile = new ZipFile(file)) {
+                zipFile.stream().forEach(zipEntry -> entries.add(new Entry(zipEntry)));
+            }
+        } else {
+            try (ZipInputStream inputStream = new ZipInputStream(new BufferedInputStream(resource.getInputStream(), BUFFER_SIZE))) {
+                ZipEntry zipEntry;
+                while ((zipEntry = inputStream.getNextEntry()) != null) {
+                    entries.add(new Entry(zipEntry));
+                }
+            }
+        }
+        return unmodifiableCollection(entries);
+    }
+
+    /**
+     * Returns the content of a log.
+     *
+     * @param name the name of the log
+     * @return the log, empty if the archive does not contain such a log
+     * @throws IOException if an I/O error occurs
+     */
+    public Optional<String> getLog(String name) throws IOException {
+        requireNonNull(name);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (!copyEntry(LOG_PREFIX + name, outputStream)) return Optional.empty();
+        return Optional.of(outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the content of a screenshot.
+     *
+     * @param name the name of the screenshot
+     * @return the image, empty if the archive does not contain such a screenshot
+     * @throws IOException if an I/O error occurs
+     */
+    public Optional<byte[]> getScreenshot(String name) throws IOException {
+        requireNonNull(name);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (!copyEntry(SCREENSHOT_PREFIX + name, outputStream)) return Optional.empty();
+        return Optional.of(outputStream.toByteArray());
+    }
+
+    /**
+     * Returns the content of the last screenshot (the screenshots are stored in the order they were captured).
+     *
+     * @return the image, empty if the archive has no screenshots
+     * @throws IOException if an I/O error occurs
+     */
+    public Optional<byte[]> getLastScreenshot() throws IOException {
+        Entry last = null;
+        for (Entry entry : getEntries()) {
+            if (entry.getType() == Entry.Type.SCREENSHOT) last = entry;
+        }
+        return last != null ? getScreenshot(last.getName()) : Optional.empty();
+    }
+
+    /**
+     * Copies the content of an entry.
+     *
+     * @param path         the path of the entry within the archive
+     * @param outputStream the stream which receives the content
+     * @return {@code true} if the entry exists, {@code false} otherwise
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean copyEntry(String path, OutputStream outputStream) throws IOException {
+        requireNonNull(path);
+        requireNonNull(outputStream);
+        File file = getFile();
+        if (file != null) {
+            try (ZipFile zipFile = new ZipFile(file)) {
+                ZipEntry zipEntry = zipFile.getEntry(path);
+                if (zipEntry == null) return false;
+                try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+                    inputStream.transferTo(outputStream);
+                }
+                return true;
+            }
+        } else {
+            try (ZipInputStream inputStream = new ZipInputStream(new BufferedInputStream(resource.getInputStream(), BUFFER_SIZE))) {
+                ZipEntry zipEntry;
+                while ((zipEntry = inputStream.getNextEntry()) != null) {
+                    if (zipEntry.getName().equals(path)) {
+                        inputStream.transferTo(outputStream);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reduces the number of frames of the video streams stored in the archive, keeping frames evenly spaced in time
+     * (the first and the last frame are always kept), so a session keeps a time-lapse instead of the whole video.
+     * Logs and screenshots are preserved.
+     * <p>
+     * A video stream can be compacted only if it has an index ({@code .idx}, one frame per line with the time,
+     * offset and length). The archive is rewritten into a temporary file, which replaces the archive atomically.
+     *
+     * @param maxFrames the maximum number of frames to keep for each video stream
+     * @return {@code true} if the archive was compacted, {@code false} if there was nothing to compact
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean compact(int maxFrames) throws IOException {
+        requireBounded(maxFrames, 1, Integer.MAX_VALUE);
+        File file = getFile();
+        if (file == null || !file.exists()) return false;
+        File temporaryFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (ZipFile zipFile = new ZipFile(file)) {
+            Map<String, List<Frame>> videos = new HashMap<>();
+            for (ZipEntry zipEntry : Collections.list(zipFile.entries())) {
+                if (!isStoredRecording(zipEntry.getName())) continue;
+                ZipEntry indexEntry = zipFile.getEntry(getIndexPath(zipEntry.getName()));
+                if (indexEntry == null) continue;
+                List<Frame> frames = readIndex(zipFile, indexEntry);
+                if (frames.size() > maxFrames) videos.put(zipEntry.getName(), selectFrames(frames, maxFrames));
+            }
+            if (videos.isEmpty()) return false;
+            Map<String, String> indexes = new HashMap<>();
+            videos.keySet().forEach(path -> indexes.put(getIndexPath(path), path));
+            try (Writer writer = new Writer(new FileOutputStream(temporaryFile))) {
+                for (ZipEntry zipEntry : Collections.list(zipFile.entries())) {
+                    String path = zipEntry.getName();
+                    if (videos.containsKey(path)) {
+                        writer.addFrames(path, videos.get(path), () -> zipFile.getInputStream(zipEntry));
+                    } else if (indexes.containsKey(path)) {
+                        writer.addDeflated(path, new ByteArrayInputStream(writeIndex(videos.get(indexes.get(path)))));
+                    } else {
+                        try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+                            writer.copyEntry(zipEntry, inputStream);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryFile.toPath());
+            throw e;
+        }
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return resource.toString();
+    }
+
+    private static boolean isStoredRecording(String path) {
+        return path.startsWith(RECORDING_PREFIX) && path.endsWith(Writer.STORED_RECORDING_EXTENSION);
+    }
+
+    private static String getIndexPath(String videoPath) {
+        return videoPath.substring(0, videoPath.length() - Writer.STORED_RECORDING_EXTENSION.length()) + INDEX_EXTENSION;
+    }
+
+    private static List<Frame> readIndex(ZipFile zipFile, ZipEntry indexEntry) throws IOException {
+        List<Frame> frames = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(indexEntry), StandardCharsets.US_ASCII))) {
+            String line;
+            long position = 0;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                String[] parts = line.trim().split(" ");
+                try {
+                    Frame frame = new Frame(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+                    if (frame.offset < position) throw new IOException("Frames are not ordered in " + indexEntry.getName());
+                    position = frame.offset + frame.length;
+                    frames.add(frame);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("Invalid frame '" + line + "' in " + indexEntry.getName());
+                }
+            }
+        }
+        return frames;
+    }
+
+    private static List<Frame> selectFrames(List<Frame> frames, int maxFrames) {
+        List<Frame> selected = new ArrayList<>(maxFrames);
+        for (int i = 0; i < maxFrames; i++) {
+            int index = maxFrames == 1 ? frames.size() - 1 : (int) Math.round((double) i * (frames.size() - 1) / (maxFrames - 1));
+            selected.add(frames.get(index));
+        }
+        return selected;
+    }
+
+    private static byte[] writeIndex(List<Frame> frames) {
+        StringBuilder builder = new StringBuilder();
+        long offset = 0;
+        for (Frame frame : frames) {
+            builder.append(frame.time).append(' ').append(offset).append(' ').append(frame.length).append('\n');
+            offset += frame.length;
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void copyFrames(InputStream inputStream, List<Frame> frames, OutputStream outputStream) throws IOException {
+        long position = 0;
+        for (Frame frame : frames) {
+            inputStream.skipNBytes(frame.offset - position);
+            byte[] data = inputStream.readNBytes(frame.length);
+            if (data.length != frame.length) throw new EOFException("Frame at " + frame.offset + " is truncated");
+            outputStream.write(data);
+            position = frame.offset + frame.length;
+        }
+    }
+
+    private File getFile() {
+        URI uri = resource.toURI();
+        return "file".equalsIgnoreCase(uri.getScheme()) ? new File(uri) : null;
+    }
+
+    /**
+     * Appends entries to an archive.
+     */
+    public static final class Writer implements Closeable {
+
+        private static final String STORED_RECORDING_EXTENSION = ".mjpeg";
+
+        private final ZipOutputStream outputStream;
+        private final Set<String> names = new HashSet<>();
+
+        private Writer(OutputStream outputStream) {
+            this.outputStream = new ZipOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Appends a log, compressed while it is written.
+         * <p>
+         * The text is encoded in chunks, without creating a copy of the whole log.
+         *
+         * @param name the name of the log
+         * @param text the text
+         * @return self
+         * @throws IOException if an I/O error occurs
+         */
+        public Writer addLog(String name, CharSequence text) throws IOException {
+            requireNonNull(name);
+            if (text == null || text.length() == 0) return this;
+            startEntry(new ZipEntry(LOG_PREFIX + name));
+            OutputStreamWriter writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            for (int start = 0; start < text.length(); start += BUFFER_SIZE) {
+                writer.append(text, start, Math.min(text.length(), start + BUFFER_SIZE));
+            }
+            writer.flush();
+            outputStream.closeEntry();
+            return this;
+        }
+
+        /**
+         * Appends a screenshot, stored as it is.
+         *
+         * @param name the name of the screenshot
+         * @param data the image
+         * @return self
+         * @throws IOException if an I/O error occurs
+         */
+        public Writer addScreenshot(String name, byte[] data) throws IOException {
+            requireNonNull(name);
+            requireNonNull(data);
+            addStored(SCREENSHOT_PREFIX + name, data);
+            return this;
+        }
+
+        /**
+         * Appends a recording (or its index).
+         * <p>
+         * Video streams ({@code .mjpeg}) are stored as they are, anything else is compressed.
+         *
+         * @param name the name of the recording
+         * @param data the content
+         * @return self
+         * @throws IOException if an I/O error occurs
+         */
+        public Writer addRecording(String name, byte[] data) throws IOException {
+            requireNonNull(name);
+            requireNonNull(data);
+            String path = RECORDING_PREFIX + name;
+            if (isStoredRecording(path)) {
+                addStored(path, data);
+            } else {
+                addDeflated(path, new ByteArrayInputStream(data));
+            }
+            return this;
+        }
+
+        /**
+         * Appends a recording (or its index) from a file.
+         * <p>
+         * Video streams ({@code .mjpeg}) are stored as they are (the file is read twice, once to calculate the
+         * checksum), anything else is compressed.
+         *
+         * @param name the name of the recording
+         * @param file the content
+         * @return self
+         * @throws IOException if an I/O error occurs
+         */
+        public Writer addRecording(String name, File file) throws IOException {
+            requireNonNull(name);
+            requireNonNull(file);
+            String path = RECORDING_PREFIX + name;
+            boolean stored = isStoredRecording(path);
+            long crc = stored ? getCrc(file) : 0;
+            try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+                if (stored) {
+                    addStored(path, file.length(), crc, inputStream);
+                } else {
+                    addDeflated(path, inputStream);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Copies an entry of another archive, with the same compression method.
+         */
+        private void copyEntry(ZipEntry zipEntry, InputStream inputStream) throws IOException {
+            if (zipEntry.getMethod() == ZipEntry.STORED) {
+                addStored(zipEntry.getName(), zipEntry.getSize(), zipEntry.getCrc(), inputStream);
+            } else {
+                addDeflated(zipEntry.getName(), inputStream);
+            }
+        }
+
+        /**
+         * Appends a video stream made of frames of another video stream, stored as it is.
+         * <p>
+         * The source is read twice, once to calculate the checksum.
+         */
+        private void addFrames(String path, List<Frame> frames, Source source) throws IOException {
+            CRC32 crc = new CRC32();
+            try (InputStream inputStream = source.open()) {
+                copyFrames(inputStream, frames, new CheckedOutputStream(OutputStream.nullOutputStream(), crc));
+            }
+            long size = frames.stream().mapToLong(frame -> frame.length).sum();
+            startEntry(createStoredEntry(path, size, crc.getValue()));
+            try (InputStream inputStream = source.open()) {
+                copyFrames(inputStream, frames, outputStream);
+            }
+            outputStream.closeEntry();
+        }
+
+        private void addStored(String path, byte[] data) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            addStored(path, data.length, crc.getValue(), new ByteArrayInputStream(data));
+        }
+
+        private void addStored(String path, long size, long crc, InputStream inputStream) throws IOException {
+            startEntry(createStoredEntry(path, size, crc));
+            inputStream.transferTo(outputStream);
+            outputStream.closeEntry();
+        }
+
+        private static ZipEntry createStoredEntry(String path, long size, long crc) {
+            ZipEntry zipEntry = new ZipEntry(path);
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(size);
+            zipEntry.setCompressedSize(size);
+            zipEntry.setCrc(crc);
+            return zipEntry;
+        }
+
+        private void addDeflated(String path, InputStream inputStream) throws IOException {
+            startEntry(new ZipEntry(path));
+            inputStream.transferTo(outputStream);
+            outputStream.closeEntry();
+        }
+
+        private static long getCrc(File file) throws IOException {
+            CRC32 crc = new CRC32();
+            try (InputStream inputStream = new CheckedInputStream(new FileInputStream(file), crc)) {
+                inputStream.transferTo(OutputStream.nullOutputStream());
+            }
+            return crc.getValue();
+        }
+
+        @Override
+        public void close() throws IOException {
+            outputStream.close();
+        }
+
+        private void startEntry(ZipEntry zipEntry) throws IOException {
+            if (!names.add(zipEntry.getName())) {
+                throw new IOException("An entry with name '" + zipEntry.getName() + "' already exists");
+            }
+            outputStream.putNextEntry(zipEntry);
+        }
+    }
+
+    /**
+     * Opens (again) the content of an entry.
+     */
+    private interface Source {
+
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * A frame of a video stream, as described by its index.
+     */
+    private static final class Frame {
+
+        private final long time;
+        private final long offset;
+        private final int length;
+
+        private Frame(long time, long offset, int length) {
+            this.time = time;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * An entry in the archive.
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final Type type;
+        private final long size;
+
+        private Entry(ZipEntry zipEntry) {
+            String path = zipEntry.getName();
+            if (path.startsWith(LOG_PREFIX)) {
+                this.type = Type.LOG;
+                this.name = path.substring(LOG_PREFIX.length());
+            } else if (path.startsWith(SCREENSHOT_PREFIX)) {
+                this.type = Type.SCREENSHOT;
+                this.name = path.substring(SCREENSHOT_PREFIX.length());
+            } else if (path.startsWith(RECORDING_PREFIX)) {
+                this.type = Type.RECORDING;
+                this.name = path.substring(RECORDING_PREFIX.length());
+            } else {
+                this.type = Type.OTHER;
+                this.name = path;
+            }
+            this.size = zipEntry.getSize();
+        }
+
+        /**
+         * Returns the name of the entry (without the type prefix).
+         *
+         * @return a non-null instance
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the type of the entry.
+         *
+         * @return a non-null instance
+         */
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Returns the (uncompressed) size of the entry.
+         *
+         * @return the size in bytes, -1 if not known
+         */
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return type + ":" + name + " (" + size + ")";
+        }
+
+        public enum Type {
+            LOG,
+            SCREENSHOT,
+            RECORDING,
+            OTHER
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.microfalx.zenith.base.grid;
+
+import net.microfalx.metrics.Metrics;
+import net.microfalx.zenith.api.common.Session;
+import net.microfalx.zenith.api.node.Node;
+import net.microfalx.zenith.base.ZenithUtils;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.grid.data.NodeStatus;
+import org.openqa.selenium.grid.data.SlotId;
+import org.openqa.selenium.grid.data.SlotMatcher;
+import org.openqa.selenium.grid.distributor.selector.SlotSelector;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * A slot selector which skips the nodes which do not accept new sessions (see {@link NodeAdmissions}) and
+ * delegates the selection among the remaining nodes.
+ * <p>
+ * When no node accepts sessions, no slot is selected and the request stays in the queue until a node recovers
+ * (or the request times out).
+ * <p>
+ * A request which names a node (see {@link Session#NODE_CAPABILITY}) is only considered for that node.
+ */
+public class AdmissionSlotSelector implements SlotSelector {
+
+    private static final Metrics METRICS = ZenithUtils.ZENITH_METRICS.withGroup("Slot Selector");
+
+    private final SlotSelector delegate;
+    private final NodeAdmissions admissions;
+    private final NewSessionMetrics metrics;
+
+    public AdmissionSlotSelector(SlotSelector delegate, NodeAdmissions admissions) {
+        this(delegate, admissions, new NewSessionMetrics());
+    }
+
+    public AdmissionSlotSelector(SlotSelector delegate, NodeAdmissions admissions, NewSessionMetrics metrics) {
+        requireNonNull(delegate);
+        requireNonNull(admissions);
+        requireNonNull(metrics);
+        this.delegate = delegate;
+        this.admissions = admissions;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Set<SlotId> selectSlot(Capabilities capabilities, Set<NodeStatus> nodes, SlotMatcher slotMatcher) {
+        long startTime = System.nanoTime();
+        Set<SlotId> slots = Collections.emptySet();
+        try {
+            slots = doSelectSlot(capabilities, nodes, slotMatcher);
+            return slots;
+        } finally {
+            metrics.slotSelected(System.nanoTime() - startTime, !slots.isEmpty());
+        }
+    }
+
+    private Set<SlotId> doSelectSlot(Capabilities capabilities, Set<NodeStatus> nodes, SlotMatcher slotMatcher) {
+        String requestedNode = getRequestedNode(capabilities);
+        if (requestedNode != null) {
+            nodes = nodes.stream().filter(node -> requestedNode.equals(getNodeId(node.getExternalUri())))
+                    .collect(Collectors.toSet());
+            METRICS.count("Pinned");
+        }
+        Set<NodeStatus> accepting = nodes.stream().filter(node -> admissions.isAccepting(node.getExternalUri()))
+                .collect(Collectors.toSet());
+        if (accepting.size() < nodes.size()) {
+            METRICS.count("Throttled");
+        }
+        return delegate.selectSlot(capabilities, accepting, slotMatcher);
+    }
+
+    private String getRequestedNode(Capabilities capabilities) {
+        Object options = capabilities.getCapability(Session.CAPABILITY);
+        if (options instanceof Map<?, ?> map && map.get(Session.NODE_CAPABILITY) instanceof String node) {
+            return getNodeId(URI.create(node));
+        } else {
+            return null;
+        }
+    }
+
+    private String getNodeId(URI uri) {
+        return Node.builder(uri).build().getId();
+    }
+}
@@ -11,6 +11,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static net.microfalx.lang.ArgumentUtils.requireNonNull;
 
@@ -21,6 +22,7 @@ public class Component<T extends TemplateGridCommand> {
 
     private final Class<T> commandClass;
     private final List<String> arguments = new ArrayList<>();
+    private final List<Consumer<T>> customizers = new ArrayList<>();
 
     private PrintStream out;
     private PrintStream err;
@@ -87,11 +89,23 @@ public class Component<T extends TemplateGridCommand> {
         return this;
     }
 
+    /**
+     * Registers a callback which customizes the instance of the component, before the component is started.
+     *
+     * @param customizer the callback
+     */
+    public Component<T> customize(Consumer<T> customizer) {
+        requireNonNull(customizer);
+        this.customizers.add(customizer);
+        return this;
+    }
+
     /**
      * Starts the component.
      */
     public void start() {
         createCommand();
+        customizers.forEach(customizer -> customizer.accept(command));
         createStreams();
         CliCommand.Executable executable = command.configure(out, err, getFinalArguments());
         executable.run();
@@ -102,9 +116,19 @@ public class Component<T extends TemplateGridCommand> {
 
     /**
      * Stops the component.
+     * <p>
+     * Only components which can be closed (see {@link AutoCloseable}) are stopped, the others run until the process
+     * exits.
      */
     public void stop() {
-        // there is no stop
+        if (!(command instanceof AutoCloseable closeable)) return;
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            ExceptionUtils.throwException(e);
+        } finally {
+            command = null;
+        }
     }
 
     /**
@@ -8,6 +8,7 @@ import org.openqa.selenium.events.EventBus;
 import org.openqa.selenium.grid.config.Config;
 import org.openqa.selenium.grid.distributor.config.DistributorOptions;
 import org.openqa.selenium.grid.distributor.local.LocalDistributor;
+import org.openqa.selenium.grid.distributor.selector.SlotSelector;
 import org.openqa.selenium.grid.graphql.GraphqlHandler;
 import org.openqa.selenium.grid.log.LoggingOptions;
 import org.openqa.selenium.grid.router.ProxyWebsocketsIntoGrid;
@@ -41,6 +42,9 @@ public class Hub extends org.openqa.selenium.grid.commands.Hub {
 
     private static final Logger LOG = Logger.getLogger(Hub.class.getName());
 
+    private final HubTopology topology = new HubTopology();
+    private final NodeAdmissions admissions = new NodeAdmissions();
+    private final NewSessionMetrics newSessionMetrics = new NewSessionMetrics();
     private SessionMap sessions;
     private LocalDistributor distributor;
     private SessionManager sessionManager;
@@ -52,6 +56,7 @@ public class Hub extends org.openqa.selenium.grid.commands.Hub {
 
         EventBusOptions events = new EventBusOptions(config);
         EventBus bus = events.getEventBus();
+        topology.attach(bus);
 
         CombinedHandler handler = new CombinedHandler();
 
@@ -75,16 +80,19 @@ public class Hub extends org.openqa.selenium.grid.commands.Hub {
                         externalUrl, handler, networkOptions.getHttpClientFactory(tracer));
 
         DistributorOptions distributorOptions = new DistributorOptions(config);
+        SlotSelector slotSelector = distributorOptions.getSlotSelector();
+        if (slotSelector instanceof LoadAwareSlotSelector loadAwareSlotSelector) loadAwareSlotSelector.attach(bus);
         NewSessionQueueOptions newSessionRequestOptions = new NewSessionQueueOptions(config);
         LocalNewSessionQueue queue =
-                new LocalNewSessionQueue(
+                new MeteredSessionQueue(
                         tracer,
                         distributorOptions.getSlotMatcher(),
                         newSessionRequestOptions.getSessionRequestTimeoutPeriod(),
                         newSessionRequestOptions.getSessionRequestTimeout(),
                         newSessionRequestOptions.getMaximumResponseDelay(),
                         secret,
-                        newSessionRequestOptions.getBatchSize());
+                        newSessionRequestOptions.getBatchSize(),
+                        newSessionMetrics);
         handler.addHandler(queue);
 
         distributor =
@@ -94,7 +102,7 @@ public class Hub extends org.openqa.selenium.grid.commands.Hub {
                         clientFactory,
                         sessions,
                         queue,
-                        distributorOptions.getSlotSelector(),
+                        new AdmissionSlotSelector(slotSelector, admissions, newSessionMetrics),
                         secret,
                         distributorOptions.getHealthCheckInterval(),
                         distributorOptions.shouldRejectUnsupportedCaps(),
@@ -161,6 +169,33 @@ public class Hub extends org.openqa.selenium.grid.commands.Hub {
         };
     }
 
+    /**
+     * Returns the topology (nodes, slots, sessions) maintained from the Grid events.
+     *
+     * @return a non-null instance
+     */
+    public HubTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Returns the admissions published by nodes, used to skip nodes which do not accept sessions.
+     *
+     * @return a non-null instance
+     */
+    public NodeAdmissions getAdmissions() {
+        return admissions;
+    }
+
+    /**
+     * Returns the metrics of new session requests (queue, slot selection, node latency and outcome).
+     *
+     * @return a non-null instance
+     */
+    public NewSessionMetrics getNewSessionMetrics() {
+        return newSessionMetrics;
+    }
+
     public void setSessionManager(SessionManager sessionManager) {
         this.sessionManager = sessionManager;
         if (sessions != null) {
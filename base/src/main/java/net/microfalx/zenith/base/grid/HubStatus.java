@@ -31,6 +31,7 @@ public class HubStatus {
     private final boolean statusOnly;
 
     private boolean ready;
+    private boolean successful;
     private Collection<net.microfalx.zenith.api.node.Node> nodes = Collections.emptyList();
     private Collection<Slot> slots = Collections.emptyList();
     private Collection<Session> sessions = Collections.emptyList();
@@ -47,6 +48,15 @@ public class HubStatus {
         return ready;
     }
 
+    /**
+     * Returns whether the status was extracted from the Hub, regardless of whether the Hub is ready.
+     *
+     * @return {@code true} if the Hub answered with a status, {@code false} if the request failed
+     */
+    public boolean isSuccessful() {
+        return successful;
+    }
+
     public Collection<net.microfalx.zenith.api.node.Node> getNodes() {
         return unmodifiableCollection(nodes);
     }
@@ -74,6 +84,7 @@ public class HubStatus {
             if (response != null && response.value != null) {
                 extractStatus(response.value);
                 if (!statusOnly) extractNodes(response.value);
+                successful = true;
             } else {
                 message = "No status available";
             }
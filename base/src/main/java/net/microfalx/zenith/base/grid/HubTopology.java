@@ -0,0 +1,299 @@
+package net.microfalx.zenith.base.grid;
+
+import net.microfalx.zenith.api.common.Browser;
+import net.microfalx.zenith.api.common.Session;
+import net.microfalx.zenith.api.node.Node;
+import net.microfalx.zenith.api.node.Slot;
+import net.microfalx.zenith.base.ZenithUtils;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.events.EventBus;
+import org.openqa.selenium.grid.data.*;
+import org.openqa.selenium.remote.SessionId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Collections.unmodifiableCollection;
+import static java.util.Collections.unmodifiableMap;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Holds the nodes, slots and sessions known by the {@link Hub}.
+ * <p>
+ * The topology is updated incrementally from the events published on the Selenium {@link EventBus} and
+ * periodically reconciled with the status reported by the Hub over Rest API ({@link HubStatus}). Readers
+ * always access an immutable {@link Snapshot}, so they never block and never trigger network I/O.
+ */
+public class HubTopology {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HubTopology.class);
+
+    private final Map<String, NodeEntry> nodes = new HashMap<>();
+    private final Map<String, SlotKey> sessionSlots = new HashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean stale = true;
+    private volatile long lastReconciled;
+
+    /**
+     * Returns the latest snapshot of the topology.
+     *
+     * @return a non-null instance
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns whether the topology received events which cannot be fully applied without a reconciliation.
+     *
+     * @return {@code true} if a reconciliation is required, {@code false} otherwise
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Returns the timestamp of the last reconciliation.
+     *
+     * @return a timestamp in milliseconds, 0 if the topology was never reconciled
+     */
+    public long getLastReconciled() {
+        return lastReconciled;
+    }
+
+    /**
+     * Registers the listeners which keep the topology up to date.
+     *
+     * @param bus the event bus
+     */
+    void attach(EventBus bus) {
+        requireNonNull(bus);
+        bus.addListener(NodeAddedEvent.listener(nodeId -> stale = true));
+        bus.addListener(NodeStatusEvent.listener(this::updateNode));
+        bus.addListener(NodeRemovedEvent.listener(this::removeNode));
+        bus.addListener(SessionCreatedEvent.listener(this::addSession));
+        bus.addListener(SessionClosedEvent.listener(this::removeSession));
+    }
+
+    /**
+     * Replaces the topology with the status reported by the Hub.
+     * <p>
+     * If the status could not be extracted, the current topology is kept and stays stale, so the reconciliation
+     * is retried.
+     *
+     * @param status the status, after it was executed
+     */
+    public void reconcile(HubStatus status) {
+        requireNonNull(status);
+        if (!status.isSuccessful()) {
+            stale = true;
+            return;
+        }
+        long expectedGeneration = generation.get();
+        Map<String, NodeEntry> newNodes = new HashMap<>();
+        Map<String, SlotKey> newSessionSlots = new HashMap<>();
+        for (Node node : status.getNodes()) {
+            newNodes.put(node.getId(), new NodeEntry(node));
+        }
+        for (Slot slot : status.getSlots()) {
+            NodeEntry entry = newNodes.computeIfAbsent(slot.getNode().getId(), id -> new NodeEntry(slot.getNode()));
+            entry.slots.put(slot.getId(), slot);
+            if (slot.getSession() != null) {
+                newSessionSlots.put(slot.getSession().getId(), new SlotKey(entry.node.getId(), slot.getId()));
+            }
+        }
+        synchronized (this) {
+            nodes.clear();
+            nodes.putAll(newNodes);
+            sessionSlots.clear();
+            sessionSlots.putAll(newSessionSlots);
+            // events received while the status was extracted might not be visible in the status
+            stale = generation.get() != expectedGeneration;
+            lastReconciled = System.currentTimeMillis();
+            publish();
+        }
+    }
+
+    private synchronized void updateNode(NodeStatus nodeStatus) {
+        Node node = from(nodeStatus);
+        NodeEntry entry = new NodeEntry(node);
+        entry.nodeId = nodeStatus.getNodeId();
+        sessionSlots.values().removeIf(key -> key.nodeId.equals(node.getId()));
+        for (org.openqa.selenium.grid.data.Slot slot : nodeStatus.getSlots()) {
+            Slot zenithSlot = from(node, slot);
+            entry.slots.put(zenithSlot.getId(), zenithSlot);
+            if (zenithSlot.getSession() != null) {
+                sessionSlots.put(zenithSlot.getSession().getId(), new SlotKey(node.getId(), zenithSlot.getId()));
+            }
+        }
+        nodes.put(node.getId(), entry);
+        changed();
+    }
+
+    private synchronized void removeNode(NodeStatus nodeStatus) {
+        String nodeId = from(nodeStatus).getId();
+        if (nodes.remove(nodeId) != null) {
+            sessionSlots.values().removeIf(key -> key.nodeId.equals(nodeId));
+            changed();
+        }
+    }
+
+    private synchronized void addSession(SessionCreatedData data) {
+        String slotId = data.getSlotId().getSlotId().toString();
+        NodeEntry entry = findNode(data.getNodeId(), data.getUri());
+        Slot slot = entry != null ? entry.slots.get(slotId) : null;
+        if (slot == null) {
+            LOGGER.debug("Slot {} not found for session {}, topology requires reconciliation", slotId, data.getSessionId());
+            stale = true;
+            return;
+        }
+        Session session = from(entry.node, data.getSessionId(), data.getCapabilities(), data.getStartTime());
+        entry.slots.put(slotId, slot.withSession(session.withSlot(slot)));
+        sessionSlots.put(session.getId(), new SlotKey(entry.node.getId(), slotId));
+        changed();
+    }
+
+    private synchronized void removeSession(SessionId sessionId) {
+        SlotKey key = sessionSlots.remove(sessionId.toString());
+        if (key == null) return;
+        NodeEntry entry = nodes.get(key.nodeId);
+        Slot slot = entry != null ? entry.slots.get(key.slotId) : null;
+        if (slot != null) entry.slots.put(key.slotId, slot.withSession(null));
+        changed();
+    }
+
+    private NodeEntry findNode(NodeId nodeId, URI uri) {
+        for (NodeEntry entry : nodes.values()) {
+            if (nodeId.equals(entry.nodeId)) return entry;
+        }
+        return uri != null ? nodes.get(Node.builder(uri).build().getId()) : null;
+    }
+
+    private void changed() {
+        generation.incrementAndGet();
+        publish();
+    }
+
+    private void publish() {
+        Map<String, Node> newNodes = new HashMap<>();
+        Map<String, Slot> newSlots = new HashMap<>();
+        Map<String, Session> newSessions = new HashMap<>();
+        for (NodeEntry entry : nodes.values()) {
+            newNodes.put(entry.node.getId(), entry.node);
+            for (Slot slot : entry.slots.values()) {
+                newSlots.put(slot.getId(), slot);
+                if (slot.getSession() != null) newSessions.put(slot.getSession().getId(), slot.getSession());
+            }
+        }
+        snapshot = new Snapshot(newNodes, newSlots, newSessions);
+    }
+
+    static Node from(NodeStatus nodeStatus) {
+        return Node.builder(nodeStatus.getExternalUri())
+                .maxSessions(nodeStatus.getMaxSessionCount())
+                .state(ZenithUtils.parseState(nodeStatus.getAvailability().name()))
+                .build();
+    }
+
+    static Slot from(Node node, org.openqa.selenium.grid.data.Slot slot) {
+        Slot.Builder builder = Slot.builder(slot.getId().getSlotId().toString(), node);
+        if (slot.getStereotype() != null) {
+            builder.capabilities(slot.getStereotype().asMap())
+                    .browser(Browser.from(slot.getStereotype().getBrowserName()));
+        }
+        org.openqa.selenium.grid.data.Session session = slot.getSession();
+        if (session != null) {
+            builder.session(from(node, session.getId(), session.getCapabilities(), session.getStartTime()));
+        }
+        return builder.build();
+    }
+
+    static Session from(Node node, SessionId sessionId, Capabilities capabilities, Instant startTime) {
+        Session.Builder builder = Session.builder(sessionId.toString());
+        builder.status(Session.Status.RUNNING);
+        if (capabilities != null) {
+            builder.capabilities(capabilities.asMap())
+                    .browser(Browser.from(capabilities.getBrowserName()));
+        }
+        LocalDateTime startedAt = startTime != null ? LocalDateTime.ofInstant(startTime, ZoneId.systemDefault())
+                : LocalDateTime.now();
+        builder.time(startedAt, null);
+        return builder.build();
+    }
+
+    /**
+     * An immutable view of the topology.
+     */
+    public static class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+        private final Map<String, Node> nodes;
+        private final Map<String, Slot> slots;
+        private final Map<String, Session> sessions;
+
+        private Snapshot(Map<String, Node> nodes, Map<String, Slot> slots, Map<String, Session> sessions) {
+            this.nodes = unmodifiableMap(nodes);
+            this.slots = unmodifiableMap(slots);
+            this.sessions = unmodifiableMap(sessions);
+        }
+
+        public boolean isEmpty() {
+            return nodes.isEmpty();
+        }
+
+        public Collection<Node> getNodes() {
+            return unmodifiableCollection(nodes.values());
+        }
+
+        public Node getNode(String id) {
+            return nodes.get(id);
+        }
+
+        public Collection<Slot> getSlots() {
+            return unmodifiableCollection(slots.values());
+        }
+
+        public Slot getSlot(String id) {
+            return slots.get(id);
+        }
+
+        public Collection<Session> getSessions() {
+            return unmodifiableCollection(sessions.values());
+        }
+
+        public Session getSession(String id) {
+            return sessions.get(id);
+        }
+    }
+
+    private static class NodeEntry {
+
+        private final Node node;
+        private final Map<String, Slot> slots = new HashMap<>();
+        private NodeId nodeId;
+
+        private NodeEntry(Node node) {
+            this.node = node;
+        }
+    }
+
+    private static class SlotKey {
+
+        private final String nodeId;
+        private final String slotId;
+
+        private SlotKey(String nodeId, String slotId) {
+            this.nodeId = nodeId;
+            this.slotId = slotId;
+        }
+    }
+}
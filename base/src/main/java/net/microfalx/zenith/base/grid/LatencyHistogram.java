@@ -0,0 +1,85 @@
+package net.microfalx.zenith.base.grid;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations (in milliseconds) with fixed, exponential buckets.
+ * <p>
+ * Recording a value only increments counters (no allocation, no locks), so it can be used on the session
+ * creation path; percentiles are approximated by the upper bound of the bucket which holds them.
+ */
+public final class LatencyHistogram {
+
+    private static final long[] BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 20_000,
+            30_000, 60_000, 120_000, 300_000, Long.MAX_VALUE};
+
+    private final LongAdder[] counts = new LongAdder[BOUNDS.length];
+    private final LongAdder sum = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param millis the duration in milliseconds, negative values are recorded as zero
+     */
+    public void record(long millis) {
+        millis = Math.max(0, millis);
+        int index = 0;
+        while (millis > BOUNDS[index]) {
+            index++;
+        }
+        counts[index].increment();
+        sum.add(millis);
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return a positive integer
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder value : counts) {
+            count += value.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the average of the recorded durations.
+     *
+     * @return the average in milliseconds, 0 if nothing was recorded
+     */
+    public long getAverage() {
+        long count = getCount();
+        return count == 0 ? 0 : sum.sum() / count;
+    }
+
+    /**
+     * Returns an approximation of a percentile of the recorded durations.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound (in milliseconds) of the bucket which holds the percentile, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] values = new long[counts.length];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            values[i] = counts[i].sum();
+            count += values[i];
+        }
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < values.length; i++) {
+            seen += values[i];
+            if (seen >= rank && values[i] > 0) return BOUNDS[Math.min(i, BOUNDS.length - 2)];
+        }
+        return BOUNDS[BOUNDS.length - 2];
+    }
+}
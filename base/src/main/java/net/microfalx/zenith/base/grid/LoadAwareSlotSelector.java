@@ -0,0 +1,307 @@
+package net.microfalx.zenith.base.grid;
+
+import net.microfalx.lang.StringUtils;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.events.EventBus;
+import org.openqa.selenium.grid.config.Config;
+import org.openqa.selenium.grid.data.*;
+import org.openqa.selenium.grid.distributor.selector.SlotSelector;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * A slot selector which ranks nodes by their load and their recent behaviour.
+ * <p>
+ * The rank of a node combines:
+ * <ul>
+ *     <li>the load (fraction of used slots), taken from the node status at selection time</li>
+ *     <li>the recent session creation latency (moving average), relative to the fastest node</li>
+ *     <li>the recent failure rate (selections which did not end up with a session), which fades over time</li>
+ * </ul>
+ * Latency and failure rate are tracked from the Grid events and turned into a penalty per node by a background
+ * task, so the selection only reads a cached value per node. A selection is recorded against all offered nodes,
+ * since the distributor falls back to the next node when a slot cannot be reserved: the node which creates the
+ * session settles it, and a selection which ends without a session is charged to the first (preferred) node. Among nodes with the same rank, the nodes which run
+ * the requested browser version (or the most recent one, if no version was requested) come first.
+ * <p>
+ * Select it with the {@code --slot-selector} option (see {@link #create(Config)}); it needs to be attached to the
+ * event bus (see {@link #attach(EventBus)}) to track latency and failures, otherwise it ranks nodes only by load.
+ */
+public class LoadAwareSlotSelector implements SlotSelector {
+
+    private static final long REFRESH_INTERVAL = 1_000;
+    private static final double SMOOTHING = 0.2;
+
+    static final long PENDING_TIMEOUT = 60_000;
+    static final long FAILURE_HALF_LIFE = 300_000;
+
+    static final double LOAD_WEIGHT = 1.0;
+    static final double LATENCY_WEIGHT = 0.5;
+    static final double FAILURE_WEIGHT = 2.0;
+
+    private final LongSupplier clock;
+    private final Map<NodeId, Stats> stats = new ConcurrentHashMap<>();
+    private volatile Map<NodeId, Double> penalties = Collections.emptyMap();
+    private volatile ScheduledExecutorService executor;
+
+    /**
+     * Creates the selector, as required by {@code DistributorOptions}.
+     *
+     * @param config the configuration
+     * @return a non-null instance
+     */
+    public static SlotSelector create(Config config) {
+        return new LoadAwareSlotSelector();
+    }
+
+    public LoadAwareSlotSelector() {
+        this(System::currentTimeMillis);
+    }
+
+    LoadAwareSlotSelector(LongSupplier clock) {
+        requireNonNull(clock);
+        this.clock = clock;
+    }
+
+    /**
+     * Starts tracking session creation from the Grid events and the background refresh of node penalties.
+     *
+     * @param bus the event bus
+     */
+    public synchronized void attach(EventBus bus) {
+        requireNonNull(bus);
+        bus.addListener(SessionCreatedEvent.listener(data -> created(data.getSlotId().getOwningNodeId())));
+        bus.addListener(NodeRemovedEvent.listener(status -> stats.remove(status.getNodeId())));
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Zenith Slot Selector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL, REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Set<SlotId> selectSlot(Capabilities capabilities, Set<NodeStatus> nodes, SlotMatcher slotMatcher) {
+        List<Candidate> candidates = new ArrayList<>(nodes.size());
+        String requestedVersion = capabilities.getBrowserVersion();
+        Map<NodeId, Double> penalties = this.penalties;
+        for (NodeStatus node : nodes) {
+            if (!node.hasCapacity(capabilities, slotMatcher)) continue;
+            Candidate candidate = null;
+            for (Slot slot : node.getSlots()) {
+                if (slot.getSession() != null || !slotMatcher.matches(slot.getStereotype(), capabilities)) continue;
+                if (candidate == null) {
+                    double rank = LOAD_WEIGHT * node.getLoad() / 100 + penalties.getOrDefault(node.getNodeId(), 0d);
+                    candidate = new Candidate(node, rank);
+                    candidates.add(candidate);
+                }
+                candidate.add(slot, requestedVersion);
+            }
+        }
+        if (candidates.isEmpty()) return Collections.emptySet();
+        candidates.sort(null);
+        Set<SlotId> slots = new LinkedHashSet<>();
+        for (Candidate candidate : candidates) {
+            candidate.addTo(slots);
+        }
+        List<NodeId> nodeIds = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            nodeIds.add(candidate.node.getNodeId());
+        }
+        selected(nodeIds);
+        return slots;
+    }
+
+    /**
+     * Returns the penalty (latency and failures) of a node, as calculated by the last refresh.
+     *
+     * @param nodeId the node identifier
+     * @return a positive number, 0 for a healthy node
+     */
+    public double getPenalty(NodeId nodeId) {
+        requireNonNull(nodeId);
+        return penalties.getOrDefault(nodeId, 0d);
+    }
+
+    /**
+     * Records that nodes were offered for a new session.
+     *
+     * @param nodeIds the node identifiers, in order of preference
+     */
+    void selected(List<NodeId> nodeIds) {
+        requireNonNull(nodeIds);
+        if (nodeIds.isEmpty()) return;
+        Selection selection = new Selection(clock.getAsLong(), getStats(nodeIds.get(0)));
+        for (NodeId nodeId : nodeIds) {
+            getStats(nodeId).selected(selection);
+        }
+    }
+
+    /**
+     * Records that a node created a session.
+     *
+     * @param nodeId the node identifier
+     */
+    void created(NodeId nodeId) {
+        getStats(nodeId).created(clock.getAsLong());
+    }
+
+    /**
+     * Recalculates the penalty of each node.
+     */
+    void refresh() {
+        long now = clock.getAsLong();
+        double fastest = Double.MAX_VALUE;
+        for (Stats value : stats.values()) {
+            value.decay(now);
+            value.expire(now);
+            if (value.latency > 0) fastest = Math.min(fastest, value.latency);
+        }
+        Map<NodeId, Double> penalties = new HashMap<>();
+        for (Map.Entry<NodeId, Stats> entry : stats.entrySet()) {
+            Stats value = entry.getValue();
+            double latency = value.latency > 0 && fastest < Double.MAX_VALUE ? value.latency / fastest - 1 : 0;
+            double penalty = LATENCY_WEIGHT * Math.min(latency, 4) + FAILURE_WEIGHT * value.failureRate;
+            if (penalty > 0) penalties.put(entry.getKey(), penalty);
+        }
+        this.penalties = penalties;
+    }
+
+    private Stats getStats(NodeId nodeId) {
+        return stats.computeIfAbsent(nodeId, id -> new Stats(clock.getAsLong()));
+    }
+
+    private static class Stats {
+
+        private final Deque<Selection> pending = new ArrayDeque<>();
+        private volatile double latency;
+        private volatile double failureRate;
+        private long decayedAt;
+
+        private Stats(long now) {
+            this.decayedAt = now;
+        }
+
+        synchronized void selected(Selection selection) {
+            pending.addLast(selection);
+        }
+
+        synchronized void created(long now) {
+            Selection selection;
+            do {
+                selection = pending.pollFirst();
+            } while (selection != null && !selection.settle());
+            if (selection != null) {
+                long duration = now - selection.time;
+                latency = latency == 0 ? duration : latency + SMOOTHING * (duration - latency);
+            }
+            failureRate = failureRate * (1 - SMOOTHING);
+        }
+
+        synchronized void decay(long now) {
+            if (now <= decayedAt) return;
+            failureRate = failureRate * Math.pow(0.5, (double) (now - decayedAt) / FAILURE_HALF_LIFE);
+            decayedAt = now;
+        }
+
+        synchronized void expire(long now) {
+            while (!pending.isEmpty()) {
+                Selection selection = pending.peekFirst();
+                if (!selection.isSettled() && now - selection.time <= PENDING_TIMEOUT) break;
+                pending.pollFirst();
+                if (selection.preferred == this && selection.settle()) {
+                    failureRate = failureRate + SMOOTHING * (1 - failureRate);
+                }
+            }
+        }
+    }
+
+    private static class Selection {
+
+        private final long time;
+        private final Stats preferred;
+        private boolean settled;
+
+        private Selection(long time, Stats preferred) {
+            this.time = time;
+            this.preferred = preferred;
+        }
+
+        synchronized boolean isSettled() {
+            return settled;
+        }
+
+        synchronized boolean settle() {
+            if (settled) return false;
+            settled = true;
+            return true;
+        }
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+
+        private final NodeStatus node;
+        private final double rank;
+        private final List<Slot> slots = new ArrayList<>(4);
+        private boolean versionMatch;
+        private String version = StringUtils.EMPTY_STRING;
+
+        private Candidate(NodeStatus node, double rank) {
+            this.node = node;
+            this.rank = rank;
+        }
+
+        private void add(Slot slot, String requestedVersion) {
+            slots.add(slot);
+            String slotVersion = slot.getStereotype().getBrowserVersion();
+            if (StringUtils.isEmpty(slotVersion)) return;
+            if (slotVersion.equals(requestedVersion)) versionMatch = true;
+            if (compareVersions(slotVersion, version) > 0) version = slotVersion;
+        }
+
+        private void addTo(Set<SlotId> slotIds) {
+            for (Slot slot : slots) {
+                slotIds.add(slot.getId());
+            }
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int result = Double.compare(rank, other.rank);
+            if (result != 0) return result;
+            result = Boolean.compare(other.versionMatch, versionMatch);
+            if (result != 0) return result;
+            result = compareVersions(other.version, version);
+            if (result != 0) return result;
+            return node.getNodeId().toString().compareTo(other.node.getNodeId().toString());
+        }
+    }
+
+    static int compareVersions(String first, String second) {
+        String[] firstParts = first.split("\\.");
+        String[] secondParts = second.split("\\.");
+        for (int i = 0; i < Math.max(firstParts.length, secondParts.length); i++) {
+            int result = Long.compare(parseVersionPart(firstParts, i), parseVersionPart(secondParts, i));
+            if (result != 0) return result;
+        }
+        return 0;
+    }
+
+    private static long parseVersionPart(String[] parts, int index) {
+        if (index >= parts.length) return 0;
+        try {
+            return Long.parseLong(parts[index]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package net.microfalx.zenith.base.grid;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.grid.data.CreateSessionResponse;
+import org.openqa.selenium.grid.data.RequestId;
+import org.openqa.selenium.grid.data.SessionRequest;
+import org.openqa.selenium.grid.data.SlotMatcher;
+import org.openqa.selenium.grid.security.Secret;
+import org.openqa.selenium.grid.sessionqueue.local.LocalNewSessionQueue;
+import org.openqa.selenium.internal.Either;
+import org.openqa.selenium.remote.http.HttpResponse;
+import org.openqa.selenium.remote.tracing.Tracer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.System.currentTimeMillis;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * A session queue which records how requests move through the queue (see {@link NewSessionMetrics}).
+ * <p>
+ * A request counts for the queue depth from the moment it is added (or added back, after a failed attempt) until the
+ * distributor picks it, it is removed or it completes, whichever comes first.
+ */
+class MeteredSessionQueue extends LocalNewSessionQueue {
+
+    private final NewSessionMetrics metrics;
+    private final long requestTimeout;
+    private final Set<RequestId> waiting = ConcurrentHashMap.newKeySet();
+
+    MeteredSessionQueue(Tracer tracer, SlotMatcher slotMatcher, Duration requestTimeoutCheck, Duration requestTimeout,
+                        Duration maximumResponseDelay, Secret registrationSecret, int batchSize,
+                        NewSessionMetrics metrics) {
+        super(tracer, slotMatcher, requestTimeoutCheck, requestTimeout, maximumResponseDelay, registrationSecret, batchSize);
+        requireNonNull(metrics);
+        this.metrics = metrics;
+        this.requestTimeout = requestTimeout.toMillis();
+    }
+
+    @Override
+    public HttpResponse addToQueue(SessionRequest request) {
+        Capabilities capabilities = getCapabilities(request);
+        long startTime = currentTimeMillis();
+        metrics.queued(capabilities);
+        enter(request.getRequestId());
+        boolean created = false;
+        try {
+            HttpResponse response = super.addToQueue(request);
+            created = response.getStatus() == HTTP_OK;
+            return response;
+        } finally {
+            leave(request.getRequestId());
+            metrics.completed(capabilities, created, !created && currentTimeMillis() - startTime >= requestTimeout);
+        }
+    }
+
+    @Override
+    public boolean retryAddToQueue(SessionRequest request) {
+        metrics.retried();
+        boolean added = super.retryAddToQueue(request);
+        if (added) enter(request.getRequestId());
+        return added;
+    }
+
+    @Override
+    public Optional<SessionRequest> remove(RequestId reqId) {
+        leave(reqId);
+        return super.remove(reqId);
+    }
+
+    @Override
+    public List<SessionRequest> getNextAvailable(Map<Capabilities, Long> stereotypes) {
+        List<SessionRequest> requests = super.getNextAvailable(stereotypes);
+        long now = currentTimeMillis();
+        for (int i = 0; i < requests.size(); i++) {
+            SessionRequest request = requests.get(i);
+            if (leave(request.getRequestId())) metrics.dequeued(getCapabilities(request), now - request.getEnqueued().toEpochMilli());
+        }
+        return requests;
+    }
+
+    @Override
+    public boolean complete(RequestId reqId, Either<SessionNotCreatedException, CreateSessionResponse> result) {
+        metrics.sessionCompleted(result.isRight());
+        leave(reqId);
+        return super.complete(reqId, result);
+    }
+
+    private void enter(RequestId requestId) {
+        if (waiting.add(requestId)) metrics.entered();
+    }
+
+    private boolean leave(RequestId requestId) {
+        if (!waiting.remove(requestId)) return false;
+        metrics.left();
+        return true;
+    }
+
+    private static Capabilities getCapabilities(SessionRequest request) {
+        for (Capabilities capabilities : request.getDesiredCapabilities()) {
+            return capabilities;
+        }
+        return null;
+    }
+}
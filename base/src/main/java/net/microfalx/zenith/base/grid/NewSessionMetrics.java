@@ -0,0 +1,215 @@
+package net.microfalx.zenith.base.grid;
+
+import net.microfalx.lang.StringUtils;
+import net.microfalx.metrics.Metrics;
+import net.microfalx.zenith.api.common.Session;
+import net.microfalx.zenith.base.ZenithUtils;
+import org.openqa.selenium.Capabilities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Tracks how new session requests move through the hub: the queue depth, how long requests wait in the queue,
+ * how long the distributor takes to select a slot, how long nodes take to create sessions and how requests end
+ * (created, rejected or timed out), per browser and project.
+ * <p>
+ * Recording only updates counters and histograms created the first time a browser and project are seen, so the
+ * session creation path does not allocate. The counters are also published with {@link Metrics}.
+ */
+public final class NewSessionMetrics {
+
+    private static final Metrics METRICS = ZenithUtils.ZENITH_METRICS.withGroup("New Session");
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram slotSelection = new LatencyHistogram();
+    private final LatencyHistogram nodeLatency = new LatencyHistogram();
+    private final Map<String, Map<String, Outcome>> outcomes = new ConcurrentHashMap<>();
+
+    /**
+     * Holds the time when the current thread selected a slot for a new session, since the distributor selects the
+     * slot, asks the node to create the session and completes the request on the same thread.
+     * <p>
+     * The time is cleared when the selection finds no slot and when the request completes (with or without a
+     * session), so a value left by one request is never attributed to another; if the distributor ever completes
+     * requests on another thread, the node latency is not recorded instead of being recorded wrong.
+     */
+    private final ThreadLocal<long[]> slotSelectedAt = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Returns the number of requests waiting for a session.
+     *
+     * @return a positive integer
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns how long requests waited in the queue before the distributor picked them.
+     *
+     * @return a non-null instance
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Returns how long the distributor took to select a slot.
+     *
+     * @return a non-null instance
+     */
+    public LatencyHistogram getSlotSelection() {
+        return slotSelection;
+    }
+
+    /**
+     * Returns how long nodes took to create a session, after a slot was selected.
+     *
+     * @return a non-null instance
+     */
+    public LatencyHistogram getNodeLatency() {
+        return nodeLatency;
+    }
+
+    /**
+     * Returns the outcome of requests, per browser and project.
+     *
+     * @return a non-null instance
+     */
+    public Collection<Outcome> getOutcomes() {
+        Collection<Outcome> values = new ArrayList<>();
+        outcomes.values().forEach(projects -> values.addAll(projects.values()));
+        return values;
+    }
+
+    void queued(Capabilities capabilities) {
+        getOutcome(capabilities).queued.increment();
+        METRICS.count("Queued");
+    }
+
+    void dequeued(Capabilities capabilities, long waitMillis) {
+        queueWait.record(waitMillis);
+        getOutcome(capabilities).queueWait.record(waitMillis);
+    }
+
+    void entered() {
+        queueDepth.incrementAndGet();
+    }
+
+    void left() {
+        queueDepth.decrementAndGet();
+    }
+
+    void completed(Capabilities capabilities, boolean created, boolean timedOut) {
+        Outcome outcome = getOutcome(capabilities);
+        if (created) {
+            outcome.created.increment();
+            METRICS.count("Created");
+        } else if (timedOut) {
+            outcome.timedOut.increment();
+            METRICS.count(outcome.timedOutName);
+        } else {
+            outcome.rejected.increment();
+            METRICS.count(outcome.rejectedName);
+        }
+    }
+
+    void retried() {
+        METRICS.count("Retried");
+    }
+
+    void slotSelected(long durationNanos, boolean found) {
+        slotSelection.record(durationNanos / 1_000_000);
+        slotSelectedAt.get()[0] = found ? System.nanoTime() : 0;
+    }
+
+    void sessionCompleted(boolean created) {
+        long[] selectedAt = slotSelectedAt.get();
+        if (selectedAt[0] == 0) return;
+        if (created) nodeLatency.record((System.nanoTime() - selectedAt[0]) / 1_000_000);
+        selectedAt[0] = 0;
+    }
+
+    private Outcome getOutcome(Capabilities capabilities) {
+        String browser = capabilities != null ? capabilities.getBrowserName() : null;
+        String project = getProject(capabilities);
+        if (StringUtils.isEmpty(browser)) browser = StringUtils.NA_STRING;
+        String finalBrowser = browser;
+        Map<String, Outcome> projects = outcomes.get(browser);
+        if (projects == null) projects = outcomes.computeIfAbsent(browser, k -> new ConcurrentHashMap<>());
+        Outcome outcome = projects.get(project);
+        if (outcome == null) outcome = projects.computeIfAbsent(project, k -> new Outcome(finalBrowser, k));
+        return outcome;
+    }
+
+    private static String getProject(Capabilities capabilities) {
+        Object options = capabilities != null ? capabilities.getCapability(Session.CAPABILITY) : null;
+        if (options instanceof Map<?, ?> map && map.get(Session.PROJECT_CAPABILITY) instanceof String project
+                && StringUtils.isNotEmpty(project)) {
+            return project;
+        } else {
+            return Session.DEFAULT_PROJECT;
+        }
+    }
+
+    /**
+     * The outcome of new session requests for a browser and project.
+     */
+    public static final class Outcome {
+
+        private final String browser;
+        private final String project;
+        private final String rejectedName;
+        private final String timedOutName;
+        private final LongAdder queued = new LongAdder();
+        private final LongAdder created = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LatencyHistogram queueWait = new LatencyHistogram();
+
+        private Outcome(String browser, String project) {
+            requireNonNull(browser);
+            requireNonNull(project);
+            this.browser = browser;
+            this.project = project;
+            this.rejectedName = "Rejected - " + browser + " - " + project;
+            this.timedOutName = "Timed Out - " + browser + " - " + project;
+        }
+
+        public String getBrowser() {
+            return browser;
+        }
+
+        public String getProject() {
+            return project;
+        }
+
+        public long getQueued() {
+            return queued.sum();
+        }
+
+        public long getCreated() {
+            return created.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        public long getTimedOut() {
+            return timedOut.sum();
+        }
+
+        public LatencyHistogram getQueueWait() {
+            return queueWait;
+        }
+    }
+}
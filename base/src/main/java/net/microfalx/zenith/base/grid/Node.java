@@ -2,11 +2,129 @@ package net.microfalx.zenith.base.grid;
 
 import com.google.auto.service.AutoService;
 import org.openqa.selenium.cli.CliCommand;
+import org.openqa.selenium.events.EventBus;
+import org.openqa.selenium.grid.config.Config;
 import org.openqa.selenium.grid.node.httpd.NodeServer;
+import org.openqa.selenium.grid.server.BaseServerOptions;
+import org.openqa.selenium.grid.server.EventBusOptions;
+import org.openqa.selenium.grid.server.Server;
+import org.openqa.selenium.remote.http.HttpHandler;
+import org.openqa.selenium.remote.http.Routable;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
 
 @AutoService(CliCommand.class)
-public class Node extends NodeServer {
+public class Node extends NodeServer implements AutoCloseable {
+
+    private final List<Routable> routes = new CopyOnWriteArrayList<>();
+
+    private volatile EventBus bus;
+    private volatile URI uri;
+    private volatile Server<?> server;
+    private volatile Handlers handlers;
 
     public Node() {
     }
+
+    /**
+     * Returns the event bus shared with the Hub, which publishes the lifecycle of sessions (created, closed).
+     * <p>
+     * This is the bus used by the Selenium Node itself (see {@link NodeEventBus}).
+     *
+     * @return a non-null instance
+     * @throws IllegalStateException if the node was not started
+     */
+    public EventBus getBus() {
+        if (bus == null) throw new IllegalStateException("The node was not started");
+        return bus;
+    }
+
+    /**
+     * Returns the URI advertised by the node, the same URI published with the session events of this node.
+     *
+     * @return a non-null instance
+     * @throws IllegalStateException if the node was not started
+     */
+    public URI getUri() {
+        if (uri == null) throw new IllegalStateException("The node was not started");
+        return uri;
+    }
+
+    /**
+     * Registers an additional route served by the node, next to the routes of the Selenium Node.
+     * <p>
+     * Routes must be registered before the node is started.
+     *
+     * @param route the route
+     * @return self
+     */
+    public Node addRoute(Routable route) {
+        requireNonNull(route);
+        routes.add(route);
+        return this;
+    }
+
+    /**
+     * Stops the node: the server stops listening (and releases its port), the handlers (and the sessions) are
+     * closed and the node disconnects from the event bus.
+     * <p>
+     * A stopped node cannot be started again, a new node is created instead (for example, to register with another
+     * Hub).
+     */
+    @Override
+    public void close() {
+        Server<?> server = this.server;
+        Handlers handlers = this.handlers;
+        EventBus bus = this.bus;
+        this.server = null;
+        this.handlers = null;
+        try {
+            if (server != null) server.stop();
+        } finally {
+            try {
+                if (handlers != null) handlers.close();
+            } finally {
+                if (bus != null) bus.close();
+            }
+        }
+    }
+
+    @Override
+    public Server<?> asServer(Config initialConfig) {
+        Server<?> server = super.asServer(initialConfig);
+        this.server = server;
+        return server;
+    }
+
+    @Override
+    protected Handlers createHandlers(Config config) {
+        NodeEventBus.take();
+        Handlers handlers = wrapHandlers(super.createHandlers(NodeEventBus.configure(config)));
+        EventBus createdBus = NodeEventBus.take();
+        bus = createdBus != null ? createdBus : new EventBusOptions(config).getEventBus();
+        uri = new BaseServerOptions(config).getExternalUri();
+        this.handlers = handlers;
+        return handlers;
+    }
+
+    private Handlers wrapHandlers(Handlers handlers) {
+        if (routes.isEmpty()) return handlers;
+        HttpHandler httpHandler = request -> {
+            for (Routable route : routes) {
+                if (route.matches(request)) return route.execute(request);
+            }
+            return handlers.httpHandler.execute(request);
+        };
+        return new Handlers(httpHandler, handlers.websocketHandler) {
+
+            @Override
+            public void close() {
+                handlers.close();
+            }
+        };
+    }
 }
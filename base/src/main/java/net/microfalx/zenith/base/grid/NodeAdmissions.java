@@ -0,0 +1,68 @@
+package net.microfalx.zenith.base.grid;
+
+import net.microfalx.zenith.api.node.Node;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Holds the admission (see {@link Node.Admission}) published by each node.
+ * <p>
+ * Nodes decide on their own whether they accept new sessions (based on their resource usage) and publish the
+ * decision in the database, next to the URI advertised by the Selenium node (the same URI the hub sees in the node
+ * status); the hub refreshes this registry periodically and the slot selector skips the nodes which do not accept
+ * sessions.
+ */
+public final class NodeAdmissions {
+
+    private volatile Map<String, Node.Admission> admissions = Collections.emptyMap();
+
+    /**
+     * Returns the admission of a node.
+     *
+     * @param uri the URI advertised by the Selenium node
+     * @return a non-null instance, {@link Node.Admission#ACCEPTING} if the node did not publish an admission
+     */
+    public Node.Admission get(URI uri) {
+        requireNonNull(uri);
+        return admissions.getOrDefault(getKey(uri), Node.Admission.ACCEPTING);
+    }
+
+    /**
+     * Returns whether a node accepts new sessions.
+     *
+     * @param uri the URI advertised by the Selenium node
+     * @return {@code true} if it accepts sessions, {@code false} otherwise
+     */
+    public boolean isAccepting(URI uri) {
+        return get(uri) == Node.Admission.ACCEPTING;
+    }
+
+    /**
+     * Replaces the admissions of all nodes.
+     *
+     * @param nodes the nodes, as stored in the database
+     */
+    public void update(Iterable<net.microfalx.zenith.base.jpa.Node> nodes) {
+        requireNonNull(nodes);
+        Map<String, Node.Admission> admissions = new HashMap<>();
+        for (net.microfalx.zenith.base.jpa.Node node : nodes) {
+            if (node.getAdmission() == null || node.getGridUri() == null) continue;
+            try {
+                admissions.put(getKey(URI.create(node.getGridUri())), node.getAdmission());
+            } catch (IllegalArgumentException e) {
+                // an invalid URI cannot match any node, the node is accepting by default
+            }
+        }
+        this.admissions = admissions;
+    }
+
+    private static String getKey(URI uri) {
+        String host = uri.getHost();
+        return (host != null ? host.toLowerCase() : "") + ":" + uri.getPort();
+    }
+}
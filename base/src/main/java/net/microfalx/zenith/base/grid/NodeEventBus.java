@@ -0,0 +1,73 @@
+package net.microfalx.zenith.base.grid;
+
+import org.openqa.selenium.events.EventBus;
+import org.openqa.selenium.grid.config.CompoundConfig;
+import org.openqa.selenium.grid.config.Config;
+import org.openqa.selenium.grid.config.MapConfig;
+import org.openqa.selenium.grid.server.EventBusOptions;
+
+import java.util.Map;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Creates the event bus of the Selenium Node and hands it over to the {@link Node}, so the node listens to the
+ * same bus the server is connected to instead of opening a second connection.
+ * <p>
+ * The class is registered as the event bus implementation (see {@link EventBusOptions}) and delegates to the
+ * implementation configured for the node; the bus is handed over on the thread which creates the handlers.
+ */
+public final class NodeEventBus {
+
+    private static final String SECTION = "events";
+    private static final String IMPLEMENTATION = "implementation";
+    private static final String DELEGATE = "zenith-implementation";
+    private static final String DEFAULT_IMPLEMENTATION = "org.openqa.selenium.events.zeromq.ZeroMqEventBus";
+
+    private static final ThreadLocal<EventBus> CREATED = new ThreadLocal<>();
+
+    private NodeEventBus() {
+    }
+
+    /**
+     * Creates the event bus, called by Selenium.
+     *
+     * @param config the configuration
+     * @return a non-null instance
+     */
+    public static EventBus create(Config config) {
+        requireNonNull(config);
+        String delegate = config.get(SECTION, DELEGATE).orElse(DEFAULT_IMPLEMENTATION);
+        EventBus bus = new EventBusOptions(override(config, Map.of(IMPLEMENTATION, delegate))).getEventBus();
+        CREATED.set(bus);
+        return bus;
+    }
+
+    /**
+     * Returns a configuration which creates the event bus with this class.
+     *
+     * @param config the configuration of the node
+     * @return a non-null instance
+     */
+    static Config configure(Config config) {
+        requireNonNull(config);
+        String implementation = config.get(SECTION, IMPLEMENTATION).orElse(DEFAULT_IMPLEMENTATION);
+        if (NodeEventBus.class.getName().equals(implementation)) return config;
+        return override(config, Map.of(IMPLEMENTATION, NodeEventBus.class.getName(), DELEGATE, implementation));
+    }
+
+    /**
+     * Returns (and forgets) the event bus created on the current thread.
+     *
+     * @return the event bus, null if no event bus was created
+     */
+    static EventBus take() {
+        EventBus bus = CREATED.get();
+        CREATED.remove();
+        return bus;
+    }
+
+    private static Config override(Config config, Map<String, Object> options) {
+        return new CompoundConfig(new MapConfig(Map.<String, Object>of(SECTION, options)), config);
+    }
+}
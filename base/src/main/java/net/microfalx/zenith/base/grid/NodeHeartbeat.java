@@ -0,0 +1,67 @@
+package net.microfalx.zenith.base.grid;
+
+import net.microfalx.metrics.Metrics;
+import net.microfalx.zenith.base.ZenithUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Publishes that a node is alive, with a single row upsert in {@code zenith_node_heartbeat}.
+ * <p>
+ * The node entity ({@code zenith_node}) is only updated when the node registers or its admission changes; a node
+ * which misses {@link #MISSED_BEATS} heartbeats is marked inactive by the {@link NodeSweeper} (and active again when
+ * the heartbeats resume).
+ */
+public final class NodeHeartbeat {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeHeartbeat.class);
+
+    private static final Metrics METRICS = ZenithUtils.ZENITH_METRICS.withGroup("Heartbeat");
+
+    /**
+     * The interval between heartbeats.
+     */
+    public static final Duration INTERVAL = Duration.ofSeconds(10);
+
+    /**
+     * The number of consecutive heartbeats a node can miss before it is considered dead.
+     */
+    public static final int MISSED_BEATS = 3;
+
+    private static final String UPSERT_SQL = "INSERT INTO zenith_node_heartbeat (natural_id, sessions, max_sessions, pinged_at) "
+            + "VALUES (?, ?, ?, NOW()) ON DUPLICATE KEY UPDATE sessions = VALUES(sessions), "
+            + "max_sessions = VALUES(max_sessions), pinged_at = VALUES(pinged_at)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NodeHeartbeat(JdbcTemplate jdbcTemplate) {
+        requireNonNull(jdbcTemplate);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Publishes a heartbeat.
+     *
+     * @param naturalId   the natural identifier of the node
+     * @param sessions    the number of active sessions
+     * @param maxSessions the maximum number of sessions
+     * @return {@code true} if the heartbeat was stored, {@code false} otherwise
+     */
+    public boolean beat(String naturalId, int sessions, int maxSessions) {
+        requireNonNull(naturalId);
+        try {
+            jdbcTemplate.update(UPSERT_SQL, naturalId, Math.max(0, sessions), Math.max(0, maxSessions));
+            METRICS.count("Beat");
+            return true;
+        } catch (Exception e) {
+            METRICS.count("Failed");
+            LOGGER.warn("Failed to publish heartbeat for node " + naturalId + ", root cause: " + e.getMessage());
+            return false;
+        }
+    }
+}
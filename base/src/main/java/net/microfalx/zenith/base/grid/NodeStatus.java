@@ -13,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -21,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static java.util.Collections.unmodifiableCollection;
 import static net.microfalx.lang.ArgumentUtils.requireNonNull;
@@ -35,9 +37,11 @@ public class NodeStatus {
     private final net.microfalx.zenith.api.node.Node node;
 
     private boolean ready;
+    private boolean reachable;
     private net.microfalx.zenith.api.node.Node seleniumNode;
     private Collection<net.microfalx.zenith.api.node.Slot> slots = Collections.emptyList();
     private String message;
+    private Duration timeout = Duration.ofSeconds(5);
 
     public NodeStatus(net.microfalx.zenith.api.node.Node node) {
         requireNonNull(node);
@@ -48,6 +52,15 @@ public class NodeStatus {
         return ready;
     }
 
+    /**
+     * Returns whether the node answered to the status request with a status (even if it is not ready).
+     *
+     * @return {@code true} if the node answered with a status, {@code false} otherwise
+     */
+    public boolean isReachable() {
+        return reachable;
+    }
+
     public net.microfalx.zenith.api.node.Node getNode() {
         return seleniumNode != null ? seleniumNode : node;
     }
@@ -60,24 +73,51 @@ public class NodeStatus {
         return message;
     }
 
+    /**
+     * Changes the connection and read timeout used to query the node.
+     *
+     * @param timeout the timeout
+     * @return self
+     */
+    public NodeStatus timeout(Duration timeout) {
+        requireNonNull(timeout);
+        this.timeout = timeout;
+        return this;
+    }
+
     public boolean execute() {
-        RestClient<Response> client = RestClient.create(node.getStatusUri(), Response.class);
         try {
-            Response response = client.execute();
-            if (response != null && response.value != null) {
-                extractStatus(response.value);
-                extractNode(response.value);
-                extractSlots(response.value);
-            } else {
-                message = "No status available";
-            }
+            update(createClient().execute());
         } catch (Exception e) {
-            message = ExceptionUtils.getRootCauseMessage(e);
-            LOGGER.error("Failed to extract node status", e);
+            fail(e);
         }
         return ready;
     }
 
+    /**
+     * Queries the node asynchronously, without blocking a thread while the node answers.
+     * <p>
+     * The call is bounded by the timeout (once for the connection and once for the response), the future completes
+     * (with this instance) even if the node does not answer.
+     *
+     * @return a non-null instance
+     * @see #timeout(Duration)
+     */
+    public CompletableFuture<NodeStatus> executeAsync() {
+        return createClient().executeAsync().handle((response, throwable) -> {
+            if (throwable != null) {
+                fail(throwable);
+            } else {
+                try {
+                    update(response);
+                } catch (Exception e) {
+                    fail(e);
+                }
+            }
+            return this;
+        });
+    }
+
     public static net.microfalx.zenith.api.node.Slot from(net.microfalx.zenith.api.node.Node node, Slot slot) {
         requireNonNull(node);
         requireNonNull(slot);
@@ -110,6 +150,26 @@ public class NodeStatus {
         return builder.build();
     }
 
+    private RestClient<Response> createClient() {
+        return RestClient.create(node.getStatusUri(), Response.class).connectionTimeout(timeout).readTimeout(timeout);
+    }
+
+    private void update(Response response) {
+        if (response != null && response.value != null) {
+            extractStatus(response.value);
+            extractNode(response.value);
+            extractSlots(response.value);
+            reachable = true;
+        } else {
+            message = "No status available";
+        }
+    }
+
+    private void fail(Throwable throwable) {
+        message = ExceptionUtils.getRootCauseMessage(throwable);
+        LOGGER.debug("Failed to extract status of node {}, root cause: {}", node.getUri(), message);
+    }
+
     private void extractStatus(Status status) {
         this.ready = status.ready;
         this.message = status.message;
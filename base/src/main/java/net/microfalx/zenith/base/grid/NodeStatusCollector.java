@@ -0,0 +1,201 @@
+package net.microfalx.zenith.base.grid;
+
+import net.microfalx.zenith.api.common.Server;
+import net.microfalx.zenith.api.node.Node;
+import net.microfalx.zenith.base.jpa.NodeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.unmodifiableCollection;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Collects the status of all registered (active) nodes, in parallel.
+ * <p>
+ * Each node is probed with an asynchronous HTTP call bounded by its own deadline (the call is aborted when the
+ * node does not answer in time, no thread waits for it) and the sweep returns when all nodes answered or when the
+ * overall deadline expires, whichever comes first; nodes which did not answer in time are reported as unavailable.
+ * Nodes which keep failing are skipped (circuit is open) for a while, so they do not consume connections on
+ * every sweep.
+ */
+@Component
+public class NodeStatusCollector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeStatusCollector.class);
+
+    private static final Duration NODE_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration SWEEP_TIMEOUT = Duration.ofSeconds(5);
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long OPEN_CIRCUIT_INTERVAL = 60_000;
+
+    @Autowired
+    private NodeRepository nodeRepository;
+
+    private final Map<URI, Circuit> circuits = new ConcurrentHashMap<>();
+
+    /**
+     * Collects the status of all active nodes, using the default deadline.
+     *
+     * @return a non-null instance
+     */
+    public Result collect() {
+        return collect(SWEEP_TIMEOUT);
+    }
+
+    /**
+     * Collects the status of all active nodes.
+     *
+     * @param deadline the maximum amount of time to wait for all nodes
+     * @return a non-null instance
+     */
+    public Result collect(Duration deadline) {
+        requireNonNull(deadline);
+        Collection<Node> nodes = new ArrayList<>();
+        for (net.microfalx.zenith.base.jpa.Node jpaNode : nodeRepository.findAll()) {
+            if (jpaNode.isActive()) nodes.add(Node.create(Server.get(jpaNode.getHostname()), jpaNode.getPort()));
+        }
+        return collect(nodes, deadline);
+    }
+
+    /**
+     * Collects the status of the given nodes.
+     *
+     * @param nodes    the nodes
+     * @param deadline the maximum amount of time to wait for all nodes
+     * @return a non-null instance
+     */
+    public Result collect(Collection<Node> nodes, Duration deadline) {
+        requireNonNull(nodes);
+        requireNonNull(deadline);
+        Result result = new Result();
+        Map<Node, CompletableFuture<NodeStatus>> pending = new LinkedHashMap<>();
+        for (Node node : nodes) {
+            Circuit circuit = getCircuit(node);
+            if (!circuit.allow()) {
+                result.skipped.add(node);
+                continue;
+            }
+            pending.put(node, new NodeStatus(node).timeout(NODE_TIMEOUT).executeAsync());
+        }
+        try {
+            CompletableFuture.allOf(pending.values().toArray(new CompletableFuture[0]))
+                    .get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.debug("Node status sweep did not complete within {}, return partial results", deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // individual failures are handled below
+        }
+        for (Map.Entry<Node, CompletableFuture<NodeStatus>> entry : pending.entrySet()) {
+            Node node = entry.getKey();
+            CompletableFuture<NodeStatus> future = entry.getValue();
+            NodeStatus status = future.isDone() ? future.getNow(null) : null;
+            if (status != null && status.isReachable()) {
+                getCircuit(node).success();
+                if (status.isReady()) {
+                    result.statuses.add(status);
+                } else {
+                    result.unavailable.add(node);
+                }
+            } else {
+                String message = status != null ? status.getMessage() : "no answer within " + deadline;
+                getCircuit(node).failure(node, message);
+                result.unavailable.add(node);
+            }
+        }
+        return result;
+    }
+
+    private Circuit getCircuit(Node node) {
+        return circuits.computeIfAbsent(node.getUri(), uri -> new Circuit());
+    }
+
+    /**
+     * The outcome of a sweep.
+     */
+    public static class Result {
+
+        private final Collection<NodeStatus> statuses = new ArrayList<>();
+        private final Collection<Node> unavailable = new ArrayList<>();
+        private final Collection<Node> skipped = new ArrayList<>();
+
+        /**
+         * Returns the status of the nodes which answered in time and are ready.
+         *
+         * @return a non-null instance
+         */
+        public Collection<NodeStatus> getStatuses() {
+            return unmodifiableCollection(statuses);
+        }
+
+        /**
+         * Returns the nodes which failed, are not ready or did not answer before the deadline.
+         *
+         * @return a non-null instance
+         */
+        public Collection<Node> getUnavailable() {
+            return unmodifiableCollection(unavailable);
+        }
+
+        /**
+         * Returns the nodes which were not probed because they failed too many times.
+         *
+         * @return a non-null instance
+         */
+        public Collection<Node> getSkipped() {
+            return unmodifiableCollection(skipped);
+        }
+
+        /**
+         * Returns whether some nodes are missing from the result.
+         *
+         * @return {@code true} if partial, {@code false} otherwise
+         */
+        public boolean isPartial() {
+            return !unavailable.isEmpty() || !skipped.isEmpty();
+        }
+    }
+
+    private static class Circuit {
+
+        private volatile int failures;
+        private volatile long openUntil;
+        private volatile boolean probing;
+
+        synchronized boolean allow() {
+            if (failures < FAILURE_THRESHOLD) return true;
+            if (currentTimeMillis() < openUntil || probing) return false;
+            // half-open, let one probe through
+            probing = true;
+            return true;
+        }
+
+        synchronized void success() {
+            failures = 0;
+            probing = false;
+        }
+
+        synchronized void failure(Node node, String message) {
+            failures++;
+            probing = false;
+            if (failures >= FAILURE_THRESHOLD) openUntil = currentTimeMillis() + OPEN_CIRCUIT_INTERVAL;
+            if (failures == FAILURE_THRESHOLD) {
+                LOGGER.warn("Node " + node.getUri() + " failed " + FAILURE_THRESHOLD + " status requests in a row, "
+                        + "skip it for " + OPEN_CIRCUIT_INTERVAL / 1000 + "s, root cause: " + message);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package net.microfalx.zenith.base.grid;
+
+import net.microfalx.metrics.Metrics;
+import net.microfalx.zenith.base.Lease;
+import net.microfalx.zenith.base.ZenithUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Marks nodes as inactive when they stop publishing heartbeats (see {@link NodeHeartbeat}), and active again when
+ * the heartbeats resume, so the status sweeps and views driven by the active nodes skip dead nodes.
+ * <p>
+ * Nodes without a heartbeat row (older nodes) are judged by the last time the node entity was updated. Only the
+ * process which holds the sweeper lease does the work, with one statement per sweep.
+ */
+@Service
+public class NodeSweeper implements ApplicationListener<ApplicationStartedEvent>, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeSweeper.class);
+
+    private static final Metrics METRICS = ZenithUtils.ZENITH_METRICS.withGroup("Heartbeat");
+
+    private static final String LEASE_NAME = "node-sweeper";
+    private static final Duration LEASE_DURATION = Duration.ofMinutes(1);
+
+    private static final String SWEEP_SQL = "UPDATE zenith_node n LEFT JOIN zenith_node_heartbeat h ON h.natural_id = n.natural_id "
+            + "SET n.active = (COALESCE(h.pinged_at, n.pinged_at) >= DATE_SUB(NOW(), INTERVAL ? SECOND)) "
+            + "WHERE n.active <> (COALESCE(h.pinged_at, n.pinged_at) >= DATE_SUB(NOW(), INTERVAL ? SECOND))";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    private volatile Lease lease;
+
+    @Override
+    public void onApplicationEvent(ApplicationStartedEvent event) {
+        lease = new Lease(jdbcTemplate, LEASE_NAME, LEASE_DURATION);
+        taskScheduler.scheduleWithFixedDelay(new SweepWorker(), NodeHeartbeat.INTERVAL);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (lease != null) lease.release();
+    }
+
+    /**
+     * Updates the active flag of all nodes, based on their last heartbeat.
+     *
+     * @return the number of nodes which changed state
+     */
+    public int sweep() {
+        long staleAfter = NodeHeartbeat.INTERVAL.toSeconds() * NodeHeartbeat.MISSED_BEATS;
+        int changed = jdbcTemplate.update(SWEEP_SQL, staleAfter, staleAfter);
+        if (changed > 0) {
+            LOGGER.info("Node sweep changed the state of {} node(s)", changed);
+            METRICS.count("Swept");
+        }
+        return changed;
+    }
+
+    private class SweepWorker implements Runnable {
+
+        @Override
+        public void run() {
+            if (!lease.acquire()) return;
+            try {
+                sweep();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to sweep nodes, root cause: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package net.microfalx.zenith.base.grid;
 
 import net.microfalx.zenith.api.node.Node;
-import net.microfalx.zenith.base.jpa.SessionRepository;
 import org.openqa.selenium.grid.data.Session;
 import org.openqa.selenium.grid.distributor.local.LocalDistributor;
 import org.openqa.selenium.remote.SessionId;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
@@ -18,7 +19,7 @@ import static net.microfalx.lang.ArgumentUtils.requireNonNull;
  * A class which manages sessions created by Selenium Hub.
  */
 @Component
-public class SessionManager {
+public class SessionManager implements InitializingBean {
 
     private final Map<SessionId, Session> sessions = new ConcurrentHashMap<>();
     private final Map<SessionId, Node> sessionIdNode = new ConcurrentHashMap<>();
@@ -29,11 +30,19 @@ public class SessionManager {
     private TaskExecutor taskExecutor;
 
     @Autowired
-    private SessionRepository sessionRepository;
+    private JdbcTemplate jdbcTemplate;
+
+    private SessionWriter sessionWriter;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        sessionWriter = new SessionWriter(jdbcTemplate, taskExecutor);
+    }
 
     void addSession(Session session) {
         requireNonNull(session);
         sessions.put(session.getId(), session);
+        sessionWriter.created(session);
     }
 
     void removeSession(Session session, final net.microfalx.zenith.api.common.Session.Status status,
@@ -42,25 +51,6 @@ public class SessionManager {
         requireNonNull(status);
         sessions.remove(session.getId());
         sessionIdNode.remove(session.getId());
-    }
-
-    private class SessionTask implements Runnable {
-
-        private final Session session;
-        private final net.microfalx.zenith.api.common.Session.Status status;
-        private final net.microfalx.zenith.api.common.Session.Reason reason;
-
-        private SessionTask(Session session, net.microfalx.zenith.api.common.Session.Status status, net.microfalx.zenith.api.common.Session.Reason reason) {
-            requireNonNull(session);
-            requireNonNull(status);
-            this.session = session;
-            this.status = status;
-            this.reason = reason;
-        }
-
-        @Override
-        public void run() {
-
-        }
+        sessionWriter.closed(session, status, reason);
     }
 }
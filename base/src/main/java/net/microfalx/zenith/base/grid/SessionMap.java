@@ -14,9 +14,6 @@ import org.openqa.selenium.remote.tracing.Tracer;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Logger;
 
 import static net.microfalx.lang.ArgumentUtils.requireNonNull;
@@ -29,7 +26,6 @@ public class SessionMap extends org.openqa.selenium.grid.sessionmap.SessionMap {
 
     private final EventBus bus;
     private final Map<SessionId, Session> knownSessions = new ConcurrentHashMap<>();
-    private final ReadWriteLock lock = new ReentrantReadWriteLock(/* be fair */ true);
 
     SessionManager sessionManager;
 
@@ -46,10 +42,7 @@ public class SessionMap extends org.openqa.selenium.grid.sessionmap.SessionMap {
                                 attributeMap.put(AttributeKey.LOGGER_CLASS.getKey(), getClass().getName());
                                 SESSION_ID.accept(span, id);
                                 SESSION_ID_EVENT.accept(attributeMap, id);
-                                Session session = knownSessions.get(id);
-                                if (session != null) {
-                                    doRemove(session, net.microfalx.zenith.api.common.Session.Status.SUCCESSFUL, null);
-                                }
+                                doRemove(id, net.microfalx.zenith.api.common.Session.Status.SUCCESSFUL, null);
                                 String sessionDeletedMessage = "Deleted session from local Session Map";
                                 span.addEvent(sessionDeletedMessage, attributeMap);
                                 LOG.info(String.format("%s, Id: %s", sessionDeletedMessage, id));
@@ -61,7 +54,7 @@ public class SessionMap extends org.openqa.selenium.grid.sessionmap.SessionMap {
                         nodeStatus ->
                                 nodeStatus.getSlots().stream()
                                         .map(Slot::getSession).filter(Objects::nonNull)
-                                        .forEach(session -> doRemove(session, net.microfalx.zenith.api.common.Session.Status.FAILED,
+                                        .forEach(session -> doRemove(session.getId(), net.microfalx.zenith.api.common.Session.Status.FAILED,
                                                 net.microfalx.zenith.api.common.Session.Reason.NODE_REMOVED))));
 
         bus.addListener(
@@ -79,8 +72,6 @@ public class SessionMap extends org.openqa.selenium.grid.sessionmap.SessionMap {
     @Override
     public boolean add(Session session) {
         Require.nonNull("Session", session);
-        Lock writeLock = lock.writeLock();
-        writeLock.lock();
         try (Span span = tracer.getCurrentContext().createSpan("local_sessionmap.add")) {
             AttributeMap attributeMap = tracer.createAttributeMap();
             attributeMap.put(AttributeKey.LOGGER_CLASS.getKey(), getClass().getName());
@@ -91,39 +82,23 @@ public class SessionMap extends org.openqa.selenium.grid.sessionmap.SessionMap {
             doAdd(session);
             span.addEvent("Added session into local session map", attributeMap);
             return true;
-        } finally {
-            writeLock.unlock();
         }
     }
 
     @Override
     public Session get(SessionId id) {
         Require.nonNull("Session ID", id);
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            Session session = knownSessions.get(id);
-            if (session == null) {
-                throw new NoSuchSessionException("Unable to find session with ID: " + id);
-            }
-            return session;
-        } finally {
-            readLock.unlock();
+        Session session = knownSessions.get(id);
+        if (session == null) {
+            throw new NoSuchSessionException("Unable to find session with ID: " + id);
         }
+        return session;
     }
 
     @Override
     public void remove(SessionId id) {
         Require.nonNull("Session ID", id);
-        Lock writeLock = lock.writeLock();
-        writeLock.lock();
-        try {
-            Session session = knownSessions.get(id);
-            knownSessions.remove(id);
-            if (session != null) doRemove(session, net.microfalx.zenith.api.common.Session.Status.KILLED, null);
-        } finally {
-            writeLock.unlock();
-        }
+        doRemove(id, net.microfalx.zenith.api.common.Session.Status.KILLED, null);
     }
 
     private void doAdd(Session session) {
@@ -131,10 +106,22 @@ public class SessionMap extends org.openqa.selenium.grid.sessionmap.SessionMap {
         if (sessionManager != null) sessionManager.addSession(session);
     }
 
+    private void doRemove(SessionId id, net.microfalx.zenith.api.common.Session.Status status,
+                          net.microfalx.zenith.api.common.Session.Reason reason) {
+        requireNonNull(id);
+        // only the caller which removes the session from the map reports it
+        Session session = knownSessions.remove(id);
+        if (session != null) doReport(session, status, reason);
+    }
+
     private void doRemove(Session session, net.microfalx.zenith.api.common.Session.Status status,
                           net.microfalx.zenith.api.common.Session.Reason reason) {
         requireNonNull(session);
-        if (status != net.microfalx.zenith.api.common.Session.Status.KILLED) remove(session.getId());
+        if (knownSessions.remove(session.getId(), session)) doReport(session, status, reason);
+    }
+
+    private void doReport(Session session, net.microfalx.zenith.api.common.Session.Status status,
+                          net.microfalx.zenith.api.common.Session.Reason reason) {
         if (sessionManager != null) sessionManager.removeSession(session, status, reason);
     }
 }
@@ -0,0 +1,242 @@
+package net.microfalx.zenith.base.grid;
+
+import net.microfalx.lang.StringUtils;
+import net.microfalx.metrics.Metrics;
+import net.microfalx.zenith.api.node.Node;
+import net.microfalx.zenith.base.ZenithUtils;
+import org.openqa.selenium.grid.data.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+import static net.microfalx.lang.CollectionUtils.setToString;
+
+/**
+ * Records the history of sessions in the database ({@code zenith_session}), in the background.
+ * <p>
+ * Events are coalesced per session in a bounded buffer (the creation and the closing of a short session usually
+ * end up in a single row) and flushed with JDBC batch upserts on the task executor, so the callers (Selenium event
+ * bus listeners) never wait for the database. When the buffer is full, only creations are dropped: the end of a
+ * session is always kept, and since the upsert carries the whole session, it also records a dropped creation.
+ * <p>
+ * When a batch cannot be written, the ends of sessions are put back in the buffer (as long as it has room) and
+ * written with the next flush. Browsers and projects are resolved from an in-memory cache.
+ */
+class SessionWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionWriter.class);
+
+    private static final Metrics METRICS = ZenithUtils.ZENITH_METRICS.withGroup("Session History");
+
+    private static final int MAX_PENDING = 10_000;
+    private static final int BATCH_SIZE = 200;
+    private static final int MAX_TEXT_LENGTH = 200;
+
+    private static final String UPSERT_SESSION_SQL = "INSERT INTO zenith_session (natural_id, name, browser_id, project_id, "
+            + "category, namespace, started_at, ended_at, duration, status, reason, tags) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE ended_at = VALUES(ended_at), duration = VALUES(duration), status = VALUES(status), "
+            + "reason = VALUES(reason)";
+    private static final String INSERT_BROWSER_SQL = "INSERT IGNORE INTO zenith_browser (natural_id, name, version, "
+            + "created_at, modified_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_BROWSER_SQL = "SELECT id FROM zenith_browser WHERE natural_id = ?";
+    private static final String INSERT_PROJECT_SQL = "INSERT IGNORE INTO zenith_project (natural_id, name, active, "
+            + "created_at, modified_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_PROJECT_SQL = "SELECT id FROM zenith_project WHERE natural_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TaskExecutor taskExecutor;
+
+    private final Map<String, Record> pending = new ConcurrentHashMap<>();
+    private final Map<String, Integer> browsers = new ConcurrentHashMap<>();
+    private final Map<String, Integer> projects = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    SessionWriter(JdbcTemplate jdbcTemplate, TaskExecutor taskExecutor) {
+        requireNonNull(jdbcTemplate);
+        requireNonNull(taskExecutor);
+        this.jdbcTemplate = jdbcTemplate;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Records the creation of a session.
+     *
+     * @param session the session
+     */
+    void created(Session session) {
+        update(session, net.microfalx.zenith.api.common.Session.Status.RUNNING, null);
+    }
+
+    /**
+     * Records the end of a session.
+     *
+     * @param session the session
+     * @param status  the final status
+     * @param reason  the reason, can be null
+     */
+    void closed(Session session, net.microfalx.zenith.api.common.Session.Status status,
+                net.microfalx.zenith.api.common.Session.Reason reason) {
+        update(session, status, reason);
+    }
+
+    private void update(Session session, net.microfalx.zenith.api.common.Session.Status status,
+                        net.microfalx.zenith.api.common.Session.Reason reason) {
+        requireNonNull(session);
+        String id = session.getId().toString();
+        boolean running = status == net.microfalx.zenith.api.common.Session.Status.RUNNING;
+        if (running && pending.size() >= MAX_PENDING && !pending.containsKey(id)) {
+            METRICS.count("Dropped");
+            return;
+        }
+        LocalDateTime endedAt = running ? null : LocalDateTime.now();
+        pending.compute(id, (key, record) -> {
+            if (record == null) record = new Record(session);
+            record.status = status;
+            record.reason = reason;
+            if (endedAt != null) record.endedAt = endedAt;
+            return record;
+        });
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushing.compareAndSet(false, true)) {
+            try {
+                taskExecutor.execute(this::flush);
+            } catch (Exception e) {
+                flushing.set(false);
+                LOGGER.error("Failed to schedule session history flush", e);
+            }
+        }
+    }
+
+    private void flush() {
+        List<Record> failed = new ArrayList<>();
+        try {
+            List<Record> batch = new ArrayList<>(BATCH_SIZE);
+            Iterator<Map.Entry<String, Record>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next().getValue());
+                iterator.remove();
+                if (batch.size() == BATCH_SIZE) {
+                    if (!write(batch)) failed.addAll(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty() && !write(batch)) failed.addAll(batch);
+        } finally {
+            flushing.set(false);
+        }
+        // events which arrived after the buffer was drained; retried records wait for the next event, so a database
+        // which is down is not hammered with the same batch
+        boolean arrived = !pending.isEmpty();
+        requeue(failed);
+        if (arrived) scheduleFlush();
+    }
+
+    private void requeue(List<Record> records) {
+        for (Record record : records) {
+            if (record.endedAt == null) continue;
+            if (pending.size() >= MAX_PENDING) {
+                METRICS.count("Dropped");
+                continue;
+            }
+            // a newer event of the same session already carries the end of the session
+            if (pending.putIfAbsent(record.session.getId().toString(), record) == null) METRICS.count("Retried");
+        }
+    }
+
+    private boolean write(List<Record> records) {
+        List<Object[]> arguments = new ArrayList<>(records.size());
+        for (Record record : records) {
+            try {
+                arguments.add(record.toArguments());
+            } catch (Exception e) {
+                LOGGER.error("Failed to prepare session history for " + record.session.getId(), e);
+            }
+        }
+        try {
+            METRICS.time("Write", o -> jdbcTemplate.batchUpdate(UPSERT_SESSION_SQL, arguments, UPSERT_SESSION_TYPES));
+            return true;
+        } catch (Exception e) {
+            METRICS.count("Failed");
+            LOGGER.error("Failed to write history for " + arguments.size() + " sessions", e);
+            return false;
+        }
+    }
+
+    private Integer getBrowserId(net.microfalx.zenith.api.common.Session session) {
+        String name = session.getBrowser().name().toLowerCase();
+        String version = session.getBrowserVersion();
+        String naturalId = StringUtils.toIdentifier(name + "_" + version);
+        return browsers.computeIfAbsent(naturalId, key -> resolve(SELECT_BROWSER_SQL, INSERT_BROWSER_SQL, key,
+                StringUtils.capitalize(name), version));
+    }
+
+    private Integer getProjectId(net.microfalx.zenith.api.common.Session session) {
+        String name = session.getProject();
+        if (StringUtils.isEmpty(name)) return null;
+        String naturalId = StringUtils.toIdentifier(name);
+        return projects.computeIfAbsent(naturalId, key -> resolve(SELECT_PROJECT_SQL, INSERT_PROJECT_SQL, key,
+                truncate(name), true));
+    }
+
+    private Integer resolve(String selectSql, String insertSql, String naturalId, Object... values) {
+        List<Integer> ids = jdbcTemplate.queryForList(selectSql, Integer.class, naturalId);
+        if (!ids.isEmpty()) return ids.get(0);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Object[] arguments = new Object[values.length + 3];
+        arguments[0] = naturalId;
+        System.arraycopy(values, 0, arguments, 1, values.length);
+        arguments[values.length + 1] = now;
+        arguments[values.length + 2] = now;
+        jdbcTemplate.update(insertSql, arguments);
+        return jdbcTemplate.queryForObject(selectSql, Integer.class, naturalId);
+    }
+
+    private static String truncate(String value) {
+        if (value == null || value.length() <= MAX_TEXT_LENGTH) return value;
+        return value.substring(0, MAX_TEXT_LENGTH);
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime dateTime) {
+        return dateTime != null ? Timestamp.valueOf(dateTime) : null;
+    }
+
+    private static final int[] UPSERT_SESSION_TYPES = {Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.INTEGER,
+            Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.TIMESTAMP, Types.INTEGER, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR};
+
+    private class Record {
+
+        private final Session session;
+        private volatile net.microfalx.zenith.api.common.Session.Status status;
+        private volatile net.microfalx.zenith.api.common.Session.Reason reason;
+        private volatile LocalDateTime endedAt;
+
+        private Record(Session session) {
+            this.session = session;
+        }
+
+        private Object[] toArguments() {
+            net.microfalx.zenith.api.common.Session zenithSession = HubTopology.from(Node.NA, session.getId(),
+                    session.getCapabilities(), session.getStartTime());
+            LocalDateTime startedAt = zenithSession.getStartedAt();
+            Integer duration = endedAt != null ? (int) Duration.between(startedAt, endedAt).toMillis() : null;
+            return new Object[]{zenithSession.getId(), truncate(zenithSession.getName()), getBrowserId(zenithSession),
+                    getProjectId(zenithSession), truncate(zenithSession.getCategory()),
+                    truncate(zenithSession.getNamespace()), toTimestamp(startedAt), toTimestamp(endedAt), duration,
+                    status.name(), reason != null ? reason.name() : null, truncate(setToString(zenithSession.getTags()))};
+        }
+    }
+}
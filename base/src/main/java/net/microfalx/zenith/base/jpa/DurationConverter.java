@@ -0,0 +1,23 @@
+package net.microfalx.zenith.base.jpa;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.time.Duration;
+
+/**
+ * Stores a {@link Duration} as milliseconds in an integer column.
+ */
+@Converter
+public class DurationConverter implements AttributeConverter<Duration, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(Duration attribute) {
+        return attribute != null ? (int) attribute.toMillis() : null;
+    }
+
+    @Override
+    public Duration convertToEntityAttribute(Integer dbData) {
+        return dbData != null ? Duration.ofMillis(dbData) : null;
+    }
+}
@@ -41,6 +41,12 @@ public class Hub extends NamedAndTimestampedIdentityAware<Integer> {
     @Width("80px")
     private int port;
 
+    @Column(name = "load_factor", nullable = false)
+    @Position(30)
+    @Description("The load advertised by the Selenium hub (used and requested slots, as a percentage of all slots)")
+    @Width("80px")
+    private float load;
+
     @Column(name = "pinged_at")
     @Position(502)
     @Visible(modes = {Visible.Mode.BROWSE, Visible.Mode.VIEW})
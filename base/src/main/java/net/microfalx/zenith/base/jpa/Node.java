@@ -2,6 +2,8 @@ package net.microfalx.zenith.base.jpa;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Getter;
@@ -43,12 +45,25 @@ public class Node extends NamedAndTimestampedIdentityAware<Integer> {
     @Width("80px")
     private int port;
 
+    @Column(name = "grid_uri")
+    @Position(22)
+    @Description("The URI advertised by the Selenium node to the hub, used to match the node with its admission")
+    @Width("250px")
+    private String gridUri;
+
     @Column(name = "active", nullable = false)
     @Position(30)
     @Description("Indicate whether the Selenium node is active")
     @Width("80px")
     private boolean active;
 
+    @Column(name = "admission", nullable = false)
+    @Position(31)
+    @Description("Indicate whether the Selenium node accepts new sessions, based on its resource usage")
+    @Width("100px")
+    @Enumerated(EnumType.STRING)
+    private net.microfalx.zenith.api.node.Node.Admission admission = net.microfalx.zenith.api.node.Node.Admission.ACCEPTING;
+
     @Column(name = "pinged_at")
     @Position(502)
     @Visible(modes = {Visible.Mode.BROWSE, Visible.Mode.VIEW})
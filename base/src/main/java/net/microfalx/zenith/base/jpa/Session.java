@@ -67,6 +67,7 @@ public class Session extends NamedIdentityAware<Long> {
     private LocalDateTime endedAt;
 
     @Column(name = "duration")
+    @Convert(converter = DurationConverter.class)
     @Position(42)
     @Description("The duration of the session")
     @Width("120px")
@@ -1,30 +1,48 @@
 package net.microfalx.zenith.base.rest;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 
-import java.io.StringReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.time.Duration.ofSeconds;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static net.microfalx.lang.ArgumentUtils.requireNonNull;
 
 /**
  * A rest client for Selenium end points.
+ * <p>
+ * The underlying HTTP clients are shared (one per timeout configuration), so connections are pooled and kept alive
+ * between calls. The JSON mapper is shared too and responses are deserialized directly from the response stream.
  */
 public class RestClient<T> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RestClient.class);
 
+    private static final ObjectMapper MAPPER = createMapper();
+    private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final Map<Duration, HttpClient> HTTP_CLIENTS = new ConcurrentHashMap<>();
+    private static final Map<Timeouts, org.springframework.web.client.RestClient> REST_CLIENTS = new ConcurrentHashMap<>();
+
     private final URI uri;
     private final Class<T> resultType;
 
-    private ObjectMapper mapper;
     private Duration connectionTimeout = ofSeconds(5);
     private Duration readTimeout = ofSeconds(5);
 
@@ -39,20 +57,49 @@ public class RestClient<T> {
         this.resultType = resultType;
     }
 
+    /**
+     * Changes the maximum amount of time to wait for a connection to be established.
+     *
+     * @param connectionTimeout the timeout
+     * @return self
+     */
+    public RestClient<T> connectionTimeout(Duration connectionTimeout) {
+        requireNonNull(connectionTimeout);
+        this.connectionTimeout = connectionTimeout;
+        return this;
+    }
+
+    /**
+     * Changes the maximum amount of time to wait for a response.
+     *
+     * @param readTimeout the timeout
+     * @return self
+     */
+    public RestClient<T> readTimeout(Duration readTimeout) {
+        requireNonNull(readTimeout);
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
     /**
      * Executes the Rest API call and returns the JSON object as a mapped Java Object.
      *
      * @return the result
      */
     public T execute() {
-        createMapper();
-        org.springframework.web.client.RestClient.RequestHeadersSpec<?> request = createRequest();
-        T result = null;
+        ObjectReader reader = getReader(resultType);
+        T result;
         try {
-            String body = request.retrieve().body(String.class);
-            if (body != null) {
-                result = mapper.readValue(new StringReader(body), resultType);
-            }
+            result = createRequest().exchange((request, response) -> {
+                if (response.getStatusCode().isError()) {
+                    throw new RestException("Request to '" + uri + "' failed with status " + response.getStatusCode().value());
+                }
+                try (InputStream inputStream = response.getBody()) {
+                    return read(reader, inputStream);
+                }
+            });
+        } catch (RestException e) {
+            throw e;
         } catch (Exception e) {
             throw new RestException("Failed to execute request to '" + uri + "'", e);
         }
@@ -62,14 +109,106 @@ public class RestClient<T> {
         return result;
     }
 
-    private void createMapper() {
-        mapper = new ObjectMapper();
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        mapper.registerModule(new JavaTimeModule());
+    /**
+     * Executes the Rest API call asynchronously and returns the JSON object as a mapped Java Object.
+     * <p>
+     * No thread waits for the response. The whole call (connection, request and response) is bounded by the
+     * connection timeout plus the read timeout; when the call does not complete in time, the request is aborted
+     * and the future fails with a {@link java.util.concurrent.TimeoutException}.
+     *
+     * @return a non-null instance
+     */
+    public CompletableFuture<T> executeAsync() {
+        ObjectReader reader = getReader(resultType);
+        Duration timeout = connectionTimeout.plus(readTimeout);
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(timeout)
+                .header("Accept", MediaType.APPLICATION_JSON_VALUE).GET().build();
+        CompletableFuture<HttpResponse<byte[]>> exchange = getHttpClient(connectionTimeout)
+                .sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        return exchange.thenApply(response -> {
+            if (response.statusCode() >= 400) {
+                throw new RestException("Request to '" + uri + "' failed with status " + response.statusCode());
+            }
+            T result;
+            try {
+                result = read(reader, response.body());
+            } catch (IOException e) {
+                throw new RestException("Failed to parse response from '" + uri + "'", e);
+            }
+            if (result == null) throw new RestException("An empty response was returned by '" + uri + "'");
+            return result;
+        }).orTimeout(timeout.toMillis(), MILLISECONDS).whenComplete((result, throwable) -> {
+            if (throwable != null) exchange.cancel(true);
+        });
+    }
+
+    private T read(ObjectReader reader, byte[] data) throws IOException {
+        try (JsonParser parser = reader.createParser(data)) {
+            if (parser.nextToken() == null) return null;
+            return reader.readValue(parser);
+        }
+    }
+
+    private T read(ObjectReader reader, InputStream inputStream) throws IOException {
+        try (JsonParser parser = reader.createParser(inputStream)) {
+            if (parser.nextToken() == null) return null;
+            return reader.readValue(parser);
+        }
     }
 
     private org.springframework.web.client.RestClient.RequestHeadersSpec<?> createRequest() {
-        return org.springframework.web.client.RestClient.create(uri.toASCIIString()).get()
+        return getRestClient(connectionTimeout, readTimeout).get().uri(uri)
                 .accept(MediaType.APPLICATION_JSON);
     }
+
+    private static ObjectReader getReader(Class<?> type) {
+        return READERS.computeIfAbsent(type, MAPPER::readerFor);
+    }
+
+    private static org.springframework.web.client.RestClient getRestClient(Duration connectionTimeout, Duration readTimeout) {
+        return REST_CLIENTS.computeIfAbsent(new Timeouts(connectionTimeout, readTimeout), timeouts -> {
+            LOGGER.debug("Create REST client, connection timeout {}, read timeout {}", connectionTimeout, readTimeout);
+            JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(getHttpClient(connectionTimeout));
+            requestFactory.setReadTimeout(readTimeout);
+            return org.springframework.web.client.RestClient.builder().requestFactory(requestFactory).build();
+        });
+    }
+
+    private static HttpClient getHttpClient(Duration connectionTimeout) {
+        return HTTP_CLIENTS.computeIfAbsent(connectionTimeout, timeout -> HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build());
+    }
+
+    private static ObjectMapper createMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.registerModule(new JavaTimeModule());
+        return mapper;
+    }
+
+    private static class Timeouts {
+
+        private final Duration connectionTimeout;
+        private final Duration readTimeout;
+
+        private Timeouts(Duration connectionTimeout, Duration readTimeout) {
+            this.connectionTimeout = connectionTimeout;
+            this.readTimeout = readTimeout;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Timeouts timeouts)) return false;
+            return connectionTimeout.equals(timeouts.connectionTimeout) && readTimeout.equals(timeouts.readTimeout);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * connectionTimeout.hashCode() + readTimeout.hashCode();
+        }
+    }
 }
@@ -0,0 +1,2 @@
+ALTER TABLE zenith_node
+    ADD COLUMN grid_uri VARCHAR(500) AFTER port;
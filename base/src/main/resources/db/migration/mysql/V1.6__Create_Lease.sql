@@ -0,0 +1,9 @@
+CREATE TABLE zenith_lease
+(
+    name       VARCHAR(100) NOT NULL,
+    owner      VARCHAR(200) NOT NULL,
+
+    expires_at DATETIME     NOT NULL,
+
+    CONSTRAINT pk$zenith_lease PRIMARY KEY (name)
+) ENGINE INNODB;
@@ -0,0 +1,2 @@
+ALTER TABLE zenith_node
+    ADD COLUMN admission ENUM ('ACCEPTING','THROTTLED','DRAINING') DEFAULT 'ACCEPTING' NOT NULL AFTER active;
@@ -0,0 +1,2 @@
+ALTER TABLE zenith_hub
+    ADD COLUMN load_factor FLOAT DEFAULT 0 NOT NULL AFTER port;
@@ -0,0 +1,11 @@
+CREATE TABLE zenith_node_heartbeat
+(
+    natural_id   VARCHAR(60)       NOT NULL,
+
+    sessions     SMALLINT UNSIGNED NOT NULL,
+    max_sessions SMALLINT UNSIGNED NOT NULL,
+
+    pinged_at    DATETIME          NOT NULL,
+
+    CONSTRAINT pk$zenith_node_heartbeat PRIMARY KEY (natural_id)
+) ENGINE INNODB;
@@ -0,0 +1,78 @@
+package net.microfalx.zenith.base.archive;
+
+import net.microfalx.resource.FileResource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionArchiveTest {
+
+    private static final int FRAMES = 10;
+    private static final int FRAME_LENGTH = 4;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void compactRecording() throws IOException {
+        SessionArchive archive = createArchive();
+        assertTrue(archive.compact(3));
+        ByteArrayOutputStream video = new ByteArrayOutputStream();
+        assertTrue(archive.copyEntry(SessionArchive.RECORDING_PREFIX + "screen.mjpeg", video));
+        assertArrayEquals(concat(frame(0), frame(5), frame(9)), video.toByteArray());
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        assertTrue(archive.copyEntry(SessionArchive.RECORDING_PREFIX + "screen.idx", index));
+        assertEquals("0 0 4\n500 4 4\n900 8 4\n", index.toString(StandardCharsets.US_ASCII));
+        assertEquals("Session closed", archive.getLog("session.log").orElseThrow());
+        assertArrayEquals(new byte[]{1, 2, 3}, archive.getLastScreenshot().orElseThrow());
+    }
+
+    @Test
+    void compactNotRequired() throws IOException {
+        SessionArchive archive = createArchive();
+        assertFalse(archive.compact(FRAMES));
+        Map<String, Long> sizes = archive.getEntries().stream()
+                .collect(Collectors.toMap(SessionArchive.Entry::getName, SessionArchive.Entry::getSize));
+        assertEquals(FRAMES * FRAME_LENGTH, sizes.get("screen.mjpeg"));
+    }
+
+    private SessionArchive createArchive() throws IOException {
+        SessionArchive archive = new SessionArchive(FileResource.file(new File(directory, "session.zip")));
+        StringBuilder index = new StringBuilder();
+        ByteArrayOutputStream video = new ByteArrayOutputStream();
+        for (int i = 0; i < FRAMES; i++) {
+            index.append(i * 100).append(' ').append(video.size()).append(' ').append(FRAME_LENGTH).append('\n');
+            video.write(frame(i));
+        }
+        try (SessionArchive.Writer writer = archive.create()) {
+            writer.addLog("session.log", "Session closed");
+            writer.addScreenshot("last.jpg", new byte[]{1, 2, 3});
+            writer.addRecording("screen.mjpeg", video.toByteArray());
+            writer.addRecording("screen.idx", index.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+        return archive;
+    }
+
+    private static byte[] frame(int index) {
+        byte[] data = new byte[FRAME_LENGTH];
+        Arrays.fill(data, (byte) index);
+        return data;
+    }
+
+    private static byte[] concat(byte[]... frames) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            outputStream.writeBytes(frame);
+        }
+        return outputStream.toByteArray();
+    }
+}
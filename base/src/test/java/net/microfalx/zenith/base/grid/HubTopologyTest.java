@@ -0,0 +1,91 @@
+package net.microfalx.zenith.base.grid;
+
+import com.sun.net.httpserver.HttpServer;
+import net.microfalx.zenith.api.common.Server;
+import net.microfalx.zenith.api.hub.Hub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HubTopologyTest {
+
+    private static final String STATUS = """
+            {"value": {"ready": true, "message": "Ready", "nodes": [{"id": "n1", "uri": "http://localhost:5555",
+            "maxSessions": 1, "availability": "UP", "slots": []}]}}""";
+
+    private final AtomicReference<String> body = new AtomicReference<>(STATUS);
+    private final HubTopology topology = new HubTopology();
+    private HttpServer server;
+    private Hub hub;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(Hub.STATUS_PATH, exchange -> {
+            String text = body.get();
+            if (text == null) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            byte[] data = text.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, data.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(data);
+            }
+        });
+        server.start();
+        hub = Hub.create(Server.get("localhost"), server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void cleanup() {
+        server.stop(0);
+    }
+
+    @Test
+    void reconcile() {
+        topology.reconcile(execute());
+        assertEquals(1, topology.getSnapshot().getNodes().size());
+        assertFalse(topology.isStale());
+        assertTrue(topology.getLastReconciled() > 0);
+    }
+
+    @Test
+    void failedStatusKeepsSnapshot() {
+        topology.reconcile(execute());
+        HubTopology.Snapshot snapshot = topology.getSnapshot();
+        long lastReconciled = topology.getLastReconciled();
+
+        body.set(null);
+        HubStatus status = execute();
+        assertFalse(status.isSuccessful());
+        topology.reconcile(status);
+        assertSame(snapshot, topology.getSnapshot());
+        assertTrue(topology.isStale());
+        assertEquals(lastReconciled, topology.getLastReconciled());
+    }
+
+    @Test
+    void failedStatusBeforeFirstReconcile() {
+        body.set(null);
+        topology.reconcile(execute());
+        assertTrue(topology.getSnapshot().isEmpty());
+        assertTrue(topology.isStale());
+        assertEquals(0, topology.getLastReconciled());
+    }
+
+    private HubStatus execute() {
+        HubStatus status = new HubStatus(hub, false);
+        status.execute();
+        return status;
+    }
+}
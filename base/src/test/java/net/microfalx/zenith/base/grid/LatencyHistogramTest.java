@@ -0,0 +1,42 @@
+package net.microfalx.zenith.base.grid;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyHistogramTest {
+
+    @Test
+    void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getAverage());
+        assertEquals(0, histogram.getPercentile(95));
+    }
+
+    @Test
+    void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(8);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1_500);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(157, histogram.getAverage());
+        assertEquals(10, histogram.getPercentile(50));
+        assertEquals(10, histogram.getPercentile(90));
+        assertEquals(2_000, histogram.getPercentile(95));
+    }
+
+    @Test
+    void outOfRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE / 2);
+        assertEquals(2, histogram.getCount());
+        assertEquals(1, histogram.getPercentile(50));
+        assertEquals(300_000, histogram.getPercentile(100));
+    }
+}
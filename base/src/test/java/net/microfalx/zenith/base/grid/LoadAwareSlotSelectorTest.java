@@ -0,0 +1,66 @@
+package net.microfalx.zenith.base.grid;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.grid.data.NodeId;
+
+import java.util.List;
+import java.util.UUID;
+
+import static net.microfalx.zenith.base.grid.LoadAwareSlotSelector.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LoadAwareSlotSelectorTest {
+
+    private static final double DELTA = 0.000_001;
+
+    private final NodeId first = new NodeId(UUID.randomUUID());
+    private final NodeId second = new NodeId(UUID.randomUUID());
+    private long time = 1_000_000;
+    private final LoadAwareSlotSelector selector = new LoadAwareSlotSelector(() -> time);
+
+    @Test
+    void sessionOnFallbackNode() {
+        selector.selected(List.of(first, second));
+        time += 500;
+        selector.created(second);
+        time += PENDING_TIMEOUT + 1;
+        selector.refresh();
+        assertEquals(0, selector.getPenalty(first), DELTA);
+        assertEquals(0, selector.getPenalty(second), DELTA);
+    }
+
+    @Test
+    void failureChargedToPreferredNode() {
+        selector.selected(List.of(first, second));
+        time += PENDING_TIMEOUT + 1;
+        selector.refresh();
+        assertEquals(FAILURE_WEIGHT * 0.2, selector.getPenalty(first), DELTA);
+        assertEquals(0, selector.getPenalty(second), DELTA);
+    }
+
+    @Test
+    void failureFadesOverTime() {
+        selector.selected(List.of(first));
+        time += PENDING_TIMEOUT + 1;
+        selector.refresh();
+        time += FAILURE_HALF_LIFE;
+        selector.refresh();
+        assertEquals(FAILURE_WEIGHT * 0.1, selector.getPenalty(first), DELTA);
+        time += 10 * FAILURE_HALF_LIFE;
+        selector.refresh();
+        assertEquals(0, selector.getPenalty(first), 0.001);
+    }
+
+    @Test
+    void latencyRelativeToFastestNode() {
+        selector.selected(List.of(first));
+        time += 100;
+        selector.created(first);
+        selector.selected(List.of(second));
+        time += 300;
+        selector.created(second);
+        selector.refresh();
+        assertEquals(0, selector.getPenalty(first), DELTA);
+        assertEquals(LATENCY_WEIGHT * 2, selector.getPenalty(second), DELTA);
+    }
+}
@@ -0,0 +1,111 @@
+package net.microfalx.zenith.base.grid;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.microfalx.zenith.api.common.Server;
+import net.microfalx.zenith.api.node.Node;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NodeStatusCollectorTest {
+
+    private static final String READY_STATUS = """
+            {"value": {"ready": true, "message": "Ready", "node": {"nodeId": "n1", "externalUri": "http://localhost:5555",
+            "maxSessions": 1, "availability": "UP", "slots": []}}}""";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final NodeStatusCollector collector = new NodeStatusCollector();
+    private HttpServer readyServer;
+    private HttpServer blockedServer;
+
+    @BeforeEach
+    void setup() throws IOException {
+        readyServer = createServer(exchange -> {
+            byte[] data = READY_STATUS.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, data.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(data);
+            }
+        });
+        blockedServer = createServer(exchange -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+    }
+
+    @AfterEach
+    void cleanup() {
+        release.countDown();
+        readyServer.stop(0);
+        blockedServer.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void ready() {
+        Node node = createNode(readyServer.getAddress().getPort());
+        NodeStatusCollector.Result result = collector.collect(List.of(node), Duration.ofSeconds(10));
+        assertEquals(1, result.getStatuses().size());
+        assertEquals(0, result.getUnavailable().size());
+    }
+
+    @Test
+    void boundedWhenNodeDoesNotAnswer() {
+        Node node = createNode(blockedServer.getAddress().getPort());
+        long start = System.nanoTime();
+        NodeStatusCollector.Result result = collector.collect(List.of(node), Duration.ofSeconds(30));
+        long duration = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        assertEquals(List.of(node), List.copyOf(result.getUnavailable()));
+        assertTrue(duration < 10_000, "Sweep took " + duration + "ms");
+    }
+
+    @Test
+    void skipAfterRepeatedFailures() throws IOException {
+        Node node = createNode(getClosedPort());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, collector.collect(List.of(node), Duration.ofSeconds(10)).getUnavailable().size());
+        }
+        NodeStatusCollector.Result result = collector.collect(List.of(node), Duration.ofSeconds(10));
+        assertEquals(0, result.getUnavailable().size());
+        assertEquals(List.of(node), List.copyOf(result.getSkipped()));
+        assertTrue(result.isPartial());
+    }
+
+    private HttpServer createServer(HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(Node.STATUS_PATH, handler);
+        server.setExecutor(executor);
+        server.start();
+        return server;
+    }
+
+    private static Node createNode(int port) {
+        return Node.create(Server.get("localhost"), port);
+    }
+
+    private static int getClosedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package net.microfalx.zenith.base.grid;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.events.EventBus;
+import org.openqa.selenium.events.local.GuavaEventBus;
+import org.openqa.selenium.grid.data.Session;
+import org.openqa.selenium.remote.SessionId;
+import org.openqa.selenium.remote.tracing.empty.NullTracer;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SessionMap#get(SessionId)} throughput with 64 readers (the Router proxying commands) while
+ * sessions are created and closed concurrently.
+ * <p>
+ * Run it with {@code main} (from the IDE or with the test classpath), it is not part of the regular test suite.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionMapBenchmark {
+
+    private static final int SESSION_COUNT = 512;
+    private static final URI NODE_URI = URI.create("http://localhost:5555");
+
+    private EventBus bus;
+    private SessionMap sessionMap;
+    private SessionId[] ids;
+
+    @Setup
+    public void setup() {
+        bus = new GuavaEventBus();
+        sessionMap = new SessionMap(new NullTracer(), bus);
+        ids = new SessionId[SESSION_COUNT];
+        for (int i = 0; i < SESSION_COUNT; i++) {
+            ids[i] = new SessionId(UUID.randomUUID());
+            sessionMap.add(createSession(ids[i]));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        bus.close();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(64)
+    public Session get() {
+        SessionId id = ids[ThreadLocalRandom.current().nextInt(SESSION_COUNT)];
+        try {
+            return sessionMap.get(id);
+        } catch (org.openqa.selenium.NoSuchSessionException e) {
+            // the session was closed by the writers and not re-created yet
+            return null;
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public void churn() {
+        SessionId id = ids[ThreadLocalRandom.current().nextInt(SESSION_COUNT)];
+        sessionMap.remove(id);
+        sessionMap.add(createSession(id));
+    }
+
+    private static Session createSession(SessionId id) {
+        ImmutableCapabilities capabilities = new ImmutableCapabilities("browserName", "chrome");
+        return new Session(id, NODE_URI, capabilities, capabilities, Instant.now());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(SessionMapBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
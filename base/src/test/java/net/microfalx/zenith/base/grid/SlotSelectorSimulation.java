@@ -0,0 +1,159 @@
+package net.microfalx.zenith.base.grid;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.grid.data.*;
+import org.openqa.selenium.grid.distributor.selector.DefaultSlotSelector;
+import org.openqa.selenium.grid.distributor.selector.SlotSelector;
+import org.openqa.selenium.remote.SessionId;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Compares {@link LoadAwareSlotSelector} with the default Selenium selector on a simulated Grid.
+ * <p>
+ * The Grid has nodes with the same number of slots but different speed and reliability: the session creation
+ * latency grows with the load of the node, and some nodes fail a fraction of the sessions. Sessions arrive at a
+ * constant rate and live for a random duration; the simulation reports the creation latency (average and p95),
+ * the failure rate and the time spent selecting slots.
+ * <p>
+ * Run it with {@code main} (from the IDE or with the test classpath), it is not part of the regular test suite.
+ */
+public class SlotSelectorSimulation {
+
+    private static final int STEPS = 20_000;
+    private static final long STEP_MILLIS = 100;
+    private static final int ARRIVALS_PER_STEP = 2;
+    private static final int SLOTS_PER_NODE = 8;
+    private static final Capabilities CHROME = new ImmutableCapabilities("browserName", "chrome");
+
+    private static long now;
+
+    public static void main(String[] args) {
+        run("Default", new DefaultSlotSelector());
+        run("Load Aware", new LoadAwareSlotSelector(() -> now));
+    }
+
+    private static void run(String name, SlotSelector selector) {
+        Random random = new Random(42);
+        List<SimulatedNode> nodes = createNodes();
+        now = 0;
+        long selectionNanos = 0;
+        int failed = 0;
+        int rejected = 0;
+        List<Long> latencies = new ArrayList<>();
+        for (int step = 0; step < STEPS; step++) {
+            now += STEP_MILLIS;
+            for (SimulatedNode node : nodes) node.expire(now);
+            if (selector instanceof LoadAwareSlotSelector loadAwareSelector && step % 10 == 0) {
+                loadAwareSelector.refresh();
+            }
+            for (int arrival = 0; arrival < ARRIVALS_PER_STEP; arrival++) {
+                Set<NodeStatus> statuses = new HashSet<>();
+                for (SimulatedNode node : nodes) statuses.add(node.getStatus());
+                long start = System.nanoTime();
+                Set<SlotId> slots = selector.selectSlot(CHROME, statuses, new DefaultSlotMatcher());
+                selectionNanos += System.nanoTime() - start;
+                if (slots.isEmpty()) {
+                    rejected++;
+                    continue;
+                }
+                SlotId slotId = slots.iterator().next();
+                SimulatedNode node = nodes.stream().filter(n -> n.id.equals(slotId.getOwningNodeId())).findFirst().orElseThrow();
+                if (random.nextDouble() < node.failureRate) {
+                    failed++;
+                    continue;
+                }
+                long latency = node.getLatency(random);
+                latencies.add(latency);
+                node.start(slotId, now + latency + 5_000 + random.nextInt(55_000));
+                if (selector instanceof LoadAwareSlotSelector loadAwareSelector) {
+                    // the session is reported when created, advance the clock for the duration of the creation
+                    now += latency;
+                    loadAwareSelector.created(node.id);
+                    now -= latency;
+                }
+            }
+        }
+        Collections.sort(latencies);
+        double average = latencies.stream().mapToLong(Long::longValue).average().orElse(0);
+        long p95 = latencies.isEmpty() ? 0 : latencies.get((int) (latencies.size() * 0.95));
+        int requests = STEPS * ARRIVALS_PER_STEP;
+        System.out.printf("%-12s latency avg %6.0f ms, p95 %6d ms, failed %5.2f%%, rejected %5.2f%%, selection %5.2f us%n",
+                name, average, p95, 100.0 * failed / requests, 100.0 * rejected / requests,
+                selectionNanos / 1000.0 / requests);
+    }
+
+    private static List<SimulatedNode> createNodes() {
+        List<SimulatedNode> nodes = new ArrayList<>();
+        nodes.add(new SimulatedNode(1, 800, 0.0, "130.0"));
+        nodes.add(new SimulatedNode(2, 900, 0.0, "130.0"));
+        nodes.add(new SimulatedNode(3, 1_500, 0.01, "129.0"));
+        nodes.add(new SimulatedNode(4, 3_000, 0.05, "130.0"));
+        nodes.add(new SimulatedNode(5, 6_000, 0.20, "128.0"));
+        return nodes;
+    }
+
+    private static class SimulatedNode {
+
+        private final NodeId id = new NodeId(UUID.randomUUID());
+        private final URI uri;
+        private final long baseLatency;
+        private final double failureRate;
+        private final String browserVersion;
+        private final SlotId[] slots = new SlotId[SLOTS_PER_NODE];
+        private final long[] busyUntil = new long[SLOTS_PER_NODE];
+
+        private SimulatedNode(int index, long baseLatency, double failureRate, String browserVersion) {
+            this.uri = URI.create("http://node" + index + ":5555");
+            this.baseLatency = baseLatency;
+            this.failureRate = failureRate;
+            this.browserVersion = browserVersion;
+            for (int i = 0; i < SLOTS_PER_NODE; i++) {
+                slots[i] = new SlotId(id, UUID.randomUUID());
+            }
+        }
+
+        private int getActive() {
+            int active = 0;
+            for (long until : busyUntil) {
+                if (until > 0) active++;
+            }
+            return active;
+        }
+
+        private long getLatency(Random random) {
+            double load = (double) getActive() / SLOTS_PER_NODE;
+            return (long) (baseLatency * (1 + 2 * load * load) * (0.8 + 0.4 * random.nextDouble()));
+        }
+
+        private void start(SlotId slotId, long until) {
+            for (int i = 0; i < SLOTS_PER_NODE; i++) {
+                if (slots[i].equals(slotId)) busyUntil[i] = until;
+            }
+        }
+
+        private void expire(long now) {
+            for (int i = 0; i < SLOTS_PER_NODE; i++) {
+                if (busyUntil[i] > 0 && busyUntil[i] <= now) busyUntil[i] = 0;
+            }
+        }
+
+        private NodeStatus getStatus() {
+            Capabilities stereotype = new ImmutableCapabilities("browserName", "chrome", "browserVersion", browserVersion);
+            Set<Slot> nodeSlots = new HashSet<>();
+            for (int i = 0; i < SLOTS_PER_NODE; i++) {
+                Session session = null;
+                if (busyUntil[i] > 0) {
+                    session = new Session(new SessionId(UUID.randomUUID()), uri, stereotype, stereotype, Instant.now());
+                }
+                nodeSlots.add(new Slot(slots[i], stereotype, Instant.now(), session));
+            }
+            return new NodeStatus(id, uri, SLOTS_PER_NODE, nodeSlots, Availability.UP, Duration.ofSeconds(60),
+                    Duration.ofSeconds(300), "4.0", Collections.emptyMap());
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package net.microfalx.zenith.client;
+
+import net.microfalx.metrics.Metrics;
+import org.openqa.selenium.*;
+
+import java.net.URI;
+import java.util.*;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * A sequence of commands executed with as few round trips to the browser as possible.
+ * <p>
+ * Consecutive commands which only read the current page are combined into a single script executed in the browser;
+ * navigation, clicks and screenshots are sent as WebDriver commands, with their own round trips. Each command returns a {@link Value} which holds
+ * the result after the batch is executed:
+ * <pre>
+ * CommandBatch batch = session.batch();
+ * batch.navigate(uri);
+ * CommandBatch.Value&lt;String&gt; title = batch.title();
+ * CommandBatch.Value&lt;List&lt;String&gt;&gt; links = batch.attributes("a", "href");
+ * batch.execute();
+ * </pre>
+ * Elements are selected with CSS selectors and attributes are read from the DOM (not the WebDriver
+ * attribute/property heuristics). A command which fails in the browser fails only its own value.
+ */
+public final class CommandBatch {
+
+    private static final Metrics METRICS = Metrics.of("Selenium").withGroup("Batch");
+
+    private static final String SCRIPT = """
+            var commands = arguments[0], results = [];
+            for (var i = 0; i < commands.length; i++) {
+              var command = commands[i];
+              try {
+                var elements = command.selector ? document.querySelectorAll(command.selector) : [];
+                switch (command.type) {
+                  case 'title': results.push(document.title); break;
+                  case 'url': results.push(window.location.href); break;
+                  case 'count': results.push(elements.length); break;
+                  case 'elements': results.push(Array.prototype.slice.call(elements)); break;
+                  case 'texts': results.push(Array.prototype.map.call(elements, function (e) { return e.innerText; })); break;
+                  case 'attributes': results.push(Array.prototype.map.call(elements, function (e) { return e.getAttribute(command.name); })); break;
+                  case 'script': results.push(new Function(command.script).apply(null, command.arguments)); break;
+                  default: throw new Error('Unknown command ' + command.type);
+                }
+              } catch (e) {
+                results.push({'zenith:error': String(e)});
+              }
+            }
+            return results;""";
+
+    private final Session session;
+    private final List<Command<?>> commands = new ArrayList<>();
+    private volatile int roundTrips;
+    private volatile int savedRoundTrips;
+    private volatile boolean executed;
+
+    CommandBatch(Session session) {
+        requireNonNull(session);
+        this.session = session;
+    }
+
+    /**
+     * Navigates to a page, waiting for the page to load (based on the page load strategy).
+     *
+     * @param uri the URI/URL
+     * @return a value with the URI
+     */
+    public Value<URI> navigate(URI uri) {
+        requireNonNull(uri);
+        return add(new Command<URI>(Type.NAVIGATE, 1).with("url", uri.toASCIIString()));
+    }
+
+    /**
+     * Returns the title of the current page.
+     *
+     * @return a non-null instance
+     */
+    public Value<String> title() {
+        return add(new Command<>(Type.TITLE, 1));
+    }
+
+    /**
+     * Returns the URL of the current page.
+     *
+     * @return a non-null instance
+     */
+    public Value<String> url() {
+        return add(new Command<>(Type.URL, 1));
+    }
+
+    /**
+     * Returns the number of elements matching a selector.
+     *
+     * @param selector the CSS selector
+     * @return a non-null instance
+     */
+    public Value<Integer> count(String selector) {
+        requireNonNull(selector);
+        return add(new Command<Integer>(Type.COUNT, 1).with("selector", selector));
+    }
+
+    /**
+     * Returns the elements matching a selector.
+     *
+     * @param selector the CSS selector
+     * @return a non-null instance
+     */
+    public Value<List<WebElement>> elements(String selector) {
+        requireNonNull(selector);
+        return add(new Command<List<WebElement>>(Type.ELEMENTS, 1).with("selector", selector));
+    }
+
+    /**
+     * Returns the (rendered) text of all elements matching a selector.
+     *
+     * @param selector the CSS selector
+     * @return a non-null instance
+     */
+    public Value<List<String>> texts(String selector) {
+        requireNonNull(selector);
+        return add(new Command<List<String>>(Type.TEXTS, 1).with("selector", selector).perElement());
+    }
+
+    /**
+     * Returns the value of an attribute for all elements matching a selector.
+     *
+     * @param selector the CSS selector
+     * @param name     the name of the attribute
+     * @return a non-null instance
+     */
+    public Value<List<String>> attributes(String selector, String name) {
+        requireNonNull(selector);
+        requireNonNull(name);
+        return add(new Command<List<String>>(Type.ATTRIBUTES, 1).with("selector", selector).with("name", name).perElement());
+    }
+
+    /**
+     * Clicks the first element matching a selector.
+     * <p>
+     * The click is a WebDriver click (the element is scrolled into view, must be interactable and receives real
+     * input events), so it ends the current group of scripted commands and costs the same round trips as the
+     * WebDriver API. If the click navigates to another page, commands queued after the click might run before the
+     * page changes; use {@link #navigate(URI)} or a separate batch to wait for the new page.
+     *
+     * @param selector the CSS selector
+     * @return a non-null instance
+     */
+    public Value<Boolean> click(String selector) {
+        requireNonNull(selector);
+        return add(new Command<Boolean>(Type.CLICK, 2).with("selector", selector));
+    }
+
+    /**
+     * Executes a script (the body of a function) in the browser.
+     *
+     * @param script    the script
+     * @param arguments the arguments, available as {@code arguments} to the script
+     * @param <T>       the type of the result
+     * @return a non-null instance
+     */
+    public <T> Value<T> script(String script, Object... arguments) {
+        requireNonNull(script);
+        return add(new Command<T>(Type.SCRIPT, 1).with("script", script).with("arguments", Arrays.asList(arguments)));
+    }
+
+    /**
+     * Captures the screen of the browser.
+     *
+     * @return a value with the PNG image
+     */
+    public Value<byte[]> screenshot() {
+        return add(new Command<>(Type.SCREENSHOT, 1));
+    }
+
+    /**
+     * Returns the number of round trips used to execute the batch.
+     *
+     * @return a positive integer
+     */
+    public int getRoundTrips() {
+        return roundTrips;
+    }
+
+    /**
+     * Returns the number of round trips saved compared with executing each command with the WebDriver API.
+     *
+     * @return a positive integer
+     */
+    public int getSavedRoundTrips() {
+        return savedRoundTrips;
+    }
+
+    /**
+     * Executes all commands, in the order they were added.
+     *
+     * @return the results, in the order of the commands (a failed command has a null result)
+     */
+    public List<Object> execute() {
+        if (executed) throw new SessionException("Batch was already executed");
+        executed = true;
+        WebDriver driver = session.getWebDriver();
+        int expectedRoundTrips = 0;
+        List<Command<?>> group = new ArrayList<>();
+        for (Command<?> command : commands) {
+            if (command.type.isScript()) {
+                group.add(command);
+                continue;
+            }
+            executeScript(driver, group);
+            executeCommand(driver, command);
+        }
+        executeScript(driver, group);
+        List<Object> results = new ArrayList<>(commands.size());
+        for (Command<?> command : commands) {
+            expectedRoundTrips += command.getRoundTrips();
+            results.add(command.value.value);
+        }
+        savedRoundTrips = Math.max(0, expectedRoundTrips - roundTrips);
+        METRICS.count("Executed");
+        if (savedRoundTrips > 0) METRICS.count("Saved Round Trips", savedRoundTrips);
+        return results;
+    }
+
+    private void executeScript(WebDriver driver, List<Command<?>> group) {
+        if (group.isEmpty()) return;
+        if (!(driver instanceof JavascriptExecutor executor)) {
+            throw new SessionException("Driver " + driver + " cannot execute scripts");
+        }
+        List<Map<String, Object>> arguments = new ArrayList<>(group.size());
+        for (Command<?> command : group) {
+            Map<String, Object> argument = new HashMap<>(command.parameters);
+            argument.put("type", command.type.name().toLowerCase());
+            arguments.add(argument);
+        }
+        roundTrips++;
+        METRICS.count("Round Trips");
+        List<Object> results = new ArrayList<>();
+        session.executeTask("Batch", o -> {
+            Object value = executor.executeScript(SCRIPT, arguments);
+            if (value instanceof List<?> list) results.addAll(list);
+        });
+        for (int i = 0; i < group.size(); i++) {
+            Object result = i < results.size() ? results.get(i) : null;
+            Command<?> command = group.get(i);
+            if (result instanceof Map<?, ?> map && map.containsKey("zenith:error")) {
+                command.value.fail(new JavascriptException(Objects.toString(map.get("zenith:error"))));
+            } else {
+                command.value.complete(command.type == Type.COUNT && result instanceof Number number ? number.intValue() : result);
+                if (result instanceof Collection<?> collection) command.elements = collection.size();
+            }
+        }
+        group.clear();
+    }
+
+    private void executeCommand(WebDriver driver, Command<?> command) {
+        roundTrips += command.roundTrips;
+        METRICS.count("Round Trips", command.roundTrips);
+        try {
+            switch (command.type) {
+                case NAVIGATE:
+                    String url = (String) command.parameters.get("url");
+                    session.executeTask("Batch Navigate", o -> driver.get(url));
+                    command.value.complete(URI.create(url));
+                    break;
+                case CLICK:
+                    By selector = By.cssSelector((String) command.parameters.get("selector"));
+                    session.executeTask("Batch Click", o -> driver.findElement(selector).click());
+                    command.value.complete(true);
+                    break;
+                case SCREENSHOT:
+                    command.value.complete(session.captureScreenShot());
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled command: " + command.type);
+            }
+        } catch (WebDriverException e) {
+            command.value.fail(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Value<T> add(Command<T> command) {
+        if (executed) throw new SessionException("Batch was already executed");
+        commands.add(command);
+        return (Value<T>) command.value;
+    }
+
+    /**
+     * Holds the result of a command, available after the batch is executed.
+     *
+     * @param <T> the type of the result
+     */
+    public static final class Value<T> {
+
+        private volatile Object value;
+        private volatile WebDriverException exception;
+        private volatile boolean done;
+
+        private Value() {
+        }
+
+        /**
+         * Returns whether the command was executed.
+         *
+         * @return {@code true} if executed (successfully or not), {@code false} otherwise
+         */
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Returns the result of the command.
+         *
+         * @return the result
+         * @throws WebDriverException if the command failed
+         */
+        @SuppressWarnings("unchecked")
+        public T get() {
+            if (!done) throw new SessionException("Batch was not executed");
+            if (exception != null) throw exception;
+            return (T) value;
+        }
+
+        private void complete(Object value) {
+            this.value = value;
+            this.done = true;
+        }
+
+        private void fail(WebDriverException exception) {
+            this.exception = exception;
+            this.done = true;
+        }
+    }
+
+    private enum Type {
+        NAVIGATE,
+        TITLE,
+        URL,
+        COUNT,
+        ELEMENTS,
+        TEXTS,
+        ATTRIBUTES,
+        CLICK,
+        SCRIPT,
+        SCREENSHOT;
+
+        private boolean isScript() {
+            return this != NAVIGATE && this != CLICK && this != SCREENSHOT;
+        }
+    }
+
+    private static class Command<T> {
+
+        private final Type type;
+        private final int roundTrips;
+        private final Map<String, Object> parameters = new HashMap<>();
+        private final Value<T> value = new Value<>();
+        private boolean perElement;
+        private int elements;
+
+        private Command(Type type, int roundTrips) {
+            this.type = type;
+            this.roundTrips = roundTrips;
+        }
+
+        private Command<T> with(String name, Object value) {
+            parameters.put(name, value);
+            return this;
+        }
+
+        private Command<T> perElement() {
+            this.perElement = true;
+            return this;
+        }
+
+        /**
+         * Returns the round trips needed by the WebDriver API: find the elements, and one more per element to read it.
+         */
+        private int getRoundTrips() {
+            return perElement ? roundTrips + elements : roundTrips;
+        }
+    }
+}
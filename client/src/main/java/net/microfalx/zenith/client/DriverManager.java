@@ -2,20 +2,67 @@ package net.microfalx.zenith.client;
 
 import io.github.bonigarcia.wdm.WebDriverManager;
 import io.github.bonigarcia.wdm.config.DriverManagerType;
+import net.microfalx.lang.JvmUtils;
+import net.microfalx.lang.StringUtils;
+import org.openqa.selenium.Platform;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.System.currentTimeMillis;
 import static net.microfalx.lang.ArgumentUtils.requireNonNull;
 
 /**
- * A Selenium Driver manager supported by {@link WebDriverManager}.
+ * A Selenium Driver manager supported by {@link WebDriverManager}, with a local driver cache.
+ * <p>
+ * Drivers are stored by content (SHA-256 of the executable) and indexed by browser and major version of the
+ * installed browser. A driver is resolved once per JVM: when the cache has a driver for the installed browser it is
+ * used without any network access (and refreshed in the background once it gets old); when the version of the
+ * installed browser cannot be detected, the most recent driver in the cache is used the same way. Otherwise the driver is
+ * downloaded with {@link WebDriverManager} and added to the cache. When the download fails (no network), the most
+ * recent driver available in the cache for the browser is used.
+ * <p>
+ * Network access can be disabled completely with the {@code zenith.driver.offline} system property.
  */
 public class DriverManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DriverManager.class);
 
+    private static final String OFFLINE_PROPERTY = "zenith.driver.offline";
+    private static final Duration REFRESH_INTERVAL = Duration.ofDays(1);
+    private static final Pattern VERSION_PATTERN = Pattern.compile("(\\d+)(\\.\\d+)*");
+
+    private static final String DRIVER_VERSION = "driver.version";
+    private static final String DRIVER_HASH = "driver.hash";
+    private static final String DRIVER_NAME = "driver.name";
+    private static final String RESOLVED_AT = "resolved.at";
+
     private static volatile DriverManager instance;
 
+    private final File directory;
+    private final Resolver resolver;
+    private final boolean offline;
+    private final Map<Options.Browser, File> drivers = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Zenith Driver Refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public static DriverManager getInstance() {
         if (instance == null) {
             synchronized (DriverManager.class) {
@@ -26,37 +73,311 @@ public class DriverManager {
     }
 
     private DriverManager() {
+        this(new File(new File(JvmUtils.getCacheDirectory(), "zenith"), "drivers"), new WebDriverManagerResolver(),
+                Boolean.getBoolean(OFFLINE_PROPERTY));
+    }
+
+    DriverManager(File directory, Resolver resolver, boolean offline) {
+        requireNonNull(directory);
+        requireNonNull(resolver);
+        this.directory = directory;
+        this.resolver = resolver;
+        this.offline = offline;
     }
 
     /**
      * Registers a driver with the right version for a given browser.
+     * <p>
+     * The driver is resolved only once, subsequent calls return immediately.
      *
      * @param browser the browser
      */
     public void registerDriver(Options.Browser browser) {
         requireNonNull(browser);
-        switch (browser) {
-            case CHROME:
-                registerDriver(DriverManagerType.CHROME);
-                break;
-            case FIREFOX:
-                registerDriver(DriverManagerType.FIREFOX);
-                break;
-            case IE:
-                registerDriver(DriverManagerType.IEXPLORER);
-                break;
-        }
+        File driver = drivers.computeIfAbsent(browser, this::resolve);
+        if (driver.exists()) System.setProperty(getSystemProperty(browser), driver.getAbsolutePath());
     }
 
     /**
-     * Registers a driver for a given browser.
+     * Returns the driver registered for a browser.
      *
-     * @param type the driver type (browser)
+     * @param browser the browser
+     * @return the driver executable, null if a driver was not registered yet or could not be resolved
+     */
+    public File getDriver(Options.Browser browser) {
+        requireNonNull(browser);
+        File driver = drivers.get(browser);
+        return driver != null && driver.exists() ? driver : null;
+    }
+
+    private File resolve(Options.Browser browser) {
+        String majorVersion = resolver.getBrowserMajorVersion(browser);
+        Properties entry = StringUtils.isNotEmpty(majorVersion) ? readEntry(browser, majorVersion) : readNewestEntry(browser);
+        File driver = entry != null ? getBlob(entry) : null;
+        if (driver != null) {
+            LOGGER.info("Driver " + getBrowserName(browser) + " registered from cache, version " + entry.getProperty(DRIVER_VERSION));
+            long resolvedAt = Long.parseLong(entry.getProperty(RESOLVED_AT, "0"));
+            if (!offline && currentTimeMillis() - resolvedAt > REFRESH_INTERVAL.toMillis()) {
+                refreshExecutor.execute(() -> {
+                    File refreshed = download(browser, majorVersion);
+                    if (refreshed != null) drivers.put(browser, refreshed);
+                });
+            }
+            return driver;
+        }
+        if (!offline) {
+            driver = download(browser, majorVersion);
+            if (driver != null) return driver;
+        }
+        entry = readNewestEntry(browser);
+        driver = entry != null ? getBlob(entry) : null;
+        if (driver != null) {
+            LOGGER.warn("Driver " + getBrowserName(browser) + " for browser version " + StringUtils.defaultIfEmpty(majorVersion, "unknown")
+                    + " is not available, use cached version " + entry.getProperty(DRIVER_VERSION));
+            return driver;
+        }
+        LOGGER.warn("Driver " + getBrowserName(browser) + " is not available, Selenium will resolve the driver");
+        return new File(directory, "missing");
+    }
+
+    private File download(Options.Browser browser, String majorVersion) {
+        try {
+            File downloaded = resolver.download(browser, majorVersion);
+            if (downloaded == null || !downloaded.isFile()) throw new IOException("Driver was not downloaded");
+            String driverVersion = StringUtils.defaultIfEmpty(resolver.getDriverVersion(browser), "unknown");
+            if (StringUtils.isEmpty(majorVersion)) majorVersion = getMajorVersion(driverVersion);
+            File driver = storeBlob(downloaded);
+            Properties entry = new Properties();
+            entry.setProperty(DRIVER_VERSION, driverVersion);
+            entry.setProperty(DRIVER_HASH, driver.getParentFile().getName());
+            entry.setProperty(DRIVER_NAME, driver.getName());
+            entry.setProperty(RESOLVED_AT, Long.toString(currentTimeMillis()));
+            if (StringUtils.isNotEmpty(majorVersion)) writeEntry(browser, majorVersion, entry);
+            LOGGER.info("Driver " + getBrowserName(browser) + " registered, version " + driverVersion);
+            return driver;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to download driver " + getBrowserName(browser) + ", root cause: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private File getBlob(Properties entry) {
+        String hash = entry.getProperty(DRIVER_HASH);
+        String name = entry.getProperty(DRIVER_NAME);
+        if (StringUtils.isEmpty(hash) || StringUtils.isEmpty(name)) return null;
+        File file = new File(new File(getBlobsDirectory(), hash), name);
+        return file.isFile() ? file : null;
+    }
+
+    private File storeBlob(File file) throws IOException {
+        File blobDirectory = new File(getBlobsDirectory(), hash(file));
+        File blob = new File(blobDirectory, file.getName());
+        if (!blob.isFile()) {
+            Files.createDirectories(blobDirectory.toPath());
+            File tmp = new File(blobDirectory, file.getName() + ".tmp");
+            Files.copy(file.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            tmp.setExecutable(true);
+            Files.move(tmp.toPath(), blob.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return blob;
+    }
+
+    private Properties readEntry(Options.Browser browser, String majorVersion) {
+        File file = new File(getIndexDirectory(browser), majorVersion + ".properties");
+        if (!file.isFile()) return null;
+        Properties entry = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            entry.load(reader);
+            return entry;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read driver cache entry " + file + ", root cause: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Properties readNewestEntry(Options.Browser browser) {
+        String[] names = getIndexDirectory(browser).list();
+        if (names == null) return null;
+        int newest = -1;
+        for (String name : names) {
+            if (!name.endsWith(".properties")) continue;
+            try {
+                newest = Math.max(newest, Integer.parseInt(name.substring(0, name.length() - ".properties".length())));
+            } catch (NumberFormatException e) {
+                // not an entry
+            }
+        }
+        return newest >= 0 ? readEntry(browser, Integer.toString(newest)) : null;
+    }
+
+    private void writeEntry(Options.Browser browser, String majorVersion, Properties entry) throws IOException {
+        File indexDirectory = getIndexDirectory(browser);
+        Files.createDirectories(indexDirectory.toPath());
+        File file = new File(indexDirectory, majorVersion + ".properties");
+        File tmp = new File(indexDirectory, majorVersion + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            entry.store(writer, null);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private File getBlobsDirectory() {
+        return new File(directory, "blobs");
+    }
+
+    private File getIndexDirectory(Options.Browser browser) {
+        return new File(directory, getBrowserName(browser));
+    }
+
+    private static String hash(File file) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int count;
+            while ((count = inputStream.read(buffer)) > 0) {
+                digest.update(buffer, 0, count);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String getMajorVersion(String value) {
+        if (value == null) return null;
+        Matcher matcher = VERSION_PATTERN.matcher(value);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static String getBrowserName(Options.Browser browser) {
+        return browser.name().toLowerCase();
+    }
+
+    private static String getSystemProperty(Options.Browser browser) {
+        return switch (browser) {
+            case CHROME -> "webdriver.chrome.driver";
+            case FIREFOX -> "webdriver.gecko.driver";
+            case IE -> "webdriver.ie.driver";
+        };
+    }
+
+    /**
+     * Resolves browser versions and downloads drivers.
      */
-    private void registerDriver(DriverManagerType type) {
-        WebDriverManager driverManager = WebDriverManager.getInstance(type);
-        driverManager.avoidTmpFolder();
-        driverManager.setup();
-        LOGGER.info("Driver " + type.getBrowserName() + " registered, version " + driverManager.getDownloadedDriverVersion());
+    interface Resolver {
+
+        /**
+         * Returns the major version of the browser installed locally, without network access.
+         *
+         * @param browser the browser
+         * @return the major version, null if the browser cannot be found
+         */
+        String getBrowserMajorVersion(Options.Browser browser);
+
+        /**
+         * Downloads the driver for a browser.
+         *
+         * @param browser      the browser
+         * @param majorVersion the major version of the browser, null if not known
+         * @return the driver executable
+         */
+        File download(Options.Browser browser, String majorVersion);
+
+        /**
+         * Returns the version of the last driver downloaded for a browser.
+         *
+         * @param browser the browser
+         * @return the version, null if not known
+         */
+        String getDriverVersion(Options.Browser browser);
+    }
+
+    private static class WebDriverManagerResolver implements Resolver {
+
+        private static final Map<Options.Browser, String[][]> COMMANDS = new EnumMap<>(Options.Browser.class);
+        private static final long VERSION_TIMEOUT = 5_000;
+        private static final String REGISTRY_VALUE_TYPE = "REG_SZ";
+
+        @Override
+        public String getBrowserMajorVersion(Options.Browser browser) {
+            for (String[] command : COMMANDS.getOrDefault(browser, new String[0][])) {
+                try {
+                    String output = execute(command);
+                    int registryValue = output.indexOf(REGISTRY_VALUE_TYPE);
+                    if (registryValue >= 0) output = output.substring(registryValue + REGISTRY_VALUE_TYPE.length());
+                    String version = getMajorVersion(output);
+                    if (version != null) return version;
+                } catch (IOException e) {
+                    // not installed under this name
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Executes a command and returns its output, the output is collected in a file so the wait for the
+         * command is bounded even if the command never closes its output.
+         */
+        private static String execute(String[] command) throws IOException, InterruptedException {
+            File output = File.createTempFile("zenith-browser-", ".out");
+            try {
+                Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                        .redirectOutput(output).start();
+                if (!process.waitFor(VERSION_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    process.destroyForcibly();
+                    throw new IOException("Command '" + String.join(" ", command) + "' did not complete in time");
+                }
+                return Files.readString(output.toPath(), StandardCharsets.UTF_8);
+            } finally {
+                if (!output.delete()) output.deleteOnExit();
+            }
+        }
+
+        @Override
+        public File download(Options.Browser browser, String majorVersion) {
+            WebDriverManager driverManager = WebDriverManager.getInstance(getType(browser));
+            driverManager.avoidTmpFolder();
+            if (StringUtils.isNotEmpty(majorVersion)) driverManager.browserVersion(majorVersion);
+            driverManager.setup();
+            return driverManager.getDownloadedDriverPath() != null ? new File(driverManager.getDownloadedDriverPath()) : null;
+        }
+
+        @Override
+        public String getDriverVersion(Options.Browser browser) {
+            return WebDriverManager.getInstance(getType(browser)).getDownloadedDriverVersion();
+        }
+
+        private static DriverManagerType getType(Options.Browser browser) {
+            return switch (browser) {
+                case CHROME -> DriverManagerType.CHROME;
+                case FIREFOX -> DriverManagerType.FIREFOX;
+                case IE -> DriverManagerType.IEXPLORER;
+            };
+        }
+
+        static {
+            if (Platform.getCurrent().is(Platform.WINDOWS)) {
+                COMMANDS.put(Options.Browser.CHROME, new String[][]{
+                        {"reg", "query", "HKCU\\Software\\Google\\Chrome\\BLBeacon", "/v", "version"},
+                        {"reg", "query", "HKLM\\Software\\Google\\Chrome\\BLBeacon", "/v", "version"},
+                        {"reg", "query", "HKLM\\Software\\Wow6432Node\\Google\\Chrome\\BLBeacon", "/v", "version"}});
+                COMMANDS.put(Options.Browser.FIREFOX, new String[][]{
+                        {"reg", "query", "HKLM\\Software\\Mozilla\\Mozilla Firefox", "/v", "CurrentVersion"},
+                        {"reg", "query", "HKCU\\Software\\Mozilla\\Mozilla Firefox", "/v", "CurrentVersion"}});
+            } else if (Platform.getCurrent().is(Platform.MAC)) {
+                COMMANDS.put(Options.Browser.CHROME, new String[][]{
+                        {"/Applications/Google Chrome.app/Contents/MacOS/Google Chrome", "--version"},
+                        {"/Applications/Chromium.app/Contents/MacOS/Chromium", "--version"}});
+                COMMANDS.put(Options.Browser.FIREFOX, new String[][]{
+                        {"/Applications/Firefox.app/Contents/MacOS/firefox", "--version"}});
+            } else {
+                COMMANDS.put(Options.Browser.CHROME, new String[][]{{"google-chrome", "--version"},
+                        {"google-chrome-stable", "--version"}, {"chromium", "--version"}, {"chromium-browser", "--version"}});
+                COMMANDS.put(Options.Browser.FIREFOX, new String[][]{{"firefox", "--version"}});
+            }
+        }
     }
 }
@@ -0,0 +1,134 @@
+package net.microfalx.zenith.client;
+
+import net.microfalx.lang.ExceptionUtils;
+import net.microfalx.metrics.Metrics;
+import net.microfalx.zenith.api.hub.HubSelector;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.System.currentTimeMillis;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+import static net.microfalx.lang.TimeUtils.millisSince;
+
+/**
+ * Selects the hub used by a remote session, when a session can use more than one hub (see
+ * {@link Options#withHubUris(Collection)}).
+ * <p>
+ * The status of each hub ({@code /status}) is checked at most once every few seconds and cached for the JVM; the
+ * session uses one of the hubs which are ready, preferring the least loaded ones (used slots relative to all slots,
+ * see {@link HubSelector}). A hub which fails to create a session is skipped until its status is checked again.
+ */
+final class HubLocator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HubLocator.class);
+
+    private static final Metrics METRICS = Metrics.of("Selenium").withGroup("Hub");
+
+    private static final Duration STATUS_INTERVAL = Duration.ofSeconds(5);
+    private static final Duration STATUS_TIMEOUT = Duration.ofSeconds(2);
+
+    private static final HubLocator INSTANCE = new HubLocator();
+
+    private final Map<URI, Status> statuses = new ConcurrentHashMap<>();
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(STATUS_TIMEOUT).build();
+
+    static HubLocator getInstance() {
+        return INSTANCE;
+    }
+
+    private HubLocator() {
+    }
+
+    /**
+     * Selects a hub.
+     *
+     * @param uris the URIs of the hubs
+     * @return the URI of the selected hub, the first hub if none is ready
+     */
+    URI select(List<URI> uris) {
+        requireNonNull(uris);
+        if (uris.size() == 1) return uris.get(0);
+        refresh(uris);
+        List<Status> ready = new ArrayList<>();
+        for (URI uri : uris) {
+            Status status = statuses.get(uri);
+            if (status != null && status.ready) ready.add(status);
+        }
+        Optional<Status> selected = HubSelector.select(ready, status -> status.load);
+        if (selected.isEmpty()) METRICS.count("Not Ready");
+        return selected.map(status -> status.uri).orElse(uris.get(0));
+    }
+
+    /**
+     * Records that a hub failed to create a session.
+     *
+     * @param uri the URI of the hub
+     */
+    void failed(URI uri) {
+        requireNonNull(uri);
+        METRICS.count("Failed");
+        statuses.put(uri, new Status(uri, false, 0));
+    }
+
+    private void refresh(List<URI> uris) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (URI uri : uris) {
+            Status status = statuses.get(uri);
+            if (status != null && millisSince(status.checkedAt) < STATUS_INTERVAL.toMillis()) continue;
+            HttpRequest request = HttpRequest.newBuilder(URI.create(uri.toASCIIString() + "/status"))
+                    .timeout(STATUS_TIMEOUT).GET().build();
+            futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .thenAccept(response -> statuses.put(uri, parse(uri, response)))
+                    .exceptionally(throwable -> {
+                        LOGGER.debug("Failed to retrieve status of hub " + uri + ", root cause: "
+                                + ExceptionUtils.getRootCauseMessage(throwable));
+                        statuses.put(uri, new Status(uri, false, 0));
+                        return null;
+                    }));
+        }
+        if (futures.isEmpty()) return;
+        METRICS.count("Refresh");
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Status parse(URI uri, HttpResponse<String> response) {
+        if (response.statusCode() != 200) return new Status(uri, false, 0);
+        Map<String, Object> body = new Json().toType(response.body(), Json.MAP_TYPE);
+        Map<String, Object> value = (Map<String, Object>) body.getOrDefault("value", Collections.emptyMap());
+        boolean ready = Boolean.TRUE.equals(value.get("ready"));
+        int total = 0;
+        int used = 0;
+        for (Map<String, Object> node : (Collection<Map<String, Object>>) value.getOrDefault("nodes", Collections.emptyList())) {
+            for (Map<String, Object> slot : (Collection<Map<String, Object>>) node.getOrDefault("slots", Collections.emptyList())) {
+                total++;
+                if (slot.get("session") != null) used++;
+            }
+        }
+        return new Status(uri, ready, total == 0 ? 100 : 100f * used / total);
+    }
+
+    private static class Status {
+
+        private final URI uri;
+        private final boolean ready;
+        private final float load;
+        private final long checkedAt = currentTimeMillis();
+
+        private Status(URI uri, boolean ready, float load) {
+            this.uri = uri;
+            this.ready = ready;
+            this.load = load;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package net.microfalx.zenith.client;
+
+import net.microfalx.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * A bounded buffer of formatted log lines.
+ * <p>
+ * Lines are formatted once, when they are appended, and the buffer keeps only the most recent lines (bounded by
+ * the number of lines and characters). Lines which are evicted can be spilled to a resource, so nothing is lost
+ * while the memory used by a session stays capped; the lines still retained are spilled when the buffer is closed,
+ * so the resource ends up with the whole log. A line longer than the character limit is truncated.
+ * <p>
+ * Each line gets a sequence number, which allows readers to keep a cursor and read only the lines appended since
+ * their last read.
+ */
+final class LogBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogBuffer.class);
+
+    static final int DEFAULT_MAX_LINES = 10_000;
+    static final int DEFAULT_MAX_CHARS = 1024 * 1024;
+
+    private static final String TRUNCATED = "...";
+
+    private final String name;
+    private final Line[] lines;
+    private final int maxChars;
+
+    private int head;
+    private int size;
+    private long chars;
+    private long sequence;
+
+    private volatile Resource spill;
+    private Writer spillWriter;
+
+    LogBuffer(String name) {
+        this(name, DEFAULT_MAX_LINES, DEFAULT_MAX_CHARS);
+    }
+
+    LogBuffer(String name, int maxLines, int maxChars) {
+        requireNonNull(name);
+        this.name = name;
+        this.lines = new Line[maxLines];
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Returns the name of the buffer (usually the log type).
+     *
+     * @return a non-null instance
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Changes the resource which receives evicted lines.
+     *
+     * @param spill the resource, null to discard evicted lines
+     */
+    synchronized void setSpill(Resource spill) {
+        closeSpill();
+        this.spill = spill;
+    }
+
+    /**
+     * Returns whether the buffer has no lines.
+     *
+     * @return {@code true} if empty, {@code false} otherwise
+     */
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the sequence number of the next line, which is also the cursor after a full read.
+     *
+     * @return a positive integer
+     */
+    synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Appends a formatted line.
+     *
+     * @param level the level of the line
+     * @param text  the text (without a new line)
+     */
+    synchronized void append(Level level, String text) {
+        requireNonNull(level);
+        requireNonNull(text);
+        if (text.length() + 1 > maxChars) {
+            int length = Math.max(0, maxChars - 1 - TRUNCATED.length());
+            text = length > 0 ? text.substring(0, length) + TRUNCATED : text.substring(0, Math.max(0, maxChars - 1));
+        }
+        Line line = new Line(level.intValue(), text);
+        while (size > 0 && (size == lines.length || chars + line.text.length() + 1 > maxChars)) {
+            evict();
+        }
+        lines[(head + size) % lines.length] = line;
+        size++;
+        chars += line.text.length() + 1;
+        sequence++;
+    }
+
+    /**
+     * Appends the lines retained by the buffer to a builder.
+     *
+     * @param builder the builder
+     * @param level   the minimum level (exclusive), null to include all lines
+     */
+    void appendTo(StringBuilder builder, Level level) {
+        appendTo(builder, 0, level);
+    }
+
+    /**
+     * Appends the lines retained by the buffer and appended after a cursor.
+     *
+     * @param builder the builder
+     * @param cursor  the cursor returned by a previous read, 0 to read all lines
+     * @param level   the minimum level (exclusive), null to include all lines
+     * @return the cursor to be used for the next read
+     */
+    synchronized long appendTo(StringBuilder builder, long cursor, Level level) {
+        requireNonNull(builder);
+        long first = sequence - size;
+        int start = (int) Math.max(0, cursor - first);
+        for (int i = start; i < size; i++) {
+            Line line = lines[(head + i) % lines.length];
+            if (level != null && line.level <= level.intValue()) continue;
+            builder.append(line.text).append('\n');
+        }
+        return sequence;
+    }
+
+    /**
+     * Removes all lines.
+     */
+    synchronized void clear() {
+        while (size > 0) evict();
+    }
+
+    /**
+     * Spills the retained lines (which stay available for reading) and releases the resources used to spill lines.
+     * <p>
+     * Lines appended after the buffer is closed are not spilled anymore.
+     */
+    synchronized void close() {
+        for (int i = 0; i < size && spill != null; i++) {
+            spill(lines[(head + i) % lines.length]);
+        }
+        spill = null;
+        closeSpill();
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder((int) chars);
+        appendTo(builder, 0, null);
+        return builder.toString();
+    }
+
+    private void evict() {
+        Line line = lines[head];
+        lines[head] = null;
+        head = (head + 1) % lines.length;
+        size--;
+        chars -= line.text.length() + 1;
+        if (spill != null) spill(line);
+    }
+
+    private void spill(Line line) {
+        try {
+            if (spillWriter == null) {
+                spillWriter = new OutputStreamWriter(spill.getOutputStream(), StandardCharsets.UTF_8);
+            }
+            spillWriter.write(line.text);
+            spillWriter.write('\n');
+        } catch (IOException e) {
+            LOGGER.warn("Failed to spill logs of type " + name + " to " + spill + ", logs will be discarded", e);
+            spill = null;
+            closeSpill();
+        }
+    }
+
+    private void closeSpill() {
+        if (spillWriter == null) return;
+        try {
+            spillWriter.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close spilled logs of type " + name, e);
+        }
+        spillWriter = null;
+    }
+
+    private static class Line {
+
+        private final int level;
+        private final String text;
+
+        private Line(int level, String text) {
+            this.level = level;
+            this.text = text;
+        }
+    }
+}
@@ -6,6 +6,9 @@ import net.microfalx.lang.ExceptionUtils;
 import net.microfalx.lang.StringUtils;
 
 import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import static net.microfalx.lang.ArgumentUtils.requireNonNull;
 
@@ -27,6 +30,7 @@ public class Options implements Cloneable {
     private boolean profiler;
     private boolean container;
     private URI uri;
+    private List<URI> hubUris = Collections.emptyList();
 
     public static Options create() {
         return new Options();
@@ -51,6 +55,15 @@ public class Options implements Cloneable {
         return uri != null ? uri : DEFAULT_URI;
     }
 
+    /**
+     * Returns the hubs which can run the (remote) sessions.
+     *
+     * @return a non-empty list
+     */
+    public List<URI> getHubUris() {
+        return hubUris.isEmpty() ? List.of(getUri()) : hubUris;
+    }
+
     public Options withBrowser(Browser browser) {
         requireNonNull(browser);
         Options copy = copy();
@@ -108,6 +121,7 @@ public class Options implements Cloneable {
         requireNonNull(uri);
         Options copy = copy();
         copy.uri = URI.create(uri);
+        copy.hubUris = Collections.emptyList();
         copy.local = false;
         return copy;
     }
@@ -116,6 +130,26 @@ public class Options implements Cloneable {
         requireNonNull(uri);
         Options copy = copy();
         copy.uri = uri;
+        copy.hubUris = Collections.emptyList();
+        copy.local = false;
+        return copy;
+    }
+
+    /**
+     * Changes the hubs which can run the (remote) sessions.
+     * <p>
+     * Each session uses one of the hubs which are ready, preferring the least loaded ones, and fails over to another
+     * hub if the selected hub cannot create the session.
+     *
+     * @param uris the URIs of the hubs
+     * @return a new instance
+     */
+    public Options withHubUris(Collection<URI> uris) {
+        requireNonNull(uris);
+        if (uris.isEmpty()) throw new IllegalArgumentException("At least one hub is required");
+        Options copy = copy();
+        copy.hubUris = List.copyOf(uris);
+        copy.uri = copy.hubUris.get(0);
         copy.local = false;
         return copy;
     }
@@ -135,7 +169,7 @@ public class Options implements Cloneable {
         if (local) {
             builder.append("local");
         } else {
-            builder.append(uri);
+            builder.append(hubUris.isEmpty() ? uri : hubUris);
         }
         if (headless) addSeparator(builder).append("headless");
         return builder.toString();
@@ -0,0 +1,220 @@
+package net.microfalx.zenith.client;
+
+import lombok.Getter;
+import lombok.ToString;
+import net.microfalx.lang.ExceptionUtils;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.System.currentTimeMillis;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Describes when a page is considered ready (loaded and stable) and waits for it.
+ * <p>
+ * A page is ready when the document is completely loaded ({@code document.readyState}), there are no network
+ * requests (fetch or XHR) in progress for a quiet period and the DOM did not change for another quiet period.
+ * The network and DOM activity are tracked by observers installed in the page, so waiting works with any driver
+ * (local or through the Grid); the browser reports back as soon as the page becomes ready (or after a short
+ * interval, to survive navigations), so waiting costs a few round trips instead of a fixed delay.
+ */
+@Getter
+@ToString
+public final class Readiness implements Cloneable {
+
+    /**
+     * The default readiness: document loaded, 500ms without network activity and 300ms without DOM changes,
+     * for at most 10 seconds.
+     */
+    public static final Readiness DEFAULT = new Readiness();
+
+    private static final long CHECK_INTERVAL = 1000;
+
+    private static final String SCRIPT = """
+            var options = arguments[0], callback = arguments[arguments.length - 1];
+            var zenith = window.__zenithReadiness;
+            if (!zenith) {
+              zenith = window.__zenithReadiness = {inflight: 0, lastNetwork: performance.now(), lastMutation: performance.now()};
+              var started = function () { zenith.inflight++; zenith.lastNetwork = performance.now(); };
+              var finished = function () { zenith.inflight = Math.max(0, zenith.inflight - 1); zenith.lastNetwork = performance.now(); };
+              if (window.fetch) {
+                var fetch = window.fetch;
+                window.fetch = function () { started(); return fetch.apply(this, arguments).finally(finished); };
+              }
+              var send = XMLHttpRequest.prototype.send;
+              XMLHttpRequest.prototype.send = function () {
+                started(); this.addEventListener('loadend', finished); return send.apply(this, arguments);
+              };
+              try {
+                new PerformanceObserver(function () { zenith.lastNetwork = performance.now(); }).observe({type: 'resource'});
+              } catch (e) {}
+              new MutationObserver(function () { zenith.lastMutation = performance.now(); })
+                .observe(document, {subtree: true, childList: true, attributes: true, characterData: true});
+            }
+            var deadline = performance.now() + options.interval;
+            (function check() {
+              var now = performance.now();
+              var state = {readyState: document.readyState, inflight: zenith.inflight,
+                networkIdle: Math.round(now - zenith.lastNetwork), domIdle: Math.round(now - zenith.lastMutation)};
+              state.ready = document.readyState === 'complete'
+                && (!options.network || (state.inflight <= options.maxInflight && state.networkIdle >= options.networkQuiet))
+                && (!options.dom || state.domIdle >= options.domQuiet);
+              if (state.ready || now >= deadline) callback(state); else setTimeout(check, options.poll);
+            })();""";
+
+    private Duration timeout = Duration.ofSeconds(10);
+    private boolean network = true;
+    private Duration networkQuietPeriod = Duration.ofMillis(500);
+    private int maxInflightRequests;
+    private boolean dom = true;
+    private Duration domQuietPeriod = Duration.ofMillis(300);
+    private Duration pollInterval = Duration.ofMillis(50);
+
+    public static Readiness create() {
+        return new Readiness();
+    }
+
+    private Readiness() {
+    }
+
+    public Readiness withTimeout(Duration timeout) {
+        requireNonNull(timeout);
+        Readiness copy = copy();
+        copy.timeout = timeout;
+        return copy;
+    }
+
+    public Readiness withNetwork(boolean network) {
+        Readiness copy = copy();
+        copy.network = network;
+        return copy;
+    }
+
+    public Readiness withNetworkQuietPeriod(Duration networkQuietPeriod) {
+        requireNonNull(networkQuietPeriod);
+        Readiness copy = copy();
+        copy.networkQuietPeriod = networkQuietPeriod;
+        return copy;
+    }
+
+    public Readiness withMaxInflightRequests(int maxInflightRequests) {
+        Readiness copy = copy();
+        copy.maxInflightRequests = Math.max(0, maxInflightRequests);
+        return copy;
+    }
+
+    public Readiness withDom(boolean dom) {
+        Readiness copy = copy();
+        copy.dom = dom;
+        return copy;
+    }
+
+    public Readiness withDomQuietPeriod(Duration domQuietPeriod) {
+        requireNonNull(domQuietPeriod);
+        Readiness copy = copy();
+        copy.domQuietPeriod = domQuietPeriod;
+        return copy;
+    }
+
+    public Readiness withPollInterval(Duration pollInterval) {
+        requireNonNull(pollInterval);
+        Readiness copy = copy();
+        copy.pollInterval = pollInterval;
+        return copy;
+    }
+
+    /**
+     * Waits until the current page of a driver is ready.
+     *
+     * @param driver the driver
+     * @return the state of the page, as reported by the last check
+     * @throws NoSuchSessionException if the session ended while waiting
+     * @throws NoSuchWindowException  if the window was closed while waiting
+     */
+    State await(WebDriver driver) {
+        requireNonNull(driver);
+        if (!(driver instanceof JavascriptExecutor executor)) return new State(true, "unknown", 0, 0, 0);
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("interval", CHECK_INTERVAL);
+        arguments.put("poll", pollInterval.toMillis());
+        arguments.put("network", network);
+        arguments.put("networkQuiet", networkQuietPeriod.toMillis());
+        arguments.put("maxInflight", maxInflightRequests);
+        arguments.put("dom", dom);
+        arguments.put("domQuiet", domQuietPeriod.toMillis());
+        long deadline = currentTimeMillis() + timeout.toMillis();
+        State state = new State(false, "unknown", 0, 0, 0);
+        long backoff = Math.max(1, pollInterval.toMillis());
+        do {
+            try {
+                Object result = executor.executeAsyncScript(SCRIPT, arguments);
+                if (result instanceof Map<?, ?> values) state = State.from(values);
+                if (state.isReady()) break;
+                backoff = Math.max(1, pollInterval.toMillis());
+            } catch (NoSuchSessionException | NoSuchWindowException e) {
+                // the page will never become ready
+                throw e;
+            } catch (WebDriverException e) {
+                // the page navigated (or is still loading) while checking, try again on the new page after a pause
+                state = new State(false, ExceptionUtils.getRootCauseMessage(e), 0, 0, 0);
+                long remaining = deadline - currentTimeMillis();
+                if (remaining <= 0) break;
+                try {
+                    Thread.sleep(Math.min(backoff, remaining));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = Math.min(2 * backoff, CHECK_INTERVAL);
+            }
+        } while (currentTimeMillis() < deadline);
+        return state;
+    }
+
+    private Readiness copy() {
+        try {
+            return (Readiness) clone();
+        } catch (CloneNotSupportedException e) {
+            return ExceptionUtils.throwException(e);
+        }
+    }
+
+    /**
+     * The state of a page, as seen by the readiness check.
+     */
+    @Getter
+    @ToString
+    public static final class State {
+
+        private final boolean ready;
+        private final String readyState;
+        private final int inflightRequests;
+        private final long networkIdle;
+        private final long domIdle;
+
+        private State(boolean ready, String readyState, int inflightRequests, long networkIdle, long domIdle) {
+            this.ready = ready;
+            this.readyState = readyState;
+            this.inflightRequests = inflightRequests;
+            this.networkIdle = networkIdle;
+            this.domIdle = domIdle;
+        }
+
+        private static State from(Map<?, ?> values) {
+            return new State(Boolean.TRUE.equals(values.get("ready")), String.valueOf(values.get("readyState")),
+                    toNumber(values.get("inflight")).intValue(), toNumber(values.get("networkIdle")).longValue(),
+                    toNumber(values.get("domIdle")).longValue());
+        }
+
+        private static Number toNumber(Object value) {
+            return value instanceof Number number ? number : 0;
+        }
+    }
+}
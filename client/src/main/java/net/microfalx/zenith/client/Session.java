@@ -27,13 +27,16 @@ import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 
@@ -63,6 +66,7 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
 
     private static final Collection<Session> sessions = new CopyOnWriteArrayList<>();
     private static final ThreadLocal<Session> CURRENT = new ThreadLocal<>();
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
 
     private final String id = UUID.randomUUID().toString();
     private volatile String name;
@@ -71,21 +75,19 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
     private volatile String category;
     private final Set<String> tags = new HashSet<>();
     private volatile String description;
+    private volatile URI node;
     private final Options options;
     private final long startTime = currentTimeMillis();
     private volatile long endTime;
     private volatile long lastRequest = startTime;
     private volatile Level level = Level.INFO;
     private volatile URI lastUri;
-    private volatile boolean waitedForPageToLoad;
+    private volatile Readiness readiness = Readiness.DEFAULT;
     private final Collection<Resource> screenshots = new CopyOnWriteArrayList<>();
 
-    private final StringBuilder logger = new StringBuilder();
-    private final StringBuilder browserLogger = new StringBuilder();
-    private final StringBuilder clientLogger = new StringBuilder();
-    private final StringBuilder driverLogger = new StringBuilder();
-    private final StringBuilder serverLogger = new StringBuilder();
-    private final Map<String, Collection<LogEntry>> logEntries = new ConcurrentHashMap<>();
+    private final LogBuffer logger = new LogBuffer("session");
+    private final Map<String, LogBuffer> logBuffers = new ConcurrentHashMap<>();
+    private volatile boolean spillLogs;
     private volatile OutputStream driverLoggerOutput;
     private volatile WebDriver driver;
     private volatile boolean attached;
@@ -93,7 +95,12 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
     private volatile Resource storage;
     private volatile Resource reportsDirectory;
     private volatile boolean closed;
+    private volatile SessionPool pool;
+    private final Set<String> origins = ConcurrentHashMap.newKeySet();
     private boolean disableScreenshot;
+    private volatile boolean failed;
+    private volatile URI hubUri;
+    private volatile Map<String, Object> driverMetadata;
 
     /**
      * Creates a new selenium session with give options.
@@ -173,7 +180,7 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
 
     private Session(Options options) {
         requireNonNull(options);
-        logger.append("Create session");
+        logInfo(logger, "Create session");
         this.options = options;
         registerSession();
         initOptions();
@@ -211,6 +218,23 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
         return Collections.unmodifiableSet(tags);
     }
 
+    public URI getNode() {
+        return node;
+    }
+
+    /**
+     * Changes the node (by its URI) which must host the (remote) session; by default, the hub selects the node.
+     * <p>
+     * The node is used only when the browser is started, when the session is first used.
+     *
+     * @param node the URI of the node, null to let the hub select the node
+     * @return self
+     */
+    public Session setNode(URI node) {
+        this.node = node;
+        return this;
+    }
+
     public Session addTag(String tag) {
         requireNonNull(tag);
         this.tags.add(tag);
@@ -226,6 +250,41 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
         return this;
     }
 
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Changes whether the session failed (for example, the test using the session failed).
+     * <p>
+     * A failure is reported to the node when the session is closed, which keeps the recording of the session
+     * when the session records only failures (see {@link Options.RecordingMode#RECORD_FAILING}).
+     *
+     * @param failed {@code true} if the session failed, {@code false} otherwise
+     * @return self
+     */
+    public Session setFailed(boolean failed) {
+        this.failed = failed;
+        return this;
+    }
+
+    public boolean isSpillLogs() {
+        return spillLogs;
+    }
+
+    /**
+     * Changes whether logs evicted from the (bounded) in-memory buffers are written to the session storage.
+     *
+     * @param spillLogs {@code true} to spill logs to storage, {@code false} to discard them
+     * @return self
+     */
+    public Session setSpillLogs(boolean spillLogs) {
+        this.spillLogs = spillLogs;
+        logger.setSpill(getSpillResource(logger));
+        logBuffers.values().forEach(buffer -> buffer.setSpill(getSpillResource(buffer)));
+        return this;
+    }
+
     public boolean isClosed() {
         return closed;
     }
@@ -259,6 +318,22 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
         return options;
     }
 
+    public Readiness getReadiness() {
+        return readiness;
+    }
+
+    /**
+     * Changes when a page is considered ready after it is opened (see {@link #waitUntilPageLoaded()}).
+     *
+     * @param readiness the readiness
+     * @return self
+     */
+    public Session setReadiness(Readiness readiness) {
+        requireNonNull(readiness);
+        this.readiness = readiness;
+        return this;
+    }
+
     public Resource getStorage() {
         if (storage == null) {
             storage = net.microfalx.zenith.api.common.Session.getLocalStorage().resolve("session", Resource.Type.DIRECTORY);
@@ -314,29 +389,45 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
     public String getLogs(boolean includeSession) {
         StringBuilder logger = new StringBuilder();
         if (includeSession) {
-            appendLogger("Session", logger, this.logger);
-        }
-        StringBuilder browserLogger = this.getBrowserLogger();
-        if (browserLogger.length() > 0) {
-            appendLogger("Browser", logger, browserLogger);
-        }
-        StringBuilder seleniumLogger = this.getSeleniumLogger();
-        if (seleniumLogger.length() > 0) {
-            appendLogger("Selenium", logger, seleniumLogger);
+            appendLogger("Session", logger, this.logger.toString());
         }
+        appendLogger("Browser", logger, getBrowserLogger().toString());
+        appendLogger("Selenium", logger, getSeleniumLogger().toString());
         return logger.toString();
     }
 
-    private void appendLogger(String title, StringBuilder target, StringBuilder source) {
-        String output = source.toString();
-        if (!StringUtils.isNotEmpty(output)) {
+    /**
+     * Appends the logs of a given type which were captured after a cursor.
+     * <p>
+     * Only log entries which were not seen before are requested from the driver and each entry is formatted once,
+     * so repeated calls cost proportionally with the number of new entries.
+     *
+     * @param type   the type of logs (see {@link LogType})
+     * @param target the builder which receives the logs
+     * @param cursor the cursor returned by a previous call, 0 to read all retained logs
+     * @return the cursor for the next call
+     */
+    public long readLogs(String type, StringBuilder target, long cursor) {
+        requireNonNull(type);
+        requireNonNull(target);
+        fetchLogs(type);
+        return getLogBuffer(type).appendTo(target, cursor, null);
+    }
+
+    private void appendLogger(String title, StringBuilder target, String output) {
+        if (StringUtils.isNotEmpty(output)) {
             logHeader(target, title);
             target.append(TextUtils.insertSpaces(output, 2));
         }
     }
 
-    public StringBuilder getSessionLogger() {
-        return logger;
+    /**
+     * Returns the log of the session (the lines still retained by the in-memory buffer).
+     *
+     * @return a non-null instance
+     */
+    public String getSessionLog() {
+        return logger.toString();
     }
 
     public StringBuilder getBrowserLogger() {
@@ -381,9 +472,9 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
 
     public StringBuilder getSeleniumLogger() {
         StringBuilder seleniumLogger = new StringBuilder();
-        appendLogger("Client", seleniumLogger, clientLogger);
-        appendLogger("Driver", seleniumLogger, driverLogger);
-        appendLogger("Server", seleniumLogger, serverLogger);
+        appendLogger("Client", seleniumLogger, getClientLogger().toString());
+        appendLogger("Driver", seleniumLogger, getDriverLogger().toString());
+        appendLogger("Server", seleniumLogger, getServerLogger().toString());
         return seleniumLogger;
     }
 
@@ -391,10 +482,10 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
      * Resets the rule and browser state.
      */
     public void reset() {
-        logInfo(getSessionLogger(), "Reset session");
+        logInfo(logger, "Reset session");
         lastUri = null;
         name = null;
-        logEntries.clear();
+        logBuffers.values().forEach(LogBuffer::clear);
         if (driver == null) return;
     }
 
@@ -418,17 +509,43 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
      * Takes a screenshot and present a reason
      */
     public Resource takeScreenShot(String reason) {
+        byte[] screenShot = captureScreenShot();
+        return screenShot != null ? storeScreenShot(reason, screenShot) : null;
+    }
+
+    /**
+     * Captures the screen of the browser, without storing it.
+     *
+     * @return the PNG image, null if the driver cannot take screenshots or the capture failed
+     */
+    public byte[] captureScreenShot() {
         touch();
         if (!(driver instanceof TakesScreenshot)) {
             LOGGER.info("Driver " + driver + " does not support taking screen shots");
             return null;
         }
+        try {
+            return ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+        } catch (WebDriverException e) {
+            LOGGER.warn("Screen shot could not be taken, reason: " + ExceptionUtils.getRootCauseMessage(e));
+            return null;
+        }
+    }
+
+    /**
+     * Stores a screenshot (previously captured with {@link #captureScreenShot()}) in the session storage.
+     *
+     * @param reason     the reason
+     * @param screenShot the PNG image
+     * @return the resource, null if the screenshot could not be stored
+     */
+    public Resource storeScreenShot(String reason, byte[] screenShot) {
+        requireNonNull(screenShot);
         String fileFragment = StringUtils.toIdentifier(reason);
+        String fileName = "screenshot_" + fileFragment + "_" + DATE_TIME_FORMATTER.format(LocalDateTime.now()) + ".png";
+        logInfo(logger, "Take screenshot for '" + reason + "', file name " + fileName);
+        Resource screenShotResource = getStorage().resolve(fileName, Resource.Type.FILE);
         try {
-            byte[] screenShot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
-            String fileName = "screenshot_" + fileFragment + "_" + DATE_TIME_FORMATTER.format(LocalDateTime.now()) + ".png";
-            logInfo(logger, "Take screenshot for '" + reason + "', file name " + fileName);
-            Resource screenShotResource = getStorage().resolve(fileName, Resource.Type.FILE);
             if (!disableScreenshot) {
                 IOUtils.appendStream(screenShotResource.getOutputStream(), new ByteArrayInputStream(screenShot));
                 screenshots.add(screenShotResource);
@@ -437,14 +554,21 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
             return screenShotResource;
         } catch (IOException e) {
             LOGGER.warn("Failed to move screen shot to , reason: " + ExceptionUtils.getRootCauseMessage(e));
-        } catch (WebDriverException e) {
-            LOGGER.warn("Screen shot could not be taken, reason: " + ExceptionUtils.getRootCauseMessage(e));
         }
-
         return null;
     }
 
 
+    /**
+     * Creates a batch of commands, executed with as few round trips to the browser as possible.
+     *
+     * @return a non-null instance
+     */
+    public CommandBatch batch() {
+        touch();
+        return new CommandBatch(this);
+    }
+
     /**
      * Opens a page, waiting to be loaded.
      *
@@ -475,12 +599,12 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
      */
     public Session open(URI uri, boolean waitFor) {
         requireNonNull(uri);
-        logEntries.clear();
+        logBuffers.values().forEach(LogBuffer::clear);
         if (lastUri != null && lastUri.equals(uri)) {
             LOGGER.info("URI '" + uri + "' is already opened");
         } else {
-            waitedForPageToLoad = false;
             if (StringUtils.isEmpty(name)) name = uri.getHost();
+            if (StringUtils.isNotEmpty(uri.getHost())) origins.add(getOrigin(uri));
             description = uri.toASCIIString();
             logInfo(logger, "Open '" + uri + "'");
             executeTask("Open", (t) -> getWebDriver().get(uri.toASCIIString()));
@@ -494,15 +618,30 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
     }
 
     /**
-     * Waits until the page is reported  in "loaded" state.
-     * <p>
-     * This method relies on the DOM reporing the "loaded" event
+     * Waits until the current page is ready, based on the readiness of the session.
+     *
+     * @return {@code true} if the page is ready, {@code false} if the wait timed out
+     * @see #setReadiness(Readiness)
      */
-    public void waitUntilPageLoaded() {
-        if (!waitedForPageToLoad) {
-            getWebDriver().manage().timeouts().implicitlyWait(Duration.ofSeconds(5));
-            waitedForPageToLoad = true;
+    public boolean waitUntilPageLoaded() {
+        return waitUntilReady(readiness);
+    }
+
+    /**
+     * Waits until the current page is ready: the document is loaded, the network is idle and the DOM is stable.
+     *
+     * @param readiness the readiness
+     * @return {@code true} if the page is ready, {@code false} if the wait timed out
+     */
+    public boolean waitUntilReady(Readiness readiness) {
+        requireNonNull(readiness);
+        touch();
+        AtomicReference<Readiness.State> state = new AtomicReference<>();
+        executeTask("Wait Ready", o -> state.set(readiness.await(getWebDriver())));
+        if (!state.get().isReady()) {
+            logWarn(logger, "Page not ready after " + readiness.getTimeout().toMillis() + "ms, state: " + state.get());
         }
+        return state.get().isReady();
     }
 
     /**
@@ -539,7 +678,11 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
         if (keepOpen) return;
         endTime = currentTimeMillis();
         takeScreenShot("Close Session");
-        if (driver != null && !attached) {
+        if (driver != null && !attached && failed && hubUri != null && options.shouldRecord()) reportFailure();
+        if (driver != null && !attached && pool != null) {
+            logInfo(logger, "Return driver to pool");
+            pool.release(this, driver);
+        } else if (driver != null && !attached) {
             logInfo(logger, "Close driver");
             try {
                 executeTask("Close", o -> driver.close());
@@ -556,6 +699,8 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
         // if the session that's closed is also the one attached to the current thread, we should detached the session
         if (CURRENT.get() == this) CURRENT.remove();
         closed = true;
+        logger.close();
+        logBuffers.values().forEach(LogBuffer::close);
     }
 
     /**
@@ -568,35 +713,153 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
         this.attached = true;
     }
 
+    /**
+     * Links the session with a pool, which provides the web driver (when the session is first used) and receives it
+     * when the session is closed.
+     *
+     * @param pool the pool
+     */
+    void attach(SessionPool pool) {
+        requireNonNull(pool);
+        this.pool = pool;
+    }
+
+    /**
+     * Uses a web driver from the pool instead of creating a new one.
+     *
+     * @param driver   the web driver
+     * @param hubUri   the URI of the hub which created the (remote) driver, null for local drivers
+     * @param metadata the metadata the driver was created with
+     */
+    void reuse(WebDriver driver, URI hubUri, Map<String, Object> metadata) {
+        requireNonNull(driver);
+        logInfo(logger, "Use driver from pool");
+        this.driver = driver;
+        this.hubUri = hubUri;
+        this.driverMetadata = metadata;
+    }
+
+    /**
+     * Returns the URI of the hub which created the (remote) driver.
+     *
+     * @return the URI, null if the driver is local or was not created yet
+     */
+    URI getHubUri() {
+        return hubUri;
+    }
+
+    /**
+     * Returns the metadata the web driver was created with (see {@link #getMetadata()}).
+     *
+     * @return the metadata, null if the driver was not created yet
+     */
+    Map<String, Object> getDriverMetadata() {
+        return driverMetadata;
+    }
+
+    /**
+     * Returns the metadata of the session, published to the Grid with the capabilities of a remote session.
+     *
+     * @return a non-null instance
+     */
+    Map<String, Object> getMetadata() {
+        Map<String, Object> metadata = new HashMap<>();
+        if (StringUtils.isNotEmpty(name))
+            metadata.put(net.microfalx.zenith.api.common.Session.NAME_CAPABILITY, name);
+        if (StringUtils.isNotEmpty(namespace))
+            metadata.put(net.microfalx.zenith.api.common.Session.NAMESPACE_CAPABILITY, namespace);
+        if (StringUtils.isNotEmpty(category))
+            metadata.put(net.microfalx.zenith.api.common.Session.CATEGORY_CAPABILITY, category);
+        if (StringUtils.isNotEmpty(project))
+            metadata.put(net.microfalx.zenith.api.common.Session.PROJECT_CAPABILITY, project);
+        if (!tags.isEmpty())
+            metadata.put(net.microfalx.zenith.api.common.Session.TAGS_CAPABILITY, CollectionUtils.setToString(tags));
+        if (node != null)
+            metadata.put(net.microfalx.zenith.api.common.Session.NODE_CAPABILITY, node.toASCIIString());
+        if (options.shouldRecord())
+            metadata.put(net.microfalx.zenith.api.common.Session.RECORDING_CAPABILITY, options.getRecordingMode().name());
+        return metadata;
+    }
+
+    /**
+     * Returns the origins (scheme, host and port) opened during this session.
+     *
+     * @return a non-null instance
+     */
+    Set<String> getOrigins() {
+        return Collections.unmodifiableSet(origins);
+    }
+
+    static String getOrigin(URI uri) {
+        return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() > 0 ? ":" + uri.getPort() : "");
+    }
+
     /**
      * Creates and initializes the driver, if not already created.
      */
     private void initializeDriver() {
+        if (pool != null && pool.acquire(this)) return;
         logInfo(logger, "Initialize session, options: " + options.toDescription());
-        DriverManager.getInstance().registerDriver(options.getBrowser());
         logInfo(logger, "Create driver");
         if (options.isLocal()) {
+            // only a local browser needs a driver, remote browsers use the drivers of the nodes
+            DriverManager.getInstance().registerDriver(options.getBrowser());
             driver = createLocalDriver();
             logInfo(logger, "Web driver created with local browser " + driver.toString());
         } else {
-            URL url = getHubDriverUrl();
-            driver = new RemoteWebDriver(url, getCapabilities());
-            logInfo(logger, "Web driver created using Selenium Hub (" + url + "), remote browser " + driver.toString());
+            List<URI> hubUris = options.getHubUris();
+            URI uri = HubLocator.getInstance().select(hubUris);
+            try {
+                driver = new RemoteWebDriver(toUrl(uri), getCapabilities());
+            } catch (WebDriverException e) {
+                if (hubUris.size() == 1) throw e;
+                HubLocator.getInstance().failed(uri);
+                URI nextUri = HubLocator.getInstance().select(hubUris);
+                if (nextUri.equals(uri)) throw e;
+                logWarn(logger, "Selenium Hub (" + uri + ") failed to create the session, fail over to " + nextUri
+                        + ", root cause: " + ExceptionUtils.getRootCauseMessage(e));
+                uri = nextUri;
+                driver = new RemoteWebDriver(toUrl(uri), getCapabilities());
+            }
+            hubUri = uri;
+            logInfo(logger, "Web driver created using Selenium Hub (" + uri + "), remote browser " + driver.toString());
         }
     }
 
     /**
-     * Returns the Selenium HUB URL.
-     *
-     * @return a non-null url
+     * Reports to the node (through the hub) that the session failed.
      */
-    private URL getHubDriverUrl() {
-        URI uri;
-        if (options.getUri() != null) {
-            uri = options.getUri();
-        } else {
-            uri = Options.DEFAULT_URI;
+    private void reportFailure() {
+        URI uri = getFailureUri(hubUri, ((RemoteWebDriver) driver).getSessionId().toString());
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(5)).POST(HttpRequest.BodyPublishers.noBody()).build();
+        try {
+            HttpResponse<Void> response = HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                logWarn(logger, "Failed to report session failure, status " + response.statusCode());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logWarn(logger, "Failed to report session failure, root cause: " + ExceptionUtils.getRootCauseMessage(e));
         }
+    }
+
+    /**
+     * Returns the URI used to report a failed session, relative to the root of the grid (the hub URI can have a
+     * path, like {@code /wd/hub}, which does not apply to Zenith routes).
+     *
+     * @param hubUri    the URI of the hub
+     * @param sessionId the session identifier
+     * @return a non-null instance
+     */
+    static URI getFailureUri(URI hubUri, String sessionId) {
+        requireNonNull(hubUri);
+        requireNonNull(sessionId);
+        return hubUri.resolve(net.microfalx.zenith.api.common.Session.FAILED_PATH.replace("{sessionId}", sessionId));
+    }
+
+    private URL toUrl(URI uri) {
         try {
             return uri.toURL();
         } catch (MalformedURLException e) {
@@ -705,17 +968,9 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
      * Returns driver capabilities based on the target browser.
      */
     private void updateCommonCapabilities(MutableCapabilities capabilities) {
-        MutableCapabilities customCapabilities = new MutableCapabilities();
-        if (StringUtils.isNotEmpty(name))
-            customCapabilities.setCapability(net.microfalx.zenith.api.common.Session.NAME_CAPABILITY, name);
-        if (StringUtils.isNotEmpty(namespace))
-            customCapabilities.setCapability(net.microfalx.zenith.api.common.Session.NAMESPACE_CAPABILITY, namespace);
-        if (StringUtils.isNotEmpty(category))
-            customCapabilities.setCapability(net.microfalx.zenith.api.common.Session.CATEGORY_CAPABILITY, category);
-        if (StringUtils.isNotEmpty(project))
-            customCapabilities.setCapability(net.microfalx.zenith.api.common.Session.PROJECT_CAPABILITY, project);
-        if (!tags.isEmpty())
-            customCapabilities.setCapability(net.microfalx.zenith.api.common.Session.TAGS_CAPABILITY, CollectionUtils.setToString(tags));
+        Map<String, Object> metadata = getMetadata();
+        driverMetadata = metadata;
+        MutableCapabilities customCapabilities = new MutableCapabilities(metadata);
         capabilities.setCapability(net.microfalx.zenith.api.common.Session.CAPABILITY, customCapabilities);
     }
 
@@ -804,6 +1059,17 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
      * @param logger the logger
      */
     private void collectLogs(String type, StringBuilder logger, Level equalOrAboveLevelOnly) {
+        fetchLogs(type);
+        LogBuffer buffer = logBuffers.get(type);
+        if (buffer != null) buffer.appendTo(logger, equalOrAboveLevelOnly);
+    }
+
+    /**
+     * Fetches the log entries available since the previous call from the driver and formats them into the buffer.
+     *
+     * @param type the type of log
+     */
+    private void fetchLogs(String type) {
         if (driver == null) return;
         Iterator<LogEntry> logEntries = Collections.emptyIterator();
         try {
@@ -818,16 +1084,26 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
                 LOGGER.warn("Failed to extract logs of type " + type + ", root cause: " + ExceptionUtils.getRootCauseMessage(e));
             }
         }
-        Collection<LogEntry> currentLogEntries = this.logEntries.computeIfAbsent(type, s -> new ConcurrentLinkedQueue<>());
+        if (!logEntries.hasNext()) return;
+        LogBuffer buffer = getLogBuffer(type);
         while (logEntries.hasNext()) {
-            LogEntry logEntry = logEntries.next();
-            currentLogEntries.add(logEntry);
-        }
-        for (LogEntry logEntry : currentLogEntries) {
-            dumpLogEntry(logger, logEntry, equalOrAboveLevelOnly);
+            dumpLogEntry(buffer, logEntries.next());
         }
     }
 
+    private LogBuffer getLogBuffer(String type) {
+        return logBuffers.computeIfAbsent(type, t -> {
+            LogBuffer buffer = new LogBuffer(t);
+            buffer.setSpill(getSpillResource(buffer));
+            return buffer;
+        });
+    }
+
+    private Resource getSpillResource(LogBuffer buffer) {
+        if (!spillLogs) return null;
+        return getStorage().resolve(id + "_" + StringUtils.toIdentifier(buffer.getName()) + ".log", Resource.Type.FILE);
+    }
+
     /**
      * Logs a header.
      *
@@ -846,7 +1122,7 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
      * @param logger   the logger
      * @param logEntry the log entry
      */
-    private void dumpLogEntry(StringBuilder logger, LogEntry logEntry, Level equalOrAboveLevelOnly) {
+    private void dumpLogEntry(LogBuffer logger, LogEntry logEntry) {
         StringBuilder buffer = new StringBuilder();
 
         buffer.append(LOG_TIME_FORMATTER.format(TimeUtils.toLocalDateTime(logEntry.getTimestamp()))).append(' ');
@@ -857,17 +1133,16 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
         message = StringUtils.trim(message);
         if (StringUtils.isEmpty(message)) return;
 
-        int level = changeLogEntryLevel(logEntry.getLevel(), message).intValue();
-        if (equalOrAboveLevelOnly != null && level <= equalOrAboveLevelOnly.intValue()) return;
-        if (level >= this.level.intValue()) {
-            if (level <= Level.FINE.intValue()) {
-                logDebug(logger, true, message);
-            } else if (level <= Level.INFO.intValue()) {
-                logInfo(logger, true, message);
-            } else if (level <= Level.WARNING.intValue()) {
-                logWarn(logger, true, message);
+        Level level = changeLogEntryLevel(logEntry.getLevel(), message);
+        if (level.intValue() >= this.level.intValue()) {
+            if (level.intValue() <= Level.FINE.intValue()) {
+                logDebug(logger, true, level, message);
+            } else if (level.intValue() <= Level.INFO.intValue()) {
+                logInfo(logger, true, level, message);
+            } else if (level.intValue() <= Level.WARNING.intValue()) {
+                logWarn(logger, true, level, message);
             } else {
-                logError(logger, true, message);
+                logError(logger, true, level, message);
             }
         }
     }
@@ -887,40 +1162,36 @@ public final class Session extends NamedIdentityAware<String> implements AutoClo
         }
     }
 
-    private void logDebug(StringBuilder builder, String message) {
-        logInfo(builder, false, message);
+    private void logDebug(LogBuffer builder, String message) {
+        logDebug(builder, false, Level.FINE, message);
     }
 
-    private void logDebug(StringBuilder builder, boolean includeLevel, String message) {
-        if (includeLevel) builder.append("DEBUG  ");
-        builder.append(message).append('\n');
+    private void logDebug(LogBuffer builder, boolean includeLevel, Level level, String message) {
+        builder.append(level, includeLevel ? "DEBUG  " + message : message);
     }
 
-    private void logInfo(StringBuilder builder, String message) {
-        logInfo(builder, false, message);
+    private void logInfo(LogBuffer builder, String message) {
+        logInfo(builder, false, Level.INFO, message);
     }
 
-    private void logInfo(StringBuilder builder, boolean includeLevel, String message) {
-        if (includeLevel) builder.append("INFO  ");
-        builder.append(message).append('\n');
+    private void logInfo(LogBuffer builder, boolean includeLevel, Level level, String message) {
+        builder.append(level, includeLevel ? "INFO  " + message : message);
     }
 
-    private void logWarn(StringBuilder builder, String message) {
-        logWarn(builder, false, message);
+    private void logWarn(LogBuffer builder, String message) {
+        logWarn(builder, false, Level.WARNING, message);
     }
 
-    private void logWarn(StringBuilder builder, boolean includeLevel, String message) {
-        if (includeLevel) builder.append("WARN  ");
-        builder.append(message).append('\n');
+    private void logWarn(LogBuffer builder, boolean includeLevel, Level level, String message) {
+        builder.append(level, includeLevel ? "WARN  " + message : message);
     }
 
-    private void logError(StringBuilder builder, String message) {
-        logError(builder, false, message);
+    private void logError(LogBuffer builder, String message) {
+        logError(builder, false, Level.SEVERE, message);
     }
 
-    private void logError(StringBuilder builder, boolean includeLevel, String message) {
-        if (includeLevel) builder.append("ERROR ");
-        builder.append(message).append('\n');
+    private void logError(LogBuffer builder, boolean includeLevel, Level level, String message) {
+        builder.append(level, includeLevel ? "ERROR " + message : message);
     }
 
     /**
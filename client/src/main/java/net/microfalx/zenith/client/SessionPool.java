@@ -0,0 +1,419 @@
+package net.microfalx.zenith.client;
+
+import net.microfalx.lang.ExceptionUtils;
+import net.microfalx.metrics.Metrics;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.HasCdp;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.logging.Logs;
+import org.openqa.selenium.remote.Augmenter;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.currentTimeMillis;
+import static net.microfalx.lang.ArgumentUtils.requireBounded;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+import static net.microfalx.lang.TimeUtils.millisSince;
+
+/**
+ * A pool of web drivers, which allows sessions with the same options to reuse the browser of a previous session.
+ * <p>
+ * Drivers are pooled by the options which affect the browser (browser, local or remote with the hub URIs, headless,
+ * full screen, debug and recording) and, for remote drivers, by the metadata published to the Grid with the session
+ * (name, project, tags and so on), since the Grid keeps the metadata of the session which created the browser. When
+ * a session borrowed from the pool is first used, it receives an idle driver (validated with a round trip to the
+ * browser) or creates a new one; when the session is closed, the driver is reset and returned to the pool instead
+ * of being closed:
+ * <ul>
+ *     <li>extra windows are closed</li>
+ *     <li>local and session storage of the current page, and all cookies are cleared; cookies and the storage of
+ *     all opened origins are cleared with DevTools (directly for local drivers, through the Grid for remote
+ *     drivers); drivers without DevTools which opened more than one origin are not reused</li>
+ *     <li>pending log entries are discarded</li>
+ *     <li>the browser navigates to a blank page</li>
+ * </ul>
+ * Drivers which fail the reset or validation, exceed the maximum age, or stay idle for too long are closed.
+ * <p>
+ * The idle time should stay below the session timeout of the Grid, otherwise the hub closes remote browsers first.
+ */
+public final class SessionPool implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionPool.class);
+
+    private static final Metrics METRICS = Metrics.of("Selenium").withGroup("Pool");
+
+    private static final Duration EVICTION_INTERVAL = Duration.ofSeconds(15);
+
+    private final Map<Key, Deque<PooledDriver>> idle = new ConcurrentHashMap<>();
+    private final Map<WebDriver, PooledDriver> borrowed = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private volatile int maxIdlePerKey = 4;
+    private volatile Duration maxIdleTime = Duration.ofSeconds(60);
+    private volatile Duration maxAge = Duration.ofMinutes(30);
+    private volatile boolean closed;
+    private volatile ScheduledExecutorService evictor;
+
+    /**
+     * Creates a new pool.
+     *
+     * @return a non-null instance
+     */
+    public static SessionPool create() {
+        return new SessionPool();
+    }
+
+    private SessionPool() {
+    }
+
+    public int getMaxIdlePerKey() {
+        return maxIdlePerKey;
+    }
+
+    public SessionPool setMaxIdlePerKey(int maxIdlePerKey) {
+        this.maxIdlePerKey = requireBounded(maxIdlePerKey, 0, 100);
+        return this;
+    }
+
+    public Duration getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public SessionPool setMaxIdleTime(Duration maxIdleTime) {
+        requireNonNull(maxIdleTime);
+        this.maxIdleTime = maxIdleTime;
+        return this;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    public SessionPool setMaxAge(Duration maxAge) {
+        requireNonNull(maxAge);
+        this.maxAge = maxAge;
+        return this;
+    }
+
+    /**
+     * Returns the number of idle drivers.
+     *
+     * @return a positive integer
+     */
+    public int getIdleCount() {
+        return idle.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    /**
+     * Returns the number of drivers used by sessions borrowed from the pool.
+     *
+     * @return a positive integer
+     */
+    public int getBorrowedCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * Borrows a session from the pool.
+     * <p>
+     * The session reuses an idle driver created with the same options (and metadata), if available, when it is
+     * first used. The driver returns to the pool when the session is closed (see {@link #giveBack(Session)}).
+     *
+     * @param options the options
+     * @return a non-null instance
+     */
+    public Session borrow(Options options) {
+        requireNonNull(options);
+        if (closed) throw new SessionException("Session pool is closed");
+        Session session = Session.create(options);
+        session.attach(this);
+        return session;
+    }
+
+    /**
+     * Returns a session to the pool, same as {@link Session#close()}.
+     *
+     * @param session the session
+     */
+    public void giveBack(Session session) {
+        requireNonNull(session);
+        session.close();
+    }
+
+    /**
+     * Closes all idle drivers; drivers of borrowed sessions are closed when the sessions are closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) evictor.shutdownNow();
+        for (Deque<PooledDriver> drivers : idle.values()) {
+            PooledDriver pooled;
+            while ((pooled = drivers.pollFirst()) != null) {
+                discard(pooled, "Closed");
+            }
+        }
+    }
+
+    /**
+     * Hands an idle driver to a session, when the session is first used.
+     *
+     * @param session the session
+     * @return {@code true} if the session received a driver, {@code false} if the session must create one
+     */
+    boolean acquire(Session session) {
+        if (closed) return false;
+        PooledDriver pooled = null;
+        Deque<PooledDriver> drivers = idle.get(new Key(session.getOptions(), session.getMetadata()));
+        while (drivers != null && (pooled = drivers.pollLast()) != null) {
+            if (!isTooOld(pooled) && !isIdleTooLong(pooled) && isHealthy(pooled)) break;
+            discard(pooled, "Invalid");
+            pooled = null;
+        }
+        if (pooled == null) {
+            METRICS.count("Miss");
+            return false;
+        }
+        METRICS.count("Hit");
+        borrowed.put(pooled.driver, pooled);
+        session.reuse(pooled.driver, pooled.hubUri, pooled.metadata);
+        return true;
+    }
+
+    /**
+     * Receives the driver of a closed session.
+     *
+     * @param session the session
+     * @param driver  the driver
+     */
+    void release(Session session, WebDriver driver) {
+        PooledDriver pooled = borrowed.remove(driver);
+        if (pooled == null) {
+            pooled = new PooledDriver(driver, session.getStartTime(), session.getHubUri(), session.getDriverMetadata());
+        }
+        if (closed || isTooOld(pooled)) {
+            discard(pooled, "Expired");
+            return;
+        }
+        if (!reset(pooled, session.getOrigins())) {
+            discard(pooled, "Reset Failed");
+            return;
+        }
+        Key key = new Key(session.getOptions(), pooled.metadata);
+        Deque<PooledDriver> drivers = idle.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+        if (drivers.size() >= maxIdlePerKey) {
+            discard(pooled, "Full");
+            return;
+        }
+        pooled.lastUsed = currentTimeMillis();
+        drivers.addLast(pooled);
+        startEvictor();
+    }
+
+    private boolean reset(PooledDriver pooled, Set<String> origins) {
+        WebDriver driver = pooled.driver;
+        try {
+            List<String> handles = new ArrayList<>(driver.getWindowHandles());
+            if (handles.isEmpty()) return false;
+            String main = handles.get(0);
+            for (String handle : handles.subList(1, handles.size())) {
+                driver.switchTo().window(handle);
+                driver.close();
+            }
+            driver.switchTo().window(main);
+            if (driver instanceof JavascriptExecutor executor) {
+                executor.executeScript("try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+            }
+            driver.manage().deleteAllCookies();
+            if (!clearOrigins(pooled, origins)) return false;
+            discardLogs(driver);
+            driver.get("about:blank");
+            METRICS.count("Reset");
+            return true;
+        } catch (Exception e) {
+            LOGGER.debug("Failed to reset driver, root cause: " + ExceptionUtils.getRootCauseMessage(e));
+            return false;
+        }
+    }
+
+    /**
+     * Clears the cookies and the storage of all origins opened by the session.
+     *
+     * @return {@code true} if the storage was cleared (or only the current page was opened), {@code false} otherwise
+     */
+    private boolean clearOrigins(PooledDriver pooled, Set<String> origins) {
+        if (pooled.driver instanceof HasCdp cdp) {
+            cdp.executeCdpCommand("Network.clearBrowserCookies", Collections.emptyMap());
+            for (String origin : origins) {
+                cdp.executeCdpCommand("Storage.clearDataForOrigin", Map.of("origin", origin, "storageTypes", "all"));
+            }
+            return true;
+        }
+        DevTools devTools = pooled.getDevTools();
+        if (devTools == null) return origins.size() <= 1;
+        devTools.send(new Command<Void>("Network.clearBrowserCookies", Map.of()));
+        for (String origin : origins) {
+            devTools.send(new Command<Void>("Storage.clearDataForOrigin", Map.of("origin", origin, "storageTypes", "all")));
+        }
+        return true;
+    }
+
+    private void discardLogs(WebDriver driver) {
+        try {
+            Logs logs = driver.manage().logs();
+            for (String type : logs.getAvailableLogTypes()) {
+                logs.get(type);
+            }
+        } catch (Exception e) {
+            // logs are not supported by all drivers
+        }
+    }
+
+    private boolean isHealthy(PooledDriver pooled) {
+        try {
+            pooled.driver.getWindowHandle();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private boolean isTooOld(PooledDriver pooled) {
+        return millisSince(pooled.createdAt) > maxAge.toMillis();
+    }
+
+    private boolean isIdleTooLong(PooledDriver pooled) {
+        return millisSince(pooled.lastUsed) > maxIdleTime.toMillis();
+    }
+
+    private void discard(PooledDriver pooled, String reason) {
+        METRICS.count("Discard " + reason);
+        pooled.closeDevTools();
+        try {
+            pooled.driver.quit();
+        } catch (Exception e) {
+            LOGGER.debug("Failed to quit pooled driver, root cause: " + ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private void evict() {
+        for (Deque<PooledDriver> drivers : idle.values()) {
+            for (PooledDriver pooled : drivers) {
+                if ((isTooOld(pooled) || isIdleTooLong(pooled)) && drivers.remove(pooled)) discard(pooled, "Idle");
+            }
+        }
+    }
+
+    private void startEvictor() {
+        if (evictor != null) return;
+        synchronized (this) {
+            if (evictor != null || closed) return;
+            evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Zenith Session Pool");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor.scheduleWithFixedDelay(this::evict, EVICTION_INTERVAL.toMillis(), EVICTION_INTERVAL.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static class PooledDriver {
+
+        private final WebDriver driver;
+        private final long createdAt;
+        private final URI hubUri;
+        private final Map<String, Object> metadata;
+        private volatile long lastUsed;
+        private DevTools devTools;
+        private boolean devToolsResolved;
+
+        private PooledDriver(WebDriver driver, long createdAt, URI hubUri, Map<String, Object> metadata) {
+            this.driver = driver;
+            this.createdAt = createdAt;
+            this.hubUri = hubUri;
+            this.metadata = metadata;
+        }
+
+        /**
+         * Returns the DevTools connection of a remote driver (through the Grid), created once per driver.
+         *
+         * @return the connection, null if the browser does not support DevTools
+         */
+        private synchronized DevTools getDevTools() {
+            if (devToolsResolved) return devTools;
+            devToolsResolved = true;
+            if (!(driver instanceof RemoteWebDriver)) return null;
+            try {
+                WebDriver augmented = new Augmenter().augment(driver);
+                if (augmented instanceof HasDevTools hasDevTools) devTools = hasDevTools.maybeGetDevTools().orElse(null);
+                if (devTools != null) devTools.createSessionIfThereIsNotOne();
+            } catch (Exception e) {
+                LOGGER.debug("DevTools are not available for pooled driver, root cause: " + ExceptionUtils.getRootCauseMessage(e));
+                devTools = null;
+            }
+            return devTools;
+        }
+
+        private synchronized void closeDevTools() {
+            if (devTools == null) return;
+            try {
+                devTools.close();
+            } catch (Exception e) {
+                // the browser is closed next
+            }
+            devTools = null;
+        }
+    }
+
+    /**
+     * The options which affect the browser, and the metadata of remote sessions.
+     */
+    private static class Key {
+
+        private final Options.Browser browser;
+        private final List<URI> uris;
+        private final boolean headless;
+        private final boolean fullScreen;
+        private final boolean debug;
+        private final Options.RecordingMode recordingMode;
+        private final Map<String, Object> metadata;
+
+        private Key(Options options, Map<String, Object> metadata) {
+            this.browser = options.getBrowser();
+            this.uris = options.isLocal() ? null : options.getHubUris();
+            this.headless = options.isHeadless();
+            this.fullScreen = options.isFullScreen();
+            this.debug = options.isDebug();
+            this.recordingMode = options.getRecordingMode();
+            this.metadata = options.isLocal() || metadata == null ? Collections.emptyMap() : metadata;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return headless == key.headless && fullScreen == key.fullScreen && debug == key.debug && browser == key.browser
+                    && Objects.equals(uris, key.uris) && recordingMode == key.recordingMode
+                    && Objects.equals(metadata, key.metadata);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(browser, uris, headless, fullScreen, debug, recordingMode, metadata);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package net.microfalx.zenith.client;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.chrome.ChromeDriverService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the WebDriver API with {@link CommandBatch} over a simulated WAN link.
+ * <p>
+ * A local proxy delays every request and response between the client and a local Chrome driver (half of the round
+ * trip time in each direction), then the same page is read with one command per element and with a batch.
+ * <p>
+ * Run it with {@code main} (from the IDE or with the test classpath, Chrome must be installed), it is not part of the
+ * regular test suite. The first argument is the round trip time in milliseconds (50 by default).
+ */
+public class CommandBatchBenchmark {
+
+    private static final int LINK_COUNT = 50;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws Exception {
+        long roundTripTime = args.length > 0 ? Long.parseLong(args[0]) : 50;
+        DriverManager.getInstance().registerDriver(Options.Browser.CHROME);
+        ChromeDriverService service = ChromeDriverService.createDefaultService();
+        service.start();
+        try (DelayProxy proxy = new DelayProxy(service.getUrl().getPort(), roundTripTime / 2)) {
+            proxy.start();
+            Session session = Session.create(Options.create().withHubUri("http://localhost:" + proxy.getPort()));
+            try {
+                URI page = createPage();
+                session.getWebDriver().get(page.toASCIIString());
+                long webDriverDuration = 0;
+                long batchDuration = 0;
+                int savedRoundTrips = 0;
+                for (int i = 0; i < ITERATIONS; i++) {
+                    webDriverDuration += readWithWebDriver(session.getWebDriver(), page);
+                    long start = System.nanoTime();
+                    CommandBatch batch = session.batch();
+                    batch.navigate(page);
+                    batch.title();
+                    batch.attributes("a", "href");
+                    batch.texts("a");
+                    batch.execute();
+                    batchDuration += System.nanoTime() - start;
+                    savedRoundTrips = batch.getSavedRoundTrips();
+                }
+                System.out.printf("Round trip %d ms, %d links%n", roundTripTime, LINK_COUNT);
+                System.out.printf("WebDriver API %8.1f ms%n", webDriverDuration / 1e6 / ITERATIONS);
+                System.out.printf("Batch         %8.1f ms, %d round trips saved%n", batchDuration / 1e6 / ITERATIONS, savedRoundTrips);
+            } finally {
+                session.close();
+            }
+        } finally {
+            service.stop();
+        }
+    }
+
+    private static long readWithWebDriver(WebDriver driver, URI page) {
+        long start = System.nanoTime();
+        driver.get(page.toASCIIString());
+        driver.getTitle();
+        List<String> values = new ArrayList<>();
+        for (WebElement element : driver.findElements(By.cssSelector("a"))) {
+            values.add(element.getAttribute("href"));
+        }
+        for (WebElement element : driver.findElements(By.cssSelector("a"))) {
+            values.add(element.getText());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static URI createPage() {
+        StringBuilder builder = new StringBuilder("<html><head><title>Batch</title></head><body>");
+        for (int i = 0; i < LINK_COUNT; i++) {
+            builder.append("<a href='https://example.com/").append(i).append("'>Link ").append(i).append("</a><br>");
+        }
+        builder.append("</body></html>");
+        return URI.create("data:text/html," + URLEncoder.encode(builder.toString(), StandardCharsets.UTF_8).replace("+", "%20"));
+    }
+
+    /**
+     * A TCP proxy which delays every chunk of data in both directions.
+     */
+    private static class DelayProxy implements AutoCloseable {
+
+        private final int targetPort;
+        private final long delay;
+        private final ServerSocket serverSocket;
+
+        private DelayProxy(int targetPort, long delay) throws IOException {
+            this.targetPort = targetPort;
+            this.delay = delay;
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        }
+
+        private int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void start() {
+            Thread thread = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket client = serverSocket.accept();
+                        Socket target = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+                        pump(client, target);
+                        pump(target, client);
+                    } catch (IOException e) {
+                        // closed
+                    }
+                }
+            }, "Delay Proxy");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void pump(Socket from, Socket to) {
+            Thread thread = new Thread(() -> {
+                byte[] buffer = new byte[64 * 1024];
+                try (InputStream inputStream = from.getInputStream(); OutputStream outputStream = to.getOutputStream()) {
+                    int count;
+                    while ((count = inputStream.read(buffer)) > 0) {
+                        Thread.sleep(delay);
+                        outputStream.write(buffer, 0, count);
+                        outputStream.flush();
+                    }
+                } catch (Exception e) {
+                    // connection closed
+                }
+            }, "Delay Proxy Pump");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
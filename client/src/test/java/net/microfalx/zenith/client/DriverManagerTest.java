@@ -0,0 +1,118 @@
+package net.microfalx.zenith.client;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DriverManagerTest {
+
+    @TempDir
+    File directory;
+
+    private File downloaded;
+
+    @BeforeEach
+    void setup() throws IOException {
+        downloaded = new File(directory, "chromedriver");
+        Files.writeString(downloaded.toPath(), "driver 130");
+    }
+
+    @Test
+    void downloadAndCache() {
+        TestResolver resolver = new TestResolver("130", downloaded, "130.0.6723.91");
+        DriverManager driverManager = new DriverManager(new File(directory, "cache"), resolver, false);
+        driverManager.registerDriver(Options.Browser.CHROME);
+        driverManager.registerDriver(Options.Browser.CHROME);
+        assertEquals(1, resolver.downloads);
+        File driver = driverManager.getDriver(Options.Browser.CHROME);
+        assertNotNull(driver);
+        assertNotEquals(downloaded, driver);
+        assertEquals(driver.getAbsolutePath(), System.getProperty("webdriver.chrome.driver"));
+    }
+
+    @Test
+    void warmCacheDoesNotDownload() {
+        File cache = new File(directory, "cache");
+        new DriverManager(cache, new TestResolver("130", downloaded, "130.0.6723.91"), false).registerDriver(Options.Browser.CHROME);
+        TestResolver offline = new TestResolver("130", null, null);
+        DriverManager driverManager = new DriverManager(cache, offline, false);
+        driverManager.registerDriver(Options.Browser.CHROME);
+        assertEquals(0, offline.downloads);
+        assertNotNull(driverManager.getDriver(Options.Browser.CHROME));
+    }
+
+    @Test
+    void offlineFallbackToNewest() {
+        File cache = new File(directory, "cache");
+        new DriverManager(cache, new TestResolver("130", downloaded, "130.0.6723.91"), false).registerDriver(Options.Browser.CHROME);
+        TestResolver offline = new TestResolver("131", null, null);
+        DriverManager driverManager = new DriverManager(cache, offline, false);
+        driverManager.registerDriver(Options.Browser.CHROME);
+        assertEquals(1, offline.downloads);
+        assertNotNull(driverManager.getDriver(Options.Browser.CHROME));
+    }
+
+    @Test
+    void unknownBrowserVersionUsesNewest() {
+        File cache = new File(directory, "cache");
+        new DriverManager(cache, new TestResolver("130", downloaded, "130.0.6723.91"), false).registerDriver(Options.Browser.CHROME);
+        TestResolver unknown = new TestResolver(null, downloaded, "131.0.6778.69");
+        DriverManager driverManager = new DriverManager(cache, unknown, false);
+        driverManager.registerDriver(Options.Browser.CHROME);
+        assertEquals(0, unknown.downloads);
+        assertNotNull(driverManager.getDriver(Options.Browser.CHROME));
+    }
+
+    @Test
+    void offlineWithoutCache() {
+        TestResolver offline = new TestResolver("130", downloaded, "130.0.6723.91");
+        DriverManager driverManager = new DriverManager(new File(directory, "cache"), offline, true);
+        driverManager.registerDriver(Options.Browser.FIREFOX);
+        assertEquals(0, offline.downloads);
+        assertNull(driverManager.getDriver(Options.Browser.FIREFOX));
+    }
+
+    @Test
+    void majorVersion() {
+        assertEquals("130", DriverManager.getMajorVersion("Google Chrome 130.0.6723.91"));
+        assertEquals("131", DriverManager.getMajorVersion("Mozilla Firefox 131.0"));
+        assertNull(DriverManager.getMajorVersion("unknown"));
+    }
+
+    private static class TestResolver implements DriverManager.Resolver {
+
+        private final String browserVersion;
+        private final File driver;
+        private final String driverVersion;
+        private int downloads;
+
+        private TestResolver(String browserVersion, File driver, String driverVersion) {
+            this.browserVersion = browserVersion;
+            this.driver = driver;
+            this.driverVersion = driverVersion;
+        }
+
+        @Override
+        public String getBrowserMajorVersion(Options.Browser browser) {
+            return browserVersion;
+        }
+
+        @Override
+        public File download(Options.Browser browser, String majorVersion) {
+            downloads++;
+            if (driver == null) throw new IllegalStateException("Network is not available");
+            return driver;
+        }
+
+        @Override
+        public String getDriverVersion(Options.Browser browser) {
+            return driverVersion;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package net.microfalx.zenith.client;
+
+import net.microfalx.resource.FileResource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LogBufferTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void evictWithinCharacterLimit() {
+        LogBuffer buffer = new LogBuffer("test", 100, 10);
+        buffer.append(Level.INFO, "1234");
+        buffer.append(Level.INFO, "5678");
+        assertEquals("1234\n5678\n", buffer.toString());
+        buffer.append(Level.INFO, "9");
+        assertEquals("5678\n9\n", buffer.toString());
+    }
+
+    @Test
+    void truncateLongLine() {
+        LogBuffer buffer = new LogBuffer("test", 100, 10);
+        buffer.append(Level.INFO, "1234");
+        buffer.append(Level.INFO, "0123456789abcdef");
+        assertEquals("012345...\n", buffer.toString());
+    }
+
+    @Test
+    void spillRetainedLinesOnClose() throws IOException {
+        File file = new File(directory, "test.log");
+        LogBuffer buffer = new LogBuffer("test", 2, 100);
+        buffer.setSpill(FileResource.file(file));
+        buffer.append(Level.INFO, "1");
+        buffer.append(Level.INFO, "2");
+        buffer.append(Level.INFO, "3");
+        buffer.close();
+        assertEquals("1\n2\n3\n", Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        assertEquals("2\n3\n", buffer.toString());
+    }
+}
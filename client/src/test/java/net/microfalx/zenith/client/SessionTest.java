@@ -2,6 +2,9 @@ package net.microfalx.zenith.client;
 
 import org.junit.jupiter.api.Test;
 
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 class SessionTest {
@@ -24,6 +27,14 @@ class SessionTest {
         validateSession(session);
     }
 
+    @Test
+    void failureUri() {
+        assertEquals(URI.create("http://hub:4444/session/s1/zenith/failed"),
+                Session.getFailureUri(URI.create("http://hub:4444"), "s1"));
+        assertEquals(URI.create("http://hub:4444/session/s1/zenith/failed"),
+                Session.getFailureUri(URI.create("http://hub:4444/wd/hub"), "s1"));
+    }
+
     private void validateSession(Session session) {
         assertNotNull(session);
         session.open("https://google.com");
@@ -1,5 +1,6 @@
 package net.microfalx.zenith.hub;
 
+import net.microfalx.lang.StringUtils;
 import net.microfalx.zenith.api.common.Server;
 import net.microfalx.zenith.api.hub.HubException;
 import net.microfalx.zenith.base.grid.Component;
@@ -112,6 +113,9 @@ public class HubFactory {
         LOGGER.info("Create Selenium Hub");
         logConfiguration();
         component = Component.create(Hub.class);
+        if (StringUtils.isNotEmpty(properties.getSlotSelector())) {
+            component.option("slot-selector", properties.getSlotSelector());
+        }
         component.start();
         hub = component.get();
         LOGGER.info("Selenium Hub was started");
@@ -129,6 +133,7 @@ public class HubFactory {
         LOGGER.info(" - port: " + properties.getPort());
         LOGGER.info(" - timeout: " + formatDuration(properties.getTimeout()));
         LOGGER.info(" - browser timeout: " + formatDuration(properties.getBrowserTimeout()));
+        LOGGER.info(" - slot selector: " + properties.getSlotSelector());
     }
 
     static class ShutdownThread extends Thread {
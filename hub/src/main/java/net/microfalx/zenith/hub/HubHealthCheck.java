@@ -1,23 +1,73 @@
 package net.microfalx.zenith.hub;
 
-import net.microfalx.lang.ThreadUtils;
+import net.microfalx.lang.ExceptionUtils;
+import net.microfalx.metrics.Metrics;
+import net.microfalx.zenith.api.hub.HubException;
 import net.microfalx.zenith.api.hub.HubService;
+import net.microfalx.zenith.api.node.Node;
+import net.microfalx.zenith.api.node.Slot;
+import net.microfalx.zenith.base.ZenithUtils;
 import net.microfalx.zenith.client.Options;
+import net.microfalx.zenith.client.Readiness;
 import net.microfalx.zenith.client.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Validates the grid with a synthetic session, which opens a page built into the hub (no access to the public
+ * internet is required).
+ * <p>
+ * Each run probes a fraction of the nodes (capped by {@link HubProperties#getValidationMaxProbes()}), one node at a
+ * time, so the health check never uses more than one slot. Runs rotate through the nodes, so every node is probed
+ * periodically regardless of the size of the grid; nodes without a free slot are skipped until the next rotation.
+ * Every stage of the probe (create the session, first navigation, screenshot and quit) is timed separately, per
+ * browser and node.
+ * <p>
+ * Probes create real sessions (which can take seconds), so the health check runs on its own thread and never
+ * delays the tasks of the shared scheduler.
+ */
 class HubHealthCheck implements Runnable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HubHealthCheck.class);
 
+    private static final Metrics METRICS = ZenithUtils.ZENITH_METRICS.withGroup("Health Check");
+
+    private static final Readiness READINESS = Readiness.create().withTimeout(Duration.ofSeconds(10));
+
+    private static final String PROBE_PAGE = """
+            <!DOCTYPE html>
+            <html>
+            <head><meta charset="utf-8"><title>Zenith Probe</title></head>
+            <body style="font-family: sans-serif; margin: 2em">
+            <h1 id="title">Zenith Probe</h1>
+            <p id="message">A synthetic page used to validate the grid.</p>
+            <svg width="200" height="60"><rect width="200" height="60" fill="#3c8dbc"/>
+            <text x="100" y="38" fill="#fff" text-anchor="middle">Zenith</text></svg>
+            <table id="items"><tr><th>Stage</th></tr><tr><td>Create</td></tr><tr><td>Navigate</td></tr>
+            <tr><td>Screenshot</td></tr><tr><td>Quit</td></tr></table>
+            </body>
+            </html>""";
+
+    private static final URI PROBE_URI = URI.create("data:text/html;charset=utf-8;base64,"
+            + Base64.getEncoder().encodeToString(PROBE_PAGE.getBytes(StandardCharsets.UTF_8)));
+
     private final HubService hubService;
-    private Session session;
+    private final HubProperties properties;
+    private int nextNode;
 
-    public HubHealthCheck(HubService hubService) {
+    public HubHealthCheck(HubService hubService, HubProperties properties) {
+        requireNonNull(hubService);
+        requireNonNull(properties);
         this.hubService = hubService;
+        this.properties = properties;
     }
 
     @Override
@@ -26,33 +76,85 @@ class HubHealthCheck implements Runnable {
             LOGGER.debug("Hub is not ready, cancel health check validation");
         } else {
             try {
-                createSession();
-                runRequests();
-            } finally {
-                closeSession();
+                for (Slot slot : selectSlots()) {
+                    probe(slot);
+                }
+            } catch (Exception e) {
+                LOGGER.error("Health check validation failed", e);
             }
         }
     }
 
-    private void createSession() {
-        Options options = Options.create().withHubUri(hubService.getWsUri());
-        session = Session.create(options);
-        session.setProject("Zenith").setCategory("Health Check").setNamespace("net.microfalx.zenith.hub");
-        session.addTag("zenith").addTag("validation");
+    /**
+     * Selects one free slot (with a supported browser) on the next nodes of the rotation.
+     */
+    private Collection<Slot> selectSlots() {
+        Map<String, List<Slot>> slotsByNode = new HashMap<>();
+        for (Slot slot : hubService.getSlots()) {
+            if (slot.getState() != Slot.State.FREE || getBrowser(slot) == null) continue;
+            slotsByNode.computeIfAbsent(slot.getNode().getId(), k -> new ArrayList<>()).add(slot);
+        }
+        List<String> nodeIds = new ArrayList<>();
+        for (Node node : hubService.getNodes()) {
+            nodeIds.add(node.getId());
+        }
+        if (nodeIds.isEmpty()) return Collections.emptyList();
+        Collections.sort(nodeIds);
+        int probeCount = (int) Math.ceil(nodeIds.size() * properties.getValidationFraction());
+        probeCount = Math.min(probeCount, properties.getValidationMaxProbes());
+        Collection<Slot> slots = new ArrayList<>();
+        int visited = 0;
+        while (visited < nodeIds.size() && slots.size() < probeCount) {
+            String nodeId = nodeIds.get((nextNode + visited++) % nodeIds.size());
+            List<Slot> nodeSlots = slotsByNode.get(nodeId);
+            if (nodeSlots == null) {
+                METRICS.count("Skipped Busy");
+            } else {
+                slots.add(nodeSlots.get(ThreadLocalRandom.current().nextInt(nodeSlots.size())));
+            }
+        }
+        nextNode = (nextNode + visited) % nodeIds.size();
+        return slots;
     }
 
-    private void runRequests() {
-        session.open(URLS[ThreadLocalRandom.current().nextInt(URLS.length)]);
-        session.takeScreenShot();
-        ThreadUtils.sleepSeconds(20);
+    private void probe(Slot slot) {
+        Node node = slot.getNode();
+        Options.Browser browser = getBrowser(slot);
+        String suffix = " - " + browser.name() + " - " + node.getName();
+        Options options = Options.create().withHubUri(hubService.getWsUri()).withBrowser(browser);
+        Session session = Session.create(options);
+        session.setNode(node.getUri()).setReadiness(READINESS).setDisableScreenshot(true);
+        session.setProject("Zenith").setCategory("Health Check").setNamespace("net.microfalx.zenith.hub");
+        session.addTag("zenith").addTag("validation");
+        String stage = "Create";
+        try {
+            METRICS.time(stage + suffix, o -> session.getWebDriver());
+            stage = "Navigate";
+            METRICS.time(stage + suffix, o -> {
+                session.open(PROBE_URI, false);
+                if (!session.waitUntilPageLoaded()) throw new HubException("Probe page is not ready");
+            });
+            stage = "Screenshot";
+            METRICS.time(stage + suffix, o -> {
+                if (session.captureScreenShot() == null) throw new HubException("Screenshot is not available");
+            });
+            stage = "Quit";
+            METRICS.time(stage + suffix, o -> session.close());
+            METRICS.count("Successful" + suffix);
+        } catch (Exception e) {
+            METRICS.count("Failed " + stage + suffix);
+            LOGGER.warn("Health check failed for node " + node.getName() + " (" + browser + ") at stage '" + stage
+                    + "', root cause: " + ExceptionUtils.getRootCauseMessage(e));
+        } finally {
+            if (!session.isClosed()) session.close();
+        }
     }
 
-    private void closeSession() {
-        if (session == null) return;
-        session.close();
+    private static Options.Browser getBrowser(Slot slot) {
+        return switch (slot.getBrowser()) {
+            case CHROME -> Options.Browser.CHROME;
+            case FIREFOX -> Options.Browser.FIREFOX;
+            default -> null;
+        };
     }
-
-    private static final String[] URLS = {
-            "https://google.com", "https://x.com", "https://www.facebook.com", "https://www.linkedin.com"
-    };
 }
@@ -2,6 +2,7 @@ package net.microfalx.zenith.hub;
 
 import lombok.Getter;
 import lombok.ToString;
+import net.microfalx.zenith.base.grid.LoadAwareSlotSelector;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
@@ -18,4 +19,8 @@ public class HubProperties {
     private Duration browserTimeout = Duration.ofSeconds(120);
     private int maxThreads = 50;
     private Duration validationInterval = Duration.ofSeconds(30);
+    private double validationFraction = 0.25;
+    private int validationMaxProbes = 4;
+    private Duration reconcileInterval = Duration.ofSeconds(30);
+    private String slotSelector = LoadAwareSlotSelector.class.getName();
 }
@@ -14,25 +14,34 @@ import net.microfalx.zenith.api.hub.HubService;
 import net.microfalx.zenith.api.node.Node;
 import net.microfalx.zenith.api.node.Slot;
 import net.microfalx.zenith.base.ZenithUtils;
+import net.microfalx.zenith.base.archive.SessionArchive;
 import net.microfalx.zenith.base.grid.HubStatus;
+import net.microfalx.zenith.base.grid.HubTopology;
+import net.microfalx.zenith.base.grid.NodeAdmissions;
 import net.microfalx.zenith.base.grid.SessionManager;
 import net.microfalx.zenith.base.jpa.HubRepository;
+import net.microfalx.zenith.base.jpa.NodeRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.System.currentTimeMillis;
-import static java.util.Collections.unmodifiableCollection;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
 import static net.microfalx.lang.TimeUtils.*;
 
 @Service
@@ -41,7 +50,9 @@ public class HubServiceImpl implements HubService, InitializingBean, Application
     private static final Logger LOGGER = LoggerFactory.getLogger(HubService.class);
 
     private static final long REFRESH_READY_INTERVAL = FIVE_SECONDS;
-    private static final long REFRESH_NODES_INTERVAL = ONE_SECONDS;
+    private static final long ADMISSIONS_INTERVAL = FIVE_SECONDS;
+    private static final long HEARTBEAT_INTERVAL = 2_000;
+    private static final String HEARTBEAT_SQL = "UPDATE zenith_hub SET pinged_at = NOW(), load_factor = ? WHERE natural_id = ?";
     static Metrics GRID_METRICS = ZenithUtils.ZENITH_METRICS.withGroup("Grid");
 
     @Autowired
@@ -50,6 +61,9 @@ public class HubServiceImpl implements HubService, InitializingBean, Application
     @Autowired
     private HubRepository hubRepository;
 
+    @Autowired
+    private NodeRepository nodeRepository;
+
     @Autowired
     private SessionManager sessionManager;
 
@@ -59,11 +73,17 @@ public class HubServiceImpl implements HubService, InitializingBean, Application
     @Autowired
     private TaskScheduler taskScheduler;
 
-    private Hub hub;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Hub hub;
     private volatile boolean ready;
     private volatile long lastReadyUpdate = TimeUtils.ONE_DAY;
-    private volatile long lastNodesUpdate = TimeUtils.ONE_DAY;
-    private volatile Holder holder = new Holder();
+    private volatile HubTopology topology = new HubTopology();
+    private volatile NodeAdmissions admissions = new NodeAdmissions();
+    private volatile long lastAdmissionsUpdate = TimeUtils.oneHourAgo();
+    private final ScheduledExecutorService heartbeatExecutor = createExecutor("Zenith Hub Heartbeat");
+    private final ScheduledExecutorService healthCheckExecutor = createExecutor("Zenith Hub Health Check");
 
     @Override
     public Hub getHub() {
@@ -95,54 +115,71 @@ public class HubServiceImpl implements HubService, InitializingBean, Application
 
     @Override
     public Collection<Session> getSessions() {
-        refreshNodes();
-        return unmodifiableCollection(holder.sessions.values());
+        return topology.getSnapshot().getSessions();
     }
 
     @Override
     public Session getSession(String id) {
-        refreshNodes();
-        Session session = holder.sessions.get(id);
+        Session session = topology.getSnapshot().getSession(id);
         if (session == null) throw new HubException("A session with identifier '" + id + "' does not exist");
         return session;
     }
 
     @Override
     public Collection<Slot> getSlots() {
-        refreshNodes();
-        return unmodifiableCollection(holder.slots.values());
+        return topology.getSnapshot().getSlots();
     }
 
     @Override
     public Slot getSlot(String id) {
-        refreshNodes();
-        Slot slot = holder.slots.get(id);
+        Slot slot = topology.getSnapshot().getSlot(id);
         if (slot == null) throw new HubException("A slot with identifier '" + id + "' does not exist");
         return slot;
     }
 
     @Override
     public Node getNode(String id) {
-        refreshNodes();
-        Node node = holder.nodes.get(id);
+        Node node = topology.getSnapshot().getNode(id);
         if (node == null) throw new HubException("A node with identifier '" + id + "' does not exist");
         return node;
     }
 
     @Override
     public Collection<Node> getNodes() {
-        refreshNodes();
-        return unmodifiableCollection(holder.nodes.values());
+        return topology.getSnapshot().getNodes();
     }
 
     @Override
     public Log getLog(String id, Log.Type type) {
-        return null;
+        requireNonNull(id);
+        requireNonNull(type);
+        String name = SessionArchive.getLogName(type);
+        if (name == null) return Log.create(type);
+        try {
+            Optional<SessionArchive> archive = SessionArchive.find(id);
+            if (archive.isPresent()) {
+                Optional<String> text = archive.get().getLog(name);
+                if (text.isPresent()) return Log.create(type, text.get());
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to extract log " + name + " for session " + id, e);
+        }
+        return Log.create(type);
     }
 
     @Override
     public Screenshot getScreenshot(String id) {
-        return null;
+        requireNonNull(id);
+        try {
+            Optional<SessionArchive> archive = SessionArchive.find(id);
+            if (archive.isPresent()) {
+                Optional<byte[]> data = archive.get().getLastScreenshot();
+                if (data.isPresent()) return Screenshot.create(id, data.get());
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to extract screenshot for session " + id, e);
+        }
+        return Screenshot.create();
     }
 
     @Override
@@ -154,7 +191,7 @@ public class HubServiceImpl implements HubService, InitializingBean, Application
 
     @Override
     public void refresh() {
-        refreshNodes();
+        reconcileTopology();
     }
 
     @Override
@@ -181,30 +218,81 @@ public class HubServiceImpl implements HubService, InitializingBean, Application
         try {
             factory.start();
             factory.getHub().setSessionManager(sessionManager);
+            topology = factory.getHub().getTopology();
+            admissions = factory.getHub().getAdmissions();
         } catch (Exception e) {
             LOGGER.error("Selenium Hub failed to start", e);
         }
     }
 
     private void registerTasks() {
-        taskScheduler.scheduleAtFixedRate(new HubHealthCheck(this), properties.getValidationInterval());
+        long validationInterval = properties.getValidationInterval().toMillis();
+        healthCheckExecutor.scheduleWithFixedDelay(new HubHealthCheck(this, properties), validationInterval,
+                validationInterval, TimeUnit.MILLISECONDS);
+        taskScheduler.scheduleWithFixedDelay(new ReconcileWorker(), Duration.ofSeconds(1));
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, 0, HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the load advertised to nodes and clients: the used slots and the requests waiting for a slot, as a
+     * percentage of all slots.
+     */
+    private float getLoad() {
+        Collection<Slot> slots = getSlots();
+        int queued = HubFactory.getInstance().getHub().getNewSessionMetrics().getQueueDepth();
+        if (slots.isEmpty()) return queued > 0 ? 100 : 0;
+        long used = slots.stream().filter(slot -> slot.getState() == Slot.State.USED).count();
+        return 100f * (used + queued) / slots.size();
     }
 
-    private synchronized void refreshNodes() {
-        if (!holder.nodes.isEmpty() && millisSince(lastNodesUpdate) < REFRESH_NODES_INTERVAL) return;
+    private void heartbeat() {
+        try {
+            if (hub != null) jdbcTemplate.update(HEARTBEAT_SQL, getLoad(), hub.getId());
+        } catch (Exception e) {
+            LOGGER.warn("Failed to update hub heartbeat, root cause: " + e.getMessage());
+        }
+    }
+
+    private void reconcileTopology() {
         HubStatus status = new HubStatus(hub, false);
         status.execute();
-        Holder holder = new Holder();
-        status.getNodes().forEach(n -> holder.nodes.put(n.getId(), n));
-        status.getSlots().forEach(s -> holder.slots.put(s.getId(), s));
-        status.getSessions().forEach(s -> holder.sessions.put(s.getId(), s));
-        this.holder = holder;
-        lastNodesUpdate = System.currentTimeMillis();
-    }
-
-    static class Holder {
-        private final Map<String, Node> nodes = new HashMap<>();
-        private final Map<String, Session> sessions = new HashMap<>();
-        private final Map<String, Slot> slots = new HashMap<>();
+        topology.reconcile(status);
+    }
+
+    /**
+     * The heartbeat runs on its own thread, so a slow reconcile (or a busy task scheduler) never delays it: nodes
+     * and clients fail over to another hub when the heartbeats stop. The health check runs on its own thread too,
+     * since its probes create real sessions.
+     */
+    private static ScheduledExecutorService createExecutor(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private class ReconcileWorker implements Runnable {
+
+        @Override
+        public void run() {
+            if (hub == null) return;
+            long interval = properties.getReconcileInterval().toMillis();
+            if (topology.isStale() || millisSince(topology.getLastReconciled()) > interval) {
+                try {
+                    reconcileTopology();
+                } catch (Exception e) {
+                    LOGGER.warn("Failed to reconcile topology, root cause: " + e.getMessage());
+                }
+            }
+            if (millisSince(lastAdmissionsUpdate) > ADMISSIONS_INTERVAL) {
+                lastAdmissionsUpdate = currentTimeMillis();
+                try {
+                    admissions.update(nodeRepository.findAll());
+                } catch (Exception e) {
+                    LOGGER.warn("Failed to update node admissions, root cause: " + e.getMessage());
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,120 @@
+package net.microfalx.zenith.hub;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import net.microfalx.bootstrap.dataset.model.NamedIdentityAware;
+import net.microfalx.lang.annotation.*;
+import net.microfalx.zenith.base.grid.LatencyHistogram;
+import net.microfalx.zenith.base.grid.NewSessionMetrics;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ToString
+@Name("New Sessions")
+@ReadOnly
+public class NewSessionStatistics extends NamedIdentityAware<String> {
+
+    static final String ALL = "All";
+
+    @Position(20)
+    @Description("The browser requested by the sessions")
+    @Width("120px")
+    private String browser;
+
+    @Position(21)
+    @Description("The project requesting the sessions")
+    @Width("120px")
+    private String project;
+
+    @Position(30)
+    @Description("The number of requests waiting in the queue")
+    @Width("90px")
+    private Integer queueDepth;
+
+    @Position(31)
+    @Description("The number of requests received by the hub")
+    @Width("90px")
+    private long requested;
+
+    @Position(32)
+    @Description("The number of requests which ended with a session")
+    @Width("90px")
+    private long created;
+
+    @Position(33)
+    @Description("The number of requests rejected by the hub or the nodes")
+    @Width("90px")
+    private long rejected;
+
+    @Position(34)
+    @Description("The number of requests which did not receive a session in time")
+    @Width("90px")
+    private long timedOut;
+
+    @Position(40)
+    @Description("The average time spent by requests in the queue")
+    @Width("120px")
+    private Duration queueWaitAverage;
+
+    @Position(41)
+    @Description("The time spent in the queue by 95% of the requests")
+    @Width("120px")
+    private Duration queueWaitP95;
+
+    @Position(50)
+    @Description("The time needed to select a slot for 95% of the requests")
+    @Width("120px")
+    private Duration slotSelectionP95;
+
+    @Position(51)
+    @Description("The median time needed by nodes to create a session")
+    @Width("120px")
+    private Duration nodeLatencyP50;
+
+    @Position(52)
+    @Description("The time needed by nodes to create a session for 95% of the requests")
+    @Width("120px")
+    private Duration nodeLatencyP95;
+
+    static NewSessionStatistics from(NewSessionMetrics.Outcome outcome) {
+        NewSessionStatistics statistics = new NewSessionStatistics();
+        statistics.setId(outcome.getBrowser() + "_" + outcome.getProject());
+        statistics.setName(outcome.getBrowser() + " / " + outcome.getProject());
+        statistics.setBrowser(outcome.getBrowser());
+        statistics.setProject(outcome.getProject());
+        statistics.setRequested(outcome.getQueued());
+        statistics.setCreated(outcome.getCreated());
+        statistics.setRejected(outcome.getRejected());
+        statistics.setTimedOut(outcome.getTimedOut());
+        statistics.updateQueueWait(outcome.getQueueWait());
+        return statistics;
+    }
+
+    static NewSessionStatistics from(NewSessionMetrics metrics) {
+        NewSessionStatistics statistics = new NewSessionStatistics();
+        statistics.setId(ALL);
+        statistics.setName(ALL);
+        statistics.setBrowser(ALL);
+        statistics.setProject(ALL);
+        statistics.setQueueDepth(metrics.getQueueDepth());
+        for (NewSessionMetrics.Outcome outcome : metrics.getOutcomes()) {
+            statistics.requested += outcome.getQueued();
+            statistics.created += outcome.getCreated();
+            statistics.rejected += outcome.getRejected();
+            statistics.timedOut += outcome.getTimedOut();
+        }
+        statistics.updateQueueWait(metrics.getQueueWait());
+        statistics.setSlotSelectionP95(Duration.ofMillis(metrics.getSlotSelection().getPercentile(95)));
+        statistics.setNodeLatencyP50(Duration.ofMillis(metrics.getNodeLatency().getPercentile(50)));
+        statistics.setNodeLatencyP95(Duration.ofMillis(metrics.getNodeLatency().getPercentile(95)));
+        return statistics;
+    }
+
+    private void updateQueueWait(LatencyHistogram queueWait) {
+        setQueueWaitAverage(Duration.ofMillis(queueWait.getAverage()));
+        setQueueWaitP95(Duration.ofMillis(queueWait.getPercentile(95)));
+    }
+}
@@ -0,0 +1,29 @@
+package net.microfalx.zenith.hub;
+
+import net.microfalx.bootstrap.dataset.DataSetFactory;
+import net.microfalx.bootstrap.dataset.MemoryDataSet;
+import net.microfalx.bootstrap.model.Filter;
+import net.microfalx.bootstrap.model.Metadata;
+import net.microfalx.bootstrap.model.PojoField;
+import net.microfalx.lang.annotation.Provider;
+import net.microfalx.zenith.base.grid.NewSessionMetrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+@Provider
+public class NewSessionStatisticsDataSet extends MemoryDataSet<NewSessionStatistics, PojoField<NewSessionStatistics>, String> {
+
+    public NewSessionStatisticsDataSet(DataSetFactory<NewSessionStatistics, PojoField<NewSessionStatistics>, String> factory, Metadata<NewSessionStatistics, PojoField<NewSessionStatistics>, String> metadata) {
+        super(factory, metadata);
+    }
+
+    @Override
+    protected Iterable<NewSessionStatistics> extractModels(Filter filterable) {
+        NewSessionMetrics metrics = HubFactory.getInstance().getHub().getNewSessionMetrics();
+        Collection<NewSessionStatistics> statistics = new ArrayList<>();
+        statistics.add(NewSessionStatistics.from(metrics));
+        metrics.getOutcomes().forEach(outcome -> statistics.add(NewSessionStatistics.from(outcome)));
+        return statistics;
+    }
+}
@@ -0,0 +1,72 @@
+package net.microfalx.zenith.hub;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import net.microfalx.bootstrap.dataset.model.NamedIdentityAware;
+import net.microfalx.lang.annotation.*;
+import net.microfalx.zenith.api.node.Node;
+import net.microfalx.zenith.api.node.Slot;
+import net.microfalx.zenith.base.grid.NodeStatus;
+
+@Getter
+@Setter
+@ToString
+@Name("Node Status")
+@ReadOnly
+public class NodeHealth extends NamedIdentityAware<String> {
+
+    @Position(20)
+    @Description("The status of the node, as reported by the node")
+    @Width("120px")
+    private State state;
+
+    @Position(30)
+    @Description("The number of slots available on the node")
+    @Width("90px")
+    private Integer slots;
+
+    @Position(31)
+    @Description("The number of slots running a session")
+    @Width("90px")
+    private Integer usedSlots;
+
+    @Position(40)
+    @Description("The message reported by the node")
+    @Width("250px")
+    private String message;
+
+    static NodeHealth from(NodeStatus status) {
+        NodeHealth health = from(status.getNode(), State.READY);
+        health.setSlots(status.getSlots().size());
+        health.setUsedSlots((int) status.getSlots().stream().filter(slot -> slot.getState() == Slot.State.USED).count());
+        health.setMessage(status.getMessage());
+        return health;
+    }
+
+    static NodeHealth from(Node node, State state) {
+        NodeHealth health = new NodeHealth();
+        health.setId(node.getId());
+        health.setName(node.getName());
+        health.setState(state);
+        return health;
+    }
+
+    public enum State {
+
+        /**
+         * The node answered and accepts sessions.
+         */
+        READY,
+
+        /**
+         * The node is not ready, failed or did not answer in time.
+         */
+        UNAVAILABLE,
+
+        /**
+         * The node failed too many times and it was not queried.
+         */
+        SKIPPED
+    }
+}
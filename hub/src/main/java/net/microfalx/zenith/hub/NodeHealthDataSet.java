@@ -0,0 +1,30 @@
+package net.microfalx.zenith.hub;
+
+import net.microfalx.bootstrap.dataset.DataSetFactory;
+import net.microfalx.bootstrap.dataset.MemoryDataSet;
+import net.microfalx.bootstrap.model.Filter;
+import net.microfalx.bootstrap.model.Metadata;
+import net.microfalx.bootstrap.model.PojoField;
+import net.microfalx.lang.annotation.Provider;
+import net.microfalx.zenith.base.grid.NodeStatusCollector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+@Provider
+public class NodeHealthDataSet extends MemoryDataSet<NodeHealth, PojoField<NodeHealth>, String> {
+
+    public NodeHealthDataSet(DataSetFactory<NodeHealth, PojoField<NodeHealth>, String> factory, Metadata<NodeHealth, PojoField<NodeHealth>, String> metadata) {
+        super(factory, metadata);
+    }
+
+    @Override
+    protected Iterable<NodeHealth> extractModels(Filter filterable) {
+        NodeStatusCollector.Result result = getService(NodeStatusCollector.class).collect();
+        Collection<NodeHealth> nodes = new ArrayList<>();
+        result.getStatuses().forEach(status -> nodes.add(NodeHealth.from(status)));
+        result.getUnavailable().forEach(node -> nodes.add(NodeHealth.from(node, NodeHealth.State.UNAVAILABLE)));
+        result.getSkipped().forEach(node -> nodes.add(NodeHealth.from(node, NodeHealth.State.SKIPPED)));
+        return nodes;
+    }
+}
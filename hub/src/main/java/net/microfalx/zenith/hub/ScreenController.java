@@ -0,0 +1,122 @@
+package net.microfalx.zenith.hub;
+
+import net.microfalx.zenith.api.common.Session;
+import net.microfalx.zenith.api.hub.HubException;
+import net.microfalx.zenith.api.hub.HubService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the screen of a running session (see {@link ScreenRelay}), to be displayed with an {@code <img>} tag.
+ * <p>
+ * A viewer holds a thread for as long as it watches, so viewers run on their own bounded pool (and not on the
+ * executor shared by all asynchronous requests); when all {@link #MAX_VIEWERS} threads are busy, new viewers are
+ * rejected with {@code 503}.
+ */
+@Controller
+@RequestMapping(value = "/screen")
+public class ScreenController {
+
+    private static final int MAX_VIEWERS = 32;
+
+    @Autowired
+    private HubService hubService;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    private final Map<String, ScreenRelay> relays = new ConcurrentHashMap<>();
+    private final ExecutorService executor = createExecutor();
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ResponseBodyEmitter> stream(@PathVariable("id") String id,
+                                                      @RequestParam(value = "fps", defaultValue = "2") int fps) {
+        Session session;
+        try {
+            session = hubService.getSession(id);
+        } catch (HubException e) {
+            return ResponseEntity.notFound().build();
+        }
+        if (session.getSlot() == null) return ResponseEntity.notFound().build();
+        long frameInterval = 1000 / Math.max(1, Math.min(fps, ScreenRelay.MAX_FPS));
+        URI nodeUri = session.getSlot().getNode().getUri();
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        try {
+            executor.execute(() -> stream(id, nodeUri, frameInterval, emitter));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok().header("Cache-Control", "no-cache, no-store")
+                .contentType(MediaType.parseMediaType("multipart/x-mixed-replace; boundary=" + ScreenRelay.BOUNDARY))
+                .body(emitter);
+    }
+
+    private void stream(String id, URI nodeUri, long frameInterval, ResponseBodyEmitter emitter) {
+        // viewers are registered and unregistered atomically with the map, so an idle relay is never reused
+        ScreenRelay relay = relays.compute(id, (k, current) -> {
+            ScreenRelay attached = current != null && !current.isEnded() ? current
+                    : new ScreenRelay(k, nodeUri, taskScheduler);
+            attached.attach();
+            return attached;
+        });
+        try {
+            relay.stream(new EmitterOutputStream(emitter), frameInterval);
+        } catch (IOException e) {
+            // the viewer went away
+        } finally {
+            relays.compute(id, (k, current) -> {
+                relay.detach();
+                return current != relay || !relay.isIdle() ? current : null;
+            });
+            emitter.complete();
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        AtomicInteger index = new AtomicInteger(1);
+        return new ThreadPoolExecutor(0, MAX_VIEWERS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Zenith Screen Viewer " + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sends the parts written by the relay to the viewer, each write is sent (and flushed) as it is.
+     */
+    private static class EmitterOutputStream extends OutputStream {
+
+        private final ResponseBodyEmitter emitter;
+
+        private EmitterOutputStream(ResponseBodyEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            emitter.send(Arrays.copyOfRange(b, off, off + len), MediaType.APPLICATION_OCTET_STREAM);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package net.microfalx.zenith.hub;
+
+import net.microfalx.lang.ExceptionUtils;
+import net.microfalx.metrics.Metrics;
+import net.microfalx.zenith.base.ZenithUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+
+import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Relays the screen of a running session from its node to the viewers of the hub.
+ * <p>
+ * The relay asks the node for new frames (one request per frame interval, regardless of the number of viewers) only
+ * while somebody watches the session, and streams them to each viewer as MJPEG ({@code multipart/x-mixed-replace}).
+ * A viewer which cannot keep up skips frames instead of buffering them, so it never slows down the other viewers.
+ * <p>
+ * Requests to the node are asynchronous (at most one in flight per relay), so a slow node never holds a thread of
+ * the scheduler which triggers the polls. The relay ends when the session ends or after {@link #MAX_FAILURES}
+ * consecutive failed polls.
+ * <p>
+ * When no new frame arrives, the last frame is sent again every {@link #FRAME_WAIT} milliseconds, so a viewer which
+ * went away is detected even if the screen does not change.
+ */
+class ScreenRelay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScreenRelay.class);
+
+    private static final Metrics METRICS = ZenithUtils.ZENITH_METRICS.withGroup("Screen Relay");
+
+    static final String BOUNDARY = "zenith-frame";
+    static final int MAX_FPS = 5;
+
+    private static final String SCREEN_PATH = "/zenith/session/%s/screen";
+    private static final String SEQUENCE_HEADER = "X-Zenith-Frame";
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final long FRAME_WAIT = 1_000;
+    private static final int MAX_FAILURES = 10;
+
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+    private final String id;
+    private final URI screenUri;
+    private final TaskScheduler taskScheduler;
+
+    private byte[] frame;
+    private long sequence;
+    private int viewers;
+    private boolean ended;
+    private int failures;
+    private ScheduledFuture<?> poller;
+    private CompletableFuture<?> request;
+
+    ScreenRelay(String id, URI nodeUri, TaskScheduler taskScheduler) {
+        requireNonNull(id);
+        requireNonNull(nodeUri);
+        requireNonNull(taskScheduler);
+        this.id = id;
+        this.screenUri = URI.create(nodeUri.toASCIIString() + String.format(SCREEN_PATH, id));
+        this.taskScheduler = taskScheduler;
+    }
+
+    /**
+     * Returns whether nobody watches the session.
+     *
+     * @return {@code true} if nobody watches, {@code false} otherwise
+     */
+    synchronized boolean isIdle() {
+        return viewers == 0;
+    }
+
+    /**
+     * Returns whether the relay ended, because the session ended or the node stopped answering.
+     *
+     * @return {@code true} if the relay ended, {@code false} otherwise
+     */
+    synchronized boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * Streams frames to a viewer, until the session ends or the viewer goes away.
+     * <p>
+     * The viewer must be registered (see {@link #attach()}) before streaming.
+     *
+     * @param output        the output stream of the viewer
+     * @param frameInterval the minimum interval between frames sent to the viewer, in milliseconds
+     * @throws IOException if the frames cannot be written (usually, the viewer went away)
+     */
+    void stream(OutputStream output, long frameInterval) throws IOException {
+        requireNonNull(output);
+        try {
+            long written = 0;
+            for (; ; ) {
+                byte[] data;
+                boolean keepAlive;
+                synchronized (this) {
+                    if (sequence == written && !ended) wait(FRAME_WAIT);
+                    if (ended) return;
+                    data = frame;
+                    keepAlive = sequence == written;
+                    written = sequence;
+                }
+                if (data == null) {
+                    // before the first frame, line breaks are part of the preamble, which viewers ignore
+                    output.write(CRLF);
+                    output.flush();
+                    continue;
+                }
+                write(output, data);
+                METRICS.count(keepAlive ? "Keep Alive" : "Frame");
+                if (!keepAlive) Thread.sleep(frameInterval);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Registers a viewer, the relay starts polling the node with the first viewer.
+     */
+    synchronized void attach() {
+        viewers++;
+        if (poller == null && !ended) {
+            METRICS.count("Start");
+            poller = taskScheduler.scheduleWithFixedDelay(this::poll, Duration.ofMillis(1000 / MAX_FPS));
+        }
+    }
+
+    /**
+     * Unregisters a viewer, the relay stops polling the node with the last viewer.
+     */
+    synchronized void detach() {
+        viewers--;
+        if (viewers == 0 && poller != null) {
+            METRICS.count("Stop");
+            poller.cancel(false);
+            poller = null;
+        }
+    }
+
+    private void poll() {
+        long after;
+        synchronized (this) {
+            if (request != null && !request.isDone()) return;
+            after = sequence;
+        }
+        HttpRequest httpRequest = HttpRequest.newBuilder(URI.create(screenUri.toASCIIString() + "?after=" + after))
+                .timeout(TIMEOUT).GET().build();
+        CompletableFuture<?> future = CLIENT.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, throwable) -> {
+                    if (throwable != null) {
+                        LOGGER.debug("Failed to retrieve screen of session {}, root cause: {}", id,
+                                ExceptionUtils.getRootCauseMessage(throwable));
+                        failed();
+                    } else if (response.statusCode() == HTTP_OK) {
+                        long received = response.headers().firstValueAsLong(SEQUENCE_HEADER).orElse(after + 1);
+                        update(response.body(), received);
+                    } else if (response.statusCode() == HTTP_NOT_FOUND) {
+                        end();
+                    } else if (response.statusCode() >= HTTP_INTERNAL_ERROR) {
+                        failed();
+                    } else {
+                        succeeded();
+                    }
+                });
+        synchronized (this) {
+            request = future;
+        }
+    }
+
+    private synchronized void update(byte[] data, long received) {
+        failures = 0;
+        frame = data;
+        sequence = received;
+        notifyAll();
+    }
+
+    private synchronized void succeeded() {
+        failures = 0;
+    }
+
+    private synchronized void failed() {
+        METRICS.count("Failed");
+        if (++failures >= MAX_FAILURES) {
+            LOGGER.debug("Node does not answer for the screen of session {}, end relay", id);
+            end();
+        }
+    }
+
+    private synchronized void end() {
+        ended = true;
+        if (poller != null) {
+            poller.cancel(false);
+            poller = null;
+        }
+        notifyAll();
+    }
+
+    private static void write(OutputStream output, byte[] data) throws IOException {
+        byte[] header = ("--" + BOUNDARY + "\r\nContent-Type: image/jpeg\r\nContent-Length: " + data.length
+                + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] part = new byte[header.length + data.length + CRLF.length];
+        System.arraycopy(header, 0, part, 0, header.length);
+        System.arraycopy(data, 0, part, header.length, data.length);
+        System.arraycopy(CRLF, 0, part, header.length + data.length, CRLF.length);
+        output.write(part);
+        output.flush();
+    }
+}
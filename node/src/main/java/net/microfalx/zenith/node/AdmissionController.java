@@ -0,0 +1,174 @@
+package net.microfalx.zenith.node;
+
+import net.microfalx.zenith.api.node.Node;
+import net.microfalx.zenith.api.node.Runner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Decides whether the node accepts new sessions, based on the resource usage of the host.
+ * <p>
+ * Every sample calculates the pressure of each resource (CPU, load average, used memory and the resident memory of
+ * the browsers) as a fraction of its limit; the highest one is the pressure of the node. The node is throttled when
+ * the pressure stays above the high watermark for a few consecutive samples and drained (no new sessions until the
+ * pressure is gone) above the critical watermark. The node accepts sessions again only after the pressure stays below
+ * the low watermark for a longer period, and never sooner than a minimum time after the last change, so it does
+ * not flap around a single threshold.
+ */
+class AdmissionController implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionController.class);
+
+    static final float HIGH_WATERMARK = 0.85f;
+    static final float CRITICAL_WATERMARK = 0.95f;
+    static final float LOW_WATERMARK = 0.70f;
+
+    private static final File MEMORY_INFO = new File("/proc/meminfo");
+
+    static final int SAMPLES_TO_THROTTLE = 3;
+    static final int SAMPLES_TO_RECOVER = 6;
+    static final long MIN_STATE_DURATION = 30_000;
+
+    /**
+     * The maximum fraction of the physical memory which can be used by browsers.
+     */
+    private static final float MAX_BROWSER_MEMORY = 0.8f;
+
+    private final Supplier<Collection<Runner>> runners;
+    private final Consumer<Node.Admission> listener;
+    private final LongSupplier clock;
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final int processors = Runtime.getRuntime().availableProcessors();
+
+    private volatile Node.Admission admission = Node.Admission.ACCEPTING;
+    private volatile float pressure;
+    private volatile long lastChange;
+    private int aboveHigh;
+    private int aboveCritical;
+    private int belowLow;
+
+    AdmissionController(Supplier<Collection<Runner>> runners, Consumer<Node.Admission> listener) {
+        this(runners, listener, System::currentTimeMillis);
+    }
+
+    AdmissionController(Supplier<Collection<Runner>> runners, Consumer<Node.Admission> listener, LongSupplier clock) {
+        requireNonNull(runners);
+        requireNonNull(listener);
+        requireNonNull(clock);
+        this.runners = runners;
+        this.listener = listener;
+        this.clock = clock;
+        this.lastChange = clock.getAsLong();
+    }
+
+    /**
+     * Returns whether the node accepts new sessions.
+     *
+     * @return a non-null instance
+     */
+    Node.Admission getAdmission() {
+        return admission;
+    }
+
+    /**
+     * Returns the pressure calculated by the last sample.
+     *
+     * @return a value between 0 and 1 (or above, if a resource is overused)
+     */
+    float getPressure() {
+        return pressure;
+    }
+
+    @Override
+    public void run() {
+        try {
+            update(sample());
+        } catch (Exception e) {
+            LOGGER.error("Failed to update node admission", e);
+        }
+    }
+
+    /**
+     * Updates the admission based on a new pressure sample.
+     *
+     * @param pressure the pressure
+     */
+    synchronized void update(float pressure) {
+        this.pressure = pressure;
+        aboveCritical = pressure >= CRITICAL_WATERMARK ? aboveCritical + 1 : 0;
+        aboveHigh = pressure >= HIGH_WATERMARK ? aboveHigh + 1 : 0;
+        belowLow = pressure <= LOW_WATERMARK ? belowLow + 1 : 0;
+        Node.Admission next = admission;
+        if (aboveCritical >= SAMPLES_TO_THROTTLE) {
+            next = Node.Admission.DRAINING;
+        } else if (aboveHigh >= SAMPLES_TO_THROTTLE && admission == Node.Admission.ACCEPTING) {
+            next = Node.Admission.THROTTLED;
+        } else if (belowLow >= SAMPLES_TO_RECOVER && clock.getAsLong() - lastChange >= MIN_STATE_DURATION) {
+            next = Node.Admission.ACCEPTING;
+        }
+        NodeUtilities.METRICS.count("Admission " + next.name().toLowerCase());
+        if (next != admission) {
+            LOGGER.info("Node admission changed from {} to {}, pressure {}", admission, next, pressure);
+            NodeUtilities.METRICS.count("Admission Changes");
+            admission = next;
+            lastChange = clock.getAsLong();
+            listener.accept(next);
+        }
+    }
+
+    private float sample() {
+        float result = 0;
+        if (os instanceof com.sun.management.OperatingSystemMXBean extendedOs) {
+            double cpu = extendedOs.getCpuLoad();
+            if (cpu >= 0) result = Math.max(result, (float) cpu);
+            long totalMemory = extendedOs.getTotalMemorySize();
+            if (totalMemory > 0) {
+                long availableMemory = getAvailableMemory();
+                if (availableMemory < 0) availableMemory = extendedOs.getFreeMemorySize();
+                float usedMemory = 1f - (float) availableMemory / totalMemory;
+                result = Math.max(result, usedMemory);
+                long browserMemory = 0;
+                for (Runner runner : runners.get()) {
+                    browserMemory += runner.getResidentMemory();
+                }
+                result = Math.max(result, (float) browserMemory / (totalMemory * MAX_BROWSER_MEMORY));
+            }
+        }
+        double loadAverage = os.getSystemLoadAverage();
+        if (loadAverage >= 0) result = Math.max(result, (float) loadAverage / processors);
+        return result;
+    }
+
+    /**
+     * Returns the memory available for new processes (free memory plus caches which can be reclaimed).
+     *
+     * @return the memory in bytes, -1 if not available
+     */
+    private static long getAvailableMemory() {
+        if (!MEMORY_INFO.exists()) return -1;
+        try (BufferedReader reader = new BufferedReader(new FileReader(MEMORY_INFO))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("MemAvailable:")) {
+                    String value = line.substring("MemAvailable:".length()).trim();
+                    return Long.parseLong(value.substring(0, value.indexOf(' '))) * 1024;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Failed to extract available memory, root cause: {}", e.getMessage());
+        }
+        return -1;
+    }
+}
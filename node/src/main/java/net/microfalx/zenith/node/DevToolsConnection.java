@@ -0,0 +1,134 @@
+package net.microfalx.zenith.node;
+
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * A connection to the browser endpoint of the DevTools protocol of a Chromium browser (Chrome, Edge), used for
+ * commands which are not available to pages (browser contexts, targets).
+ * <p>
+ * Commands are executed synchronously, each one waits for its response (bounded by a timeout).
+ */
+final class DevToolsConnection implements WebSocket.Listener, AutoCloseable {
+
+    private static final Json JSON = new Json();
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final AtomicInteger commandId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<Map<String, Object>>> pending = new ConcurrentHashMap<>();
+    private final StringBuilder message = new StringBuilder();
+    private WebSocket socket;
+
+    /**
+     * Opens a connection to the browser endpoint.
+     *
+     * @param client          the HTTP client
+     * @param debuggerAddress the address (host and port) of the DevTools endpoint
+     * @return a non-null instance
+     * @throws IOException if the browser endpoint is not reachable
+     * @see NodeUtilities#getDebuggerAddress(org.openqa.selenium.Capabilities)
+     */
+    static DevToolsConnection open(HttpClient client, String debuggerAddress) throws IOException {
+        requireNonNull(client);
+        requireNonNull(debuggerAddress);
+        DevToolsConnection connection = new DevToolsConnection();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + debuggerAddress + "/json/version"))
+                    .timeout(TIMEOUT).GET().build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            Object url = JSON.toType(response.body(), Json.MAP_TYPE).get("webSocketDebuggerUrl");
+            if (url == null) throw new IOException("A browser endpoint is not available at " + debuggerAddress);
+            connection.socket = client.newWebSocketBuilder().connectTimeout(TIMEOUT)
+                    .buildAsync(URI.create(url.toString()), connection).get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            return connection;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while connecting to " + debuggerAddress, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Failed to connect to " + debuggerAddress, e);
+        }
+    }
+
+    private DevToolsConnection() {
+    }
+
+    /**
+     * Executes a command.
+     *
+     * @param method     the method
+     * @param parameters the parameters
+     * @return the result of the command
+     * @throws IOException if the command fails or does not complete in time
+     */
+    Map<String, Object> execute(String method, Map<String, Object> parameters) throws IOException {
+        requireNonNull(method);
+        requireNonNull(parameters);
+        int id = commandId.incrementAndGet();
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        pending.put(id, future);
+        try {
+            socket.sendText(JSON.toJson(Map.of("id", id, "method", method, "params", parameters)), true)
+                    .get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            return future.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while executing " + method, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Failed to execute " + method, e);
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        message.append(data);
+        if (last) {
+            handle(message.toString());
+            message.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        pending.values().forEach(future -> future.completeExceptionally(error));
+    }
+
+    @Override
+    public void close() {
+        if (socket != null) socket.sendClose(WebSocket.NORMAL_CLOSURE, "");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handle(String text) {
+        Map<String, Object> response = JSON.toType(text, Json.MAP_TYPE);
+        if (!(response.get("id") instanceof Number id)) return;
+        CompletableFuture<Map<String, Object>> future = pending.get(id.intValue());
+        if (future == null) return;
+        if (response.get("error") instanceof Map<?, ?> error) {
+            future.completeExceptionally(new IOException("DevTools command failed: " + error.get("message")));
+        } else {
+            Object result = response.get("result");
+            future.complete(result instanceof Map<?, ?> map ? (Map<String, Object>) map : Map.of());
+        }
+    }
+}
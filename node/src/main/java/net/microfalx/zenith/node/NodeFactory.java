@@ -4,15 +4,20 @@ import lombok.Getter;
 import lombok.Setter;
 import net.microfalx.zenith.api.hub.HubException;
 import net.microfalx.zenith.base.grid.Component;
+import net.microfalx.zenith.base.grid.Node;
 import net.microfalx.zenith.client.DriverManager;
 import net.microfalx.zenith.client.Options;
-import org.openqa.selenium.grid.node.Node;
-import org.openqa.selenium.grid.node.httpd.NodeServer;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.http.Routable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
 import static net.microfalx.lang.FormatterUtils.formatDuration;
 
 /**
@@ -26,8 +31,8 @@ public class NodeFactory {
 
     private volatile static NodeFactory instance;
 
-    private volatile Component<NodeServer> component;
-    private volatile Node node;
+    private volatile Component<Node> component;
+    private final List<Routable> routes = new ArrayList<>();
 
     private NodeProperties properties = new NodeProperties();
     private URI hubUri = Options.DEFAULT_URI;
@@ -66,9 +71,26 @@ public class NodeFactory {
         Runtime.getRuntime().addShutdownHook(new ShutdownThread());
     }
 
+    /**
+     * Returns the Selenium Node.
+     *
+     * @return a non-null instance
+     */
     public Node getNode() {
-        if (node == null) throw new HubException("A Selenium Node was not started");
-        return node;
+        if (component == null) throw new HubException("A Selenium Node was not started");
+        return component.get();
+    }
+
+    /**
+     * Registers an additional route served by the Selenium Node.
+     *
+     * @param route the route
+     * @return self
+     */
+    public NodeFactory addRoute(Routable route) {
+        requireNonNull(route);
+        routes.add(route);
+        return this;
     }
 
     /**
@@ -78,8 +100,17 @@ public class NodeFactory {
         DriverManager.getInstance();
         LOGGER.info("Create Selenium Node");
         logConfiguration();
-        component = Component.create(NodeServer.class)
-                .option("selenium-manager", "true");
+        component = Component.create(Node.class)
+                .option("selenium-manager", "true")
+                .option("port", properties.getPort())
+                .option("max-sessions", properties.getMaxSessions())
+                .option("session-timeout", properties.getTimeout().toSeconds());
+        if (properties.getMaxSessions() > Runtime.getRuntime().availableProcessors()) {
+            // Selenium caps the sessions to the number of processors, unless told otherwise
+            component.option("override-max-sessions", true);
+        }
+        if (properties.isWarmPool()) registerWarmPool();
+        component.customize(node -> routes.forEach(node::addRoute));
         component.start();
         LOGGER.info("Selenium Node was started");
     }
@@ -90,14 +121,32 @@ public class NodeFactory {
     private void stop() {
         LOGGER.info("Shutdown Selenium Node");
         if (component != null) component.stop();
+        WarmSessionFactory.shutdown();
+    }
+
+    private void registerWarmPool() {
+        WarmSessionFactory.configure(properties);
+        // the pooled browsers replace the detected ones, one driver factory per slot
+        component.option("detect-drivers", "false");
+        for (String browser : properties.getWarmPoolBrowsers()) {
+            String stereotype = new Json().toJson(Map.of("browserName", browser));
+            for (int i = 0; i < properties.getMaxSessions(); i++) {
+                component.option("driver-factory", WarmSessionFactory.class.getName()).option(stereotype);
+            }
+        }
     }
 
 
     private void logConfiguration() {
         LOGGER.info(" - port: " + properties.getPort());
+        LOGGER.info(" - maximum sessions: " + properties.getMaxSessions());
         LOGGER.info(" - timeout: " + formatDuration(properties.getTimeout()));
         LOGGER.info(" - browser timeout: " + formatDuration(properties.getBrowserTimeout()));
         LOGGER.info(" - maximum threads: " + properties.getMaxThreads());
+        if (properties.isWarmPool()) {
+            LOGGER.info(" - warm pool: " + properties.getWarmPoolBrowsers() + ", size " + properties.getWarmPoolMinSize()
+                    + "-" + properties.getWarmPoolMaxSize() + ", maximum reuse " + properties.getWarmPoolMaxReuse());
+        }
         LOGGER.info(" - hub uri: " + hubUri);
     }
 
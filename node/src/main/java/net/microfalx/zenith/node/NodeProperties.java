@@ -1,15 +1,18 @@
 package net.microfalx.zenith.node;
 
 import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.List;
 
 @Configuration
 @ConfigurationProperties("zenith.node")
 @Getter
+@Setter
 @ToString
 public class NodeProperties {
 
@@ -19,4 +22,18 @@ public class NodeProperties {
     private Duration browserTimeout = Duration.ofSeconds(120);
     private int maxThreads = 10;
     private Duration validationInterval = Duration.ofSeconds(30);
+    private boolean admissionControl = true;
+    private boolean warmPool;
+    private List<String> warmPoolBrowsers = List.of("chrome", "firefox");
+    private int warmPoolMinSize = 1;
+    private int warmPoolMaxSize = 4;
+    private int warmPoolMaxReuse = 20;
+    private Duration warmPoolMaxIdle = Duration.ofMinutes(10);
+    private int screencastMaxFps = 5;
+    private int screencastMaxWidth = 1024;
+    private int screencastMaxHeight = 768;
+    private int screencastQuality = 60;
+    private double recordingCpuBudget = 5;
+    private Duration recordingBufferDuration = Duration.ofSeconds(30);
+    private long recordingBufferSize = 32 * 1024 * 1024;
 }
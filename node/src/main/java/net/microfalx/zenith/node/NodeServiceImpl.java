@@ -1,52 +1,55 @@
 package net.microfalx.zenith.node;
 
-import com.google.common.cache.Cache;
-import net.microfalx.bootstrap.core.async.ThreadPoolFactory;
 import net.microfalx.bootstrap.jdbc.jpa.NaturalIdEntityUpdater;
 import net.microfalx.bootstrap.model.MetadataService;
 import net.microfalx.lang.*;
 import net.microfalx.metrics.Metrics;
-import net.microfalx.resource.Resource;
-import net.microfalx.threadpool.ThreadPool;
 import net.microfalx.zenith.api.common.Log;
 import net.microfalx.zenith.api.common.Screenshot;
 import net.microfalx.zenith.api.common.Server;
 import net.microfalx.zenith.api.common.Session;
 import net.microfalx.zenith.api.hub.Hub;
+import net.microfalx.zenith.api.hub.HubSelector;
 import net.microfalx.zenith.api.node.Node;
 import net.microfalx.zenith.api.node.NodeException;
 import net.microfalx.zenith.api.node.NodeService;
 import net.microfalx.zenith.api.node.Runner;
+import net.microfalx.zenith.api.node.Slot;
 import net.microfalx.zenith.base.ZenithUtils;
+import net.microfalx.zenith.base.archive.SessionArchive;
+import net.microfalx.zenith.base.grid.NodeHeartbeat;
 import net.microfalx.zenith.base.grid.NodeStatus;
 import net.microfalx.zenith.base.jpa.HubRepository;
 import net.microfalx.zenith.base.jpa.NodeRepository;
-import org.openqa.selenium.NoSuchSessionException;
-import org.openqa.selenium.grid.node.ActiveSession;
-import org.openqa.selenium.grid.node.local.SessionSlot;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.events.EventBus;
+import org.openqa.selenium.grid.data.SessionClosedEvent;
+import org.openqa.selenium.grid.data.SessionCreatedEvent;
 import org.openqa.selenium.remote.SessionId;
+import org.openqa.selenium.remote.http.HttpResponse;
+import org.openqa.selenium.remote.http.Route;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.StringReader;
 import java.net.URI;
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.lang.System.currentTimeMillis;
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_OK;
 import static net.microfalx.lang.ArgumentUtils.requireNonNull;
 import static net.microfalx.lang.TimeUtils.TEN_SECONDS;
 import static net.microfalx.lang.TimeUtils.millisSince;
@@ -60,7 +63,22 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
     private static final Logger LOGGER = LoggerFactory.getLogger(NodeService.class);
 
     private static final long CLOSED_SESSIONS_RETENTION = TimeUtils.FIFTEEN_MINUTE;
-    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final String RECORD_ORPHAN_SQL = "UPDATE zenith_session SET reason = 'ORPHAN', "
+            + "status = IF(status IN ('CREATED', 'RUNNING'), 'KILLED', status) WHERE natural_id = ? AND reason IS NULL";
+
+    private static final Duration ADMISSION_INTERVAL = Duration.ofSeconds(5);
+    private static final Duration WARM_POOL_INTERVAL = Duration.ofSeconds(5);
+    private static final Duration REGISTER_INTERVAL = Duration.ofSeconds(2);
+    private static final Duration HUB_STALE_TIMEOUT = Duration.ofSeconds(10);
+    private static final String ALIVE_HUBS_SQL = "SELECT natural_id FROM zenith_hub "
+            + "WHERE pinged_at IS NOT NULL AND TIMESTAMPDIFF(SECOND, pinged_at, NOW()) <= ?";
+
+    private static final Duration ACTIVE_SESSIONS_TIMEOUT = Duration.ofSeconds(2);
+
+    private static final String SCREENSHOT_NAME = "last.jpg";
+
+    private static final int PERSIST_THREADS = 2;
+    private static final int PERSIST_QUEUE_SIZE = 256;
 
     private static Metrics NODE_METRICS = ZenithUtils.ZENITH_METRICS.withGroup("Node");
 
@@ -76,6 +94,9 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
     @Autowired
     private TaskScheduler taskScheduler;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Autowired
     private NodeProperties properties = new NodeProperties();
 
@@ -85,12 +106,12 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
     private volatile Hub hub;
     private volatile NodeFactory factory;
     private RunnerManager runnerManager;
+    private volatile AdmissionController admissionController;
+    private volatile NodeHeartbeat heartbeat;
+    private ScreenStreams screenStreams;
     private final Map<String, SessionHolder> sessions = new ConcurrentHashMap<>();
-    private Cache<SessionId, SessionSlot> nodeSessions;
-
-    private ThreadPool threadPool;
 
-    private volatile long lastHubRefresh = TimeUtils.oneHourAgo();
+    private final ExecutorService persistExecutor = createPersistExecutor();
 
     @Override
     public Node getNode() {
@@ -132,7 +153,12 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
     public Screenshot getScreenshot(String id) {
         requireNonNull(id);
         SessionHolder holder = sessions.get(id);
-        return holder != null ? holder.getScreenshot() : Screenshot.create();
+        if (holder == null) return Screenshot.create();
+        if (holder.isClosed()) return holder.getScreenshot();
+        ScreenStream stream = screenStreams.get(id);
+        ScreenStream.Frame frame = stream != null ? stream.getFrame() : null;
+        if (frame != null) holder.setScreenshot(frame);
+        return holder.getScreenshot();
     }
 
     @Override
@@ -147,21 +173,74 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
         return runnerManager.getRunners();
     }
 
+    /**
+     * Returns whether the node accepts new sessions, based on its resource usage.
+     *
+     * @return a non-null instance
+     */
+    Node.Admission getAdmission() {
+        AdmissionController controller = admissionController;
+        return controller != null ? controller.getAdmission() : Node.Admission.ACCEPTING;
+    }
+
+    NodeProperties getProperties() {
+        return properties;
+    }
+
+    Collection<SessionHolder> getSessionHolders() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    /**
+     * Returns the sessions which run in the Selenium Node, as reported by the node itself.
+     *
+     * @return the session identifiers, null if the Selenium Node cannot be queried
+     */
+    Collection<String> getActiveSessions() {
+        NodeStatus status = new NodeStatus(node).timeout(ACTIVE_SESSIONS_TIMEOUT);
+        status.execute();
+        if (!status.isReachable()) return null;
+        return status.getSlots().stream().map(Slot::getSession).filter(Objects::nonNull).map(Session::getId).toList();
+    }
+
+    /**
+     * Records that the processes of a session were killed because they outlived the session.
+     *
+     * @param holder the session
+     */
+    void recordOrphan(SessionHolder holder) {
+        requireNonNull(holder);
+        try {
+            jdbcTemplate.update(RECORD_ORPHAN_SQL, holder.getId());
+        } catch (Exception e) {
+            LOGGER.warn("Failed to record orphan session " + holder.getId() + ", root cause: " + e.getMessage());
+        }
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
         initializeNode();
-        initializeExecutor();
         initializeMisc();
         setupNode();
     }
 
     @Override
     public void onApplicationEvent(ApplicationStartedEvent event) {
-        taskScheduler.scheduleAtFixedRate(new RegisterWorker(), Duration.ofSeconds(60));
+        taskScheduler.scheduleWithFixedDelay(new RegisterWorker(), REGISTER_INTERVAL);
         taskScheduler.scheduleAtFixedRate(new MaintenanceWorker(), Duration.ofSeconds(60));
+        heartbeat = new NodeHeartbeat(jdbcTemplate);
+        taskScheduler.scheduleAtFixedRate(new HeartbeatWorker(), NodeHeartbeat.INTERVAL);
 
         runnerManager = new RunnerManager(this, taskScheduler);
         runnerManager.start();
+        if (properties.isAdmissionControl()) {
+            admissionController = new AdmissionController(runnerManager::getRunners, admission -> updateNodeInDatabase());
+            taskScheduler.scheduleAtFixedRate(admissionController, ADMISSION_INTERVAL);
+        }
+        if (properties.isWarmPool()) {
+            taskScheduler.scheduleWithFixedDelay(() -> WarmSessionFactory.maintain(getAdmission() == Node.Admission.ACCEPTING),
+                    WARM_POOL_INTERVAL);
+        }
 
         setupNode();
         registerTasks();
@@ -172,11 +251,21 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
         updateNodeInDatabase();
     }
 
-    private void initializeExecutor() {
-        threadPool = ThreadPoolFactory.create("Hub").create();
+    private static ExecutorService createPersistExecutor() {
+        AtomicInteger index = new AtomicInteger(1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(PERSIST_THREADS, PERSIST_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(PERSIST_QUEUE_SIZE), runnable -> {
+            Thread thread = new Thread(runnable, "Zenith Persist " + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // when the disk cannot keep up, slow down the callers instead of buffering sessions without limits
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
     }
 
     private void initializeMisc() {
+        screenStreams = new ScreenStreams(properties, this::getCapabilities);
     }
 
     private void setupNode() {
@@ -188,19 +277,24 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
     }
 
     private synchronized void registerWithHub() {
-        Hub hub = getHub();
+        Hub hub = selectHub();
         if (hub == null) {
             LOGGER.info("A Selenium Hub is not available");
             return;
         }
-        if (!hub.equals(this.hub)) destroyNode();
+        if (this.hub != null && !hub.getId().equals(this.hub.getId())) destroyNode();
+        this.hub = hub;
         if (factory == null) {
             LOGGER.info("Change Hub connectivity, host " + hub.getServer().getHostname() + ", port " + hub.getPort());
             factory = NodeFactory.getInstance();
+            factory.setProperties(properties);
             factory.setHubUri(hub.getWsUri());
+            factory.addRoute(screenStreams.getRoute());
+            factory.addRoute(Route.post(Session.FAILED_PATH).to(params -> request -> failSession(params.get("sessionId"))));
             factory.startup();
             LOGGER.info("Selenium Node created");
             registerSeleniumListener();
+            updateNodeInDatabase();
         }
         setupNode();
     }
@@ -211,28 +305,107 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
         factory = null;
     }
 
+    /**
+     * Tracks the sessions of this node from the session events published by the grid, so a session is tracked
+     * before its first command and released as soon as it ends.
+     */
     private void registerSeleniumListener() {
-        /*org.openqa.selenium.grid.node.Node node = factory.getNode();
-        this.nodeSessions = Reflect.on(node).get("currentSessions");
-        taskScheduler.scheduleAtFixedRate(new DiscoverSessionWorker(), Duration.ofSeconds(1));*/
+        net.microfalx.zenith.base.grid.Node seleniumNode = factory.getNode();
+        URI nodeUri = seleniumNode.getUri();
+        EventBus bus = seleniumNode.getBus();
+        screenStreams.setNodeUri(nodeUri);
+        bus.addListener(SessionCreatedEvent.listener(data -> {
+            if (nodeUri.equals(data.getUri())) openSession(data.getSessionId(), data.getCapabilities());
+        }));
+        bus.addListener(SessionClosedEvent.listener(this::closeSession));
+    }
+
+    private void openSession(SessionId sessionId, Capabilities capabilities) {
+        String id = sessionId.toString();
+        if (sessions.containsKey(id)) return;
+        SessionHolder holder = new SessionHolder(id, capabilities);
+        if (sessions.putIfAbsent(id, holder) != null) return;
+        NODE_METRICS.count("Session Created");
+        startRecording(holder);
+    }
+
+    private void startRecording(SessionHolder holder) {
+        ScreenRecorder recorder = ScreenRecorder.create(holder.getId(), holder.capabilities, properties);
+        if (recorder == null) return;
+        ScreenStream stream = screenStreams.get(holder.getId());
+        if (stream == null) return;
+        holder.recorder = recorder;
+        stream.addListener(recorder);
+    }
+
+    private HttpResponse failSession(String id) {
+        SessionHolder holder = sessions.get(id);
+        if (holder == null) return new HttpResponse().setStatus(HTTP_NOT_FOUND);
+        NODE_METRICS.count("Session Failed");
+        holder.event("Session failed");
+        if (holder.recorder != null) holder.recorder.fail();
+        return new HttpResponse().setStatus(HTTP_OK);
+    }
+
+    private void closeSession(SessionId sessionId) {
+        SessionHolder session = sessions.get(sessionId.toString());
+        if (session == null || session.isClosed()) return;
+        NODE_METRICS.count("Session Closed");
+        closeSession(session);
+    }
+
+    private Capabilities getCapabilities(String id) {
+        SessionHolder holder = sessions.get(id);
+        return holder != null && !holder.isClosed() ? holder.capabilities : null;
     }
 
     private void closeSession(SessionHolder session) {
+        ScreenStream stream = screenStreams.find(session.getId());
+        ScreenStream.Frame frame = stream != null ? stream.getFrame() : null;
+        if (frame != null) session.setScreenshot(frame);
+        screenStreams.close(session.getId());
+        if (session.recorder != null) session.recorder.stop();
         session.close();
-        threadPool.execute(new PersistWorker(session));
+        persistExecutor.execute(new PersistWorker(session));
+    }
+
+    /**
+     * Selects the hub where the node registers.
+     * <p>
+     * The node stays with the current hub as long as the hub is alive (it pings the database); otherwise, it
+     * selects one of the alive hubs, preferring the least loaded ones. If no hub is alive, the node stays with the
+     * current hub (if any). Hubs ping with the clock of the database, so the staleness is also judged by the
+     * database, regardless of the clocks of the node and hubs.
+     */
+    private Hub selectHub() {
+        Set<String> aliveIds = new HashSet<>(jdbcTemplate.queryForList(ALIVE_HUBS_SQL, String.class,
+                HUB_STALE_TIMEOUT.toSeconds()));
+        List<net.microfalx.zenith.base.jpa.Hub> aliveHubs = new ArrayList<>();
+        for (net.microfalx.zenith.base.jpa.Hub hubJpa : hubRepository.findAll()) {
+            if (aliveIds.contains(hubJpa.getNaturalId())) aliveHubs.add(hubJpa);
+        }
+        Hub currentHub = this.hub;
+        if (currentHub != null && aliveHubs.stream().anyMatch(hubJpa -> currentHub.getId().equals(hubJpa.getNaturalId()))) {
+            return currentHub;
+        }
+        Optional<net.microfalx.zenith.base.jpa.Hub> selectedHub = HubSelector.select(aliveHubs, net.microfalx.zenith.base.jpa.Hub::getLoad);
+        if (selectedHub.isEmpty()) return currentHub;
+        if (currentHub != null) {
+            LOGGER.warn("Hub " + currentHub.getServer().getHostname() + " is stale, fail over to hub "
+                    + selectedHub.get().getHostname());
+            NODE_METRICS.count("Hub Failover");
+        }
+        return Hub.create(Server.get(selectedHub.get().getHostname()), selectedHub.get().getPort());
     }
 
-    private Hub getHub() {
-        if (hub != null && millisSince(lastHubRefresh) > TimeUtils.ONE_MINUTE) return hub;
-        Iterator<net.microfalx.zenith.base.jpa.Hub> hubIterator = hubRepository.findAll().iterator();
-        if (!hubIterator.hasNext()) {
-            this.hub = null;
-        } else {
-            net.microfalx.zenith.base.jpa.Hub hubJpa = hubIterator.next();
-            this.hub = Hub.create(Server.get(hubJpa.getHostname()), hubJpa.getPort());
+    private String getGridUri() {
+        NodeFactory factory = this.factory;
+        if (factory == null) return null;
+        try {
+            return factory.getNode().getUri().toASCIIString();
+        } catch (Exception e) {
+            return null;
         }
-        lastHubRefresh = currentTimeMillis();
-        return hub;
     }
 
     private void updateNodeInDatabase() {
@@ -242,7 +415,9 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
         nodeJpa.setName(node.getName());
         nodeJpa.setHostname(node.getServer().getHostname());
         nodeJpa.setPort(node.getPort());
+        nodeJpa.setGridUri(getGridUri());
         nodeJpa.setActive(true);
+        nodeJpa.setAdmission(getAdmission());
         nodeJpa.setPingedAt(LocalDateTime.now());
         updater.findByNaturalIdAndUpdate(nodeJpa);
     }
@@ -255,32 +430,6 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
         }
     }
 
-    private class DiscoverSessionWorker implements Runnable {
-
-        @Override
-        public void run() {
-            Set<String> existingSessions = new HashSet<>();
-            for (SessionSlot slot : nodeSessions.asMap().values()) {
-                if (!slot.isAvailable()) continue;
-                ActiveSession session = null;
-                try {
-                    session = slot.getSession();
-                } catch (NoSuchSessionException e) {
-                    continue;
-                }
-                ActiveSession finalSession = session;
-                existingSessions.add(session.getId().toString());
-                sessions.computeIfAbsent(session.getId().toString(), s -> new SessionHolder(finalSession, null));
-            }
-            for (Map.Entry<String, SessionHolder> session : NodeServiceImpl.this.sessions.entrySet()) {
-                if (!existingSessions.contains(session.getKey())) {
-                    closeSession(session.getValue());
-                }
-            }
-        }
-
-    }
-
     private class MaintenanceWorker implements Runnable {
 
         private void removeOldSessions() {
@@ -294,51 +443,48 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
         @Override
         public void run() {
             removeOldSessions();
-            updateNodeInDatabase();
         }
     }
 
-    static class PersistWorker implements Runnable {
-
-        private SessionHolder holder;
+    private class HeartbeatWorker implements Runnable {
 
-        public PersistWorker(SessionHolder holder) {
-            this.holder = holder;
+        @Override
+        public void run() {
+            int activeSessions = (int) sessions.values().stream().filter(holder -> !holder.isClosed()).count();
+            heartbeat.beat(node.getId(), activeSessions, node.getMaxSessions());
         }
+    }
 
-        private Resource getDirectory() {
-            return NodeUtilities.getSessionDirectory().resolve(DAY_FORMATTER.format(LocalDateTime.now()), Resource.Type.DIRECTORY)
-                    .resolve(holder.id, Resource.Type.DIRECTORY);
-        }
+    /**
+     * Stores the artifacts of a closed session: the lifecycle log, the last screenshot and the recording (if it is
+     * kept). Sessions which were never streamed (no screenshot and no recording) have no archive.
+     */
+    static class PersistWorker implements Runnable {
 
-        private void appendText(String fileName, String text) {
-            if (StringUtils.isNotEmpty(text)) {
-                Resource directory = getDirectory();
-                try {
-                    IOUtils.appendStream(new OutputStreamWriter(directory.resolve(fileName).getOutputStream(), StandardCharsets.UTF_8), new StringReader(text));
-                } catch (IOException e) {
-                    LOGGER.error("Failed to store text file " + fileName + " for session " + holder.id, e);
-                }
-            }
-        }
+        private final SessionHolder holder;
 
-        private void appendResource(Resource resource) {
-            Resource directory = getDirectory();
-            try {
-                directory.resolve(resource.getName()).copyFrom(resource);
-            } catch (Exception e) {
-                LOGGER.error("Failed to store text file " + resource.getName() + " for session " + holder.id, e);
-            }
+        public PersistWorker(SessionHolder holder) {
+            this.holder = holder;
         }
 
         @Override
         public void run() {
-            appendText("browser.log", holder.seleniumSession.getBrowserLogger().toString());
-            appendText("driver.log", holder.seleniumSession.getDriverLogger().toString());
-            appendText("client.log", holder.seleniumSession.getClientLogger().toString());
-            appendText("server.log", holder.seleniumSession.getServerLogger().toString());
-            for (Resource screenshot : holder.seleniumSession.getScreenshots()) {
-                appendResource(screenshot);
+            ScreenRecorder recorder = holder.recorder;
+            boolean keepRecording = recorder != null && recorder.shouldKeep();
+            Screenshot screenshot = holder.screenshot;
+            if (!keepRecording && !screenshot.exists()) {
+                if (recorder != null) recorder.discard();
+                return;
+            }
+            SessionArchive archive = SessionArchive.get(holder.id, LocalDate.now());
+            try (SessionArchive.Writer writer = archive.create()) {
+                writer.addLog(SessionArchive.getLogName(Log.Type.ALL), holder.getLog(Log.Type.ALL).getText());
+                if (screenshot.exists()) writer.addScreenshot(SCREENSHOT_NAME, screenshot.getData());
+                if (keepRecording) recorder.writeTo(writer);
+            } catch (IOException e) {
+                LOGGER.error("Failed to store archive " + archive + " for session " + holder.id, e);
+            } finally {
+                if (recorder != null) recorder.discard();
             }
         }
     }
@@ -346,19 +492,21 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
     static class SessionHolder implements Identifiable<String> {
 
         private final String id;
-        private final AtomicInteger screenshotIndex = new AtomicInteger(1);
-        private final ActiveSession nodeSession;
-        private final net.microfalx.zenith.client.Session seleniumSession;
+        private final Capabilities capabilities;
         private volatile long lastUsed = currentTimeMillis();
-        private volatile Resource lastScreenshot;
-        private volatile long lastScreenshotUpdated = TimeUtils.oneHourAgo();
         private volatile long closedTime;
         private volatile boolean closed;
-
-        SessionHolder(ActiveSession nodeSession, net.microfalx.zenith.client.Session seleniumSession) {
-            this.id = nodeSession.getId().toString();
-            this.nodeSession = nodeSession;
-            this.seleniumSession = seleniumSession;
+        private volatile Collection<String> processTokens;
+        private volatile ScreenRecorder recorder;
+        private volatile Screenshot screenshot = Screenshot.create();
+        private final Queue<String> events = new ConcurrentLinkedQueue<>();
+
+        SessionHolder(String id, Capabilities capabilities) {
+            requireNonNull(id);
+            requireNonNull(capabilities);
+            this.id = id;
+            this.capabilities = capabilities;
+            event("Session created");
         }
 
         @Override
@@ -370,82 +518,73 @@ public class NodeServiceImpl implements NodeService, InitializingBean, Applicati
             return closed;
         }
 
+        long getClosedTime() {
+            return closedTime;
+        }
+
         void close() {
             closed = true;
             closedTime = currentTimeMillis();
-            takeScreenshot();
-            getLog(Log.Type.ALL);
-            // give some time to flush the screen buffers and loggers and capture
-            ThreadUtils.sleep(Duration.ofSeconds(1));
-            takeScreenshot();
-            getLog(Log.Type.ALL);
+            event("Session closed");
+        }
+
+        /**
+         * Records an event in the lifecycle of the session.
+         *
+         * @param message the event
+         */
+        void event(String message) {
+            events.add(FormatterUtils.formatDateTime(currentTimeMillis()) + " " + message);
         }
 
         boolean isExpired() {
             return closed && millisSince(closedTime) > CLOSED_SESSIONS_RETENTION;
         }
 
+        /**
+         * Returns the log of the session.
+         * <p>
+         * The node does not capture the browser or driver logs, it only records the lifecycle of the session
+         * (created, failed, closed), returned as the summary ({@link Log.Type#ALL}); every other type is empty.
+         *
+         * @param type the type of log
+         * @return a non-null instance
+         */
         Log getLog(Log.Type type) {
             touch();
-            switch (type) {
-                case ALL:
-                    StringBuilder builder = new StringBuilder();
-                    StringBuilder browserLogger = seleniumSession.getBrowserLogger();
-                    StringBuilder seleniumLogger = seleniumSession.getSeleniumLogger();
-                    if (closed) {
-                        builder.append("Session closed ").append(FormatterUtils.formatDateTime(closedTime)).append(", ");
-                    }
-                    /*builder.append("Browser: errors=").append(browserLogger.getErrorCount())
-                            .append(", warnings=").append(browserLogger.getWarningCount()).append(", infos=")
-                            .append(browserLogger.getInfoCount());
-                    builder.append("; Selenium: errors=").append(seleniumLogger.getErrorCount())
-                            .append(", warnings=").append(seleniumLogger.getWarningCount()).append(", infos=")
-                            .append(seleniumLogger.getInfoCount());
-                    builder.append("\n").append(seleniumSession.getLogs(false));*/
-                    return Log.create(type, builder.toString());
-                case SELENIUM:
-                    return Log.create(type, seleniumSession.getSeleniumLogger().toString());
-                case SELENIUM_CLIENT:
-                    return Log.create(type, seleniumSession.getClientLogger().toString());
-                case SELENIUM_DRIVER:
-                    return Log.create(type, seleniumSession.getDriverLogger().toString());
-                case SELENIUM_SERVER:
-                    return Log.create(type, seleniumSession.getServerLogger().toString());
-                case BROWSER:
-                    return Log.create(type, seleniumSession.getBrowserLogger().toString());
-                default:
-                    return Log.create(type);
-            }
+            if (type != Log.Type.ALL) return Log.create(type);
+            return Log.create(type, String.join("\n", events));
         }
 
         Screenshot getScreenshot() {
             touch();
-            if (lastScreenshot == null || millisSince(lastScreenshotUpdated) > NodeUtilities.INTERVAL_BETWEEN_SCREENSHOTS && !closed) {
-                takeScreenshot();
-            }
-            byte[] data = new byte[0];
-            try {
-                data = lastScreenshot.loadAsBytes();
-            } catch (IOException e) {
-                LOGGER.error("Failed to extract screenshot from " + lastScreenshot, e);
-            }
-            return Screenshot.create(UUID.randomUUID().toString(), data);
+            return screenshot;
         }
 
-        void takeScreenshot() {
-            touch();
-            String name = org.apache.commons.lang3.StringUtils.leftPad(Integer.toString(screenshotIndex.getAndIncrement()), 3, '0');
-            Resource resource = seleniumSession.takeScreenShot(name);
-            if (resource != null) {
-                lastScreenshot = resource;
-                lastScreenshotUpdated = currentTimeMillis();
+        void setScreenshot(ScreenStream.Frame frame) {
+            String screenshotId = id + "-" + frame.getSequence();
+            if (!screenshot.getId().equals(screenshotId)) screenshot = Screenshot.create(screenshotId, frame.getData());
+        }
+
+        /**
+         * Returns values which identify the processes started for this session (browser user data directory or
+         * profile, debugger address), extracted from the capabilities returned by the driver.
+         *
+         * @return a non-null instance
+         */
+        Collection<String> getProcessTokens() {
+            Collection<String> tokens = processTokens;
+            if (tokens == null) {
+                tokens = NodeUtilities.getProcessTokens(capabilities);
+                processTokens = tokens;
             }
+            return tokens;
         }
 
         Session getSession() {
             touch();
             Session.Builder builder = Session.builder(id);
-            nodeSession.getCapabilities().asMap().forEach(builder::capability);
+            capabilities.asMap().forEach(builder::capability);
             return builder.build();
         }
 
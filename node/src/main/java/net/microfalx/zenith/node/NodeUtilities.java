@@ -4,16 +4,21 @@ import net.microfalx.lang.ObjectUtils;
 import net.microfalx.lang.StringUtils;
 import net.microfalx.metrics.Metrics;
 import net.microfalx.resource.Resource;
-import net.microfalx.resource.SharedResource;
 import net.microfalx.zenith.api.common.Session;
+import net.microfalx.zenith.base.ZenithUtils;
+import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.logging.LoggingPreferences;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
 /**
  * Document me
  */
@@ -53,7 +58,48 @@ public class NodeUtilities {
      * @return the directory
      */
     public static Resource getSessionDirectory() {
-        return SharedResource.directory(SELENIUM_SHARED_DIRECTORY + "_session");
+        return ZenithUtils.getSessionStorage();
+    }
+
+    /**
+     * Returns values which identify the processes started for a session (browser user data directory or
+     * profile, debugger address), extracted from the capabilities returned by the driver.
+     *
+     * @param capabilities the capabilities of the session
+     * @return a non-null instance
+     */
+    static Collection<String> getProcessTokens(Capabilities capabilities) {
+        requireNonNull(capabilities);
+        Collection<String> tokens = new ArrayList<>();
+        Map<String, Object> values = capabilities.asMap();
+        addProcessToken(tokens, values.get("moz:profile"));
+        if (values.get("chrome") instanceof Map<?, ?> chrome) {
+            addProcessToken(tokens, chrome.get("userDataDir"));
+        }
+        String debuggerAddress = getDebuggerAddress(capabilities);
+        if (debuggerAddress != null) {
+            addProcessToken(tokens, "--remote-debugging-port=" + debuggerAddress.substring(debuggerAddress.lastIndexOf(':') + 1));
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the address (host and port) of the DevTools endpoint of a Chromium browser (Chrome, Edge).
+     *
+     * @param capabilities the capabilities returned by the driver
+     * @return the address, null if the browser does not expose DevTools
+     */
+    static String getDebuggerAddress(Capabilities capabilities) {
+        requireNonNull(capabilities);
+        for (String name : new String[]{"goog:chromeOptions", "ms:edgeOptions"}) {
+            if (capabilities.getCapability(name) instanceof Map<?, ?> options) {
+                Object debuggerAddress = options.get("debuggerAddress");
+                if (debuggerAddress != null && StringUtils.isNotEmpty(debuggerAddress.toString())) {
+                    return debuggerAddress.toString();
+                }
+            }
+        }
+        return null;
     }
 
     /**
@@ -68,6 +114,10 @@ public class NodeUtilities {
         Logger.getLogger("javax").setLevel(Level.WARNING);
     }
 
+    private static void addProcessToken(Collection<String> tokens, Object value) {
+        if (value != null && StringUtils.isNotEmpty(value.toString())) tokens.add(value.toString());
+    }
+
     /**
      * Converts a capability value to a string representation.
      *
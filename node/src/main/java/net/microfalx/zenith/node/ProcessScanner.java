@@ -0,0 +1,329 @@
+package net.microfalx.zenith.node;
+
+import net.microfalx.lang.FileUtils;
+import net.microfalx.zenith.api.node.Node;
+import net.microfalx.zenith.api.node.Runner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.currentTimeMillis;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Samples processes from {@code /proc} (Linux only).
+ * <p>
+ * A process is monitored if its executable name is one of the known names or if it is a descendant of the node JVM.
+ * The command line (and working directory) of a process is read once, when the process is first seen; afterwards
+ * only {@code stat} and {@code statm} are read for monitored processes, into a reusable buffer and parsed without
+ * creating intermediate strings. Processes which are not monitored are only remembered (with their parent), so they
+ * cost one directory entry per scan; their {@code stat} is read again every {@link #REVALIDATE_SCANS} scans (a
+ * slice of them on each scan), so a recycled process identifier (a different start time) is noticed.
+ * <p>
+ * The CPU usage is calculated as the delta of the CPU time between two samples, relative to the elapsed time.
+ */
+final class ProcessScanner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessScanner.class);
+
+    private static final File PROC = new File("/proc");
+
+    /**
+     * The number of clock ticks per second ({@code getconf CLK_TCK}), 100 if it cannot be extracted.
+     */
+    private static final long CLOCK_TICKS = readConfiguration("CLK_TCK", 100);
+
+    /**
+     * The size of a memory page ({@code getconf PAGESIZE}), 4KB if it cannot be extracted.
+     */
+    private static final long PAGE_SIZE = readConfiguration("PAGESIZE", 4096);
+
+    private static final int REVALIDATE_SCANS = 10;
+    private static final long CONFIGURATION_TIMEOUT = 2_000;
+
+    private static final int STAT_PPID = 4;
+    private static final int STAT_UTIME = 14;
+    private static final int STAT_STIME = 15;
+    private static final int STAT_START_TIME = 22;
+
+    private final Set<String> names;
+    private final long selfPid = ProcessHandle.current().pid();
+    private final long bootTime = readBootTime();
+    private final byte[] buffer = new byte[8192];
+    private final long[] fields = new long[STAT_START_TIME + 1];
+    private final Map<Integer, Sample> samples = new HashMap<>();
+
+    private long lastScan = currentTimeMillis();
+    private int scanCount;
+
+    ProcessScanner(Set<String> names) {
+        requireNonNull(names);
+        this.names = names;
+    }
+
+    /**
+     * Returns whether processes can be sampled on this platform.
+     *
+     * @return {@code true} if {@code /proc} is available, {@code false} otherwise
+     */
+    static boolean isSupported() {
+        return new File(PROC, "self/stat").exists();
+    }
+
+    /**
+     * Returns the process identifier of the node JVM.
+     *
+     * @return a positive integer
+     */
+    long getSelfPid() {
+        return selfPid;
+    }
+
+    /**
+     * Samples all processes and returns the monitored ones.
+     *
+     * @param node the node which runs the processes
+     * @return a non-null instance
+     */
+    synchronized Collection<Runner> scan(Node node) {
+        requireNonNull(node);
+        long now = currentTimeMillis();
+        long elapsed = Math.max(1, now - lastScan);
+        lastScan = now;
+        int revalidated = scanCount++ % REVALIDATE_SCANS;
+        String[] entries = PROC.list();
+        if (entries == null) return Collections.emptyList();
+        Set<Integer> alive = new HashSet<>(entries.length);
+        for (String entry : entries) {
+            int pid = parsePid(entry);
+            if (pid <= 0) continue;
+            alive.add(pid);
+            Sample sample = samples.get(pid);
+            if (sample == null || sample.monitored || pid % REVALIDATE_SCANS == revalidated) {
+                if (!readStat(pid)) continue;
+                // the identifier was recycled, the cached sample belongs to another process
+                if (sample != null && sample.startTime != fields[STAT_START_TIME]) sample = null;
+                if (sample == null) {
+                    sample = new Sample(pid, fields[STAT_START_TIME]);
+                    sample.parentPid = (int) fields[STAT_PPID];
+                    sample.readCommandLine(this);
+                    samples.put(pid, sample);
+                }
+                sample.update(fields, elapsed);
+            }
+        }
+        samples.keySet().retainAll(alive);
+        Collection<Runner> runners = new ArrayList<>();
+        for (Sample sample : samples.values()) {
+            boolean monitored = sample.matches(names) || isDescendant(sample);
+            if (monitored && !sample.monitored) {
+                // first time we notice it, statm was not sampled yet
+                sample.monitored = true;
+                continue;
+            }
+            sample.monitored = monitored;
+            if (!monitored) continue;
+            readStatm(sample);
+            runners.add(sample.toRunner(node, bootTime, now));
+        }
+        return runners;
+    }
+
+    /**
+     * Returns the parents of all processes known to the scanner.
+     *
+     * @return a map with the process identifier as key and the parent identifier as value
+     */
+    synchronized Map<Integer, Integer> getParents() {
+        Map<Integer, Integer> parents = new HashMap<>();
+        samples.forEach((pid, sample) -> parents.put(pid, sample.parentPid));
+        return parents;
+    }
+
+    private boolean isDescendant(Sample sample) {
+        int parentPid = sample.parentPid;
+        for (int depth = 0; depth < 32 && parentPid > 1; depth++) {
+            if (parentPid == selfPid) return true;
+            Sample parent = samples.get(parentPid);
+            if (parent == null) return false;
+            parentPid = parent.parentPid;
+        }
+        return false;
+    }
+
+    private boolean readStat(int pid) {
+        int length = read(pid, "stat");
+        if (length <= 0) return false;
+        // the name can contain spaces and parenthesis, fields start after the last ')'
+        int position = length - 1;
+        while (position > 0 && buffer[position] != ')') position--;
+        int field = 3;
+        position += 2;
+        while (position < length && field < fields.length) {
+            // skip the state (a single character)
+            if (field == 3) {
+                while (position < length && buffer[position] != ' ') position++;
+            } else {
+                long value = 0;
+                boolean negative = buffer[position] == '-';
+                if (negative) position++;
+                while (position < length && buffer[position] >= '0' && buffer[position] <= '9') {
+                    value = value * 10 + (buffer[position++] - '0');
+                }
+                fields[field] = negative ? -value : value;
+                while (position < length && buffer[position] != ' ') position++;
+            }
+            position++;
+            field++;
+        }
+        return field == fields.length;
+    }
+
+    private void readStatm(Sample sample) {
+        int length = read(sample.pid, "statm");
+        if (length <= 0) return;
+        int position = 0;
+        long virtualPages = 0;
+        while (position < length && buffer[position] != ' ') virtualPages = virtualPages * 10 + (buffer[position++] - '0');
+        position++;
+        long residentPages = 0;
+        while (position < length && buffer[position] >= '0' && buffer[position] <= '9') {
+            residentPages = residentPages * 10 + (buffer[position++] - '0');
+        }
+        sample.virtualMemory = virtualPages * PAGE_SIZE;
+        sample.residentMemory = residentPages * PAGE_SIZE;
+    }
+
+    private int read(int pid, String name) {
+        try (FileInputStream inputStream = new FileInputStream("/proc/" + pid + "/" + name)) {
+            int length = 0;
+            int count;
+            while (length < buffer.length && (count = inputStream.read(buffer, length, buffer.length - length)) > 0) {
+                length += count;
+            }
+            return length;
+        } catch (IOException e) {
+            // the process is gone or not accessible
+            return -1;
+        }
+    }
+
+    private static int parsePid(String entry) {
+        int pid = 0;
+        for (int i = 0; i < entry.length(); i++) {
+            char c = entry.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            pid = pid * 10 + (c - '0');
+        }
+        return pid;
+    }
+
+    private static long readConfiguration(String name, long defaultValue) {
+        if (!isSupported()) return defaultValue;
+        try {
+            Process process = new ProcessBuilder("getconf", name).redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.US_ASCII).trim();
+            if (process.waitFor(CONFIGURATION_TIMEOUT, TimeUnit.MILLISECONDS) && process.exitValue() == 0) {
+                long value = Long.parseLong(output);
+                if (value > 0) return value;
+            }
+            process.destroyForcibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.debug("Failed to extract {}, root cause: {}", name, e.getMessage());
+        }
+        return defaultValue;
+    }
+
+    private static long readBootTime() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/stat"))) {
+                if (line.startsWith("btime ")) return Long.parseLong(line.substring(6).trim()) * 1000;
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Failed to extract boot time, root cause: {}", e.getMessage());
+        }
+        return 0;
+    }
+
+    private static class Sample {
+
+        private final int pid;
+        private final long startTime;
+        private int parentPid;
+        private String path = "";
+        private String directory;
+        private List<String> arguments = Collections.emptyList();
+        private boolean monitored = true;
+
+        private long cpuTime = -1;
+        private float cpu;
+        private long virtualMemory;
+        private long residentMemory;
+
+        private Sample(int pid, long startTime) {
+            this.pid = pid;
+            this.startTime = startTime;
+        }
+
+        private void readCommandLine(ProcessScanner scanner) {
+            int length = scanner.read(pid, "cmdline");
+            if (length <= 0) return;
+            List<String> parts = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < length; i++) {
+                if (scanner.buffer[i] == 0) {
+                    if (i > start) parts.add(new String(scanner.buffer, start, i - start, StandardCharsets.UTF_8));
+                    start = i + 1;
+                }
+            }
+            if (start < length) parts.add(new String(scanner.buffer, start, length - start, StandardCharsets.UTF_8));
+            if (parts.isEmpty()) return;
+            path = parts.get(0);
+            arguments = parts.subList(1, parts.size());
+            try {
+                Path cwd = Files.readSymbolicLink(Paths.get("/proc", Integer.toString(pid), "cwd"));
+                directory = cwd.toString();
+            } catch (Exception e) {
+                // not accessible, the process is owned by another user
+            }
+        }
+
+        private boolean matches(Set<String> names) {
+            String name = FileUtils.getFileName(path);
+            if (name == null) return false;
+            // some browsers (Chrome helpers) rewrite their command line as a single string
+            int separator = name.indexOf(' ');
+            if (separator > 0) name = name.substring(0, separator);
+            return names.contains(name.toLowerCase());
+        }
+
+        private void update(long[] fields, long elapsed) {
+            parentPid = (int) fields[STAT_PPID];
+            long currentCpuTime = fields[STAT_UTIME] + fields[STAT_STIME];
+            if (cpuTime >= 0) {
+                long deltaMillis = (currentCpuTime - cpuTime) * 1000 / CLOCK_TICKS;
+                cpu = Math.max(0, 100f * deltaMillis / elapsed);
+            }
+            cpuTime = currentCpuTime;
+        }
+
+        private Runner toRunner(Node node, long bootTime, long now) {
+            Runner.Builder builder = new Runner.Builder(pid, path, node);
+            if (directory != null) builder.directory(directory);
+            long startedAt = bootTime + startTime * 1000 / CLOCK_TICKS;
+            return builder.parentPid(parentPid).cpu(cpu).memory(virtualMemory, residentMemory)
+                    .age(bootTime > 0 ? Math.max(0, now - startedAt) : 0).arguments(arguments).build();
+        }
+    }
+}
@@ -7,7 +7,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.TaskScheduler;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.microfalx.lang.TimeUtils.millisSince;
 
 /**
  * A manager for processes executed to support Selenium sessions.
@@ -16,11 +20,15 @@ class RunnerManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RunnerManager.class);
 
-    private static final long DEFAULT_REFRESH = 60;
+    private static final Duration SCAN_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration KILL_INTERVAL = Duration.ofSeconds(10);
+    private static final long ORPHAN_GRACE_PERIOD = 30_000;
 
     private final NodeServiceImpl nodeService;
     private final TaskScheduler taskScheduler;
+    private final ProcessScanner scanner = new ProcessScanner(PROCESS_NAMES);
     private volatile Collection<Runner> runners = Collections.emptyList();
+    private final Map<Integer, Instant> spawned = new ConcurrentHashMap<>();
 
     private volatile long lastRefresh = System.currentTimeMillis();
 
@@ -35,31 +43,169 @@ class RunnerManager {
     }
 
     void start() {
-        taskScheduler.scheduleAtFixedRate(new ScannerWorker(), Duration.ofSeconds(DEFAULT_REFRESH));
-        taskScheduler.scheduleAtFixedRate(new KillWorker(), Duration.ofSeconds(DEFAULT_REFRESH * 15));
+        if (ProcessScanner.isSupported()) {
+            taskScheduler.scheduleWithFixedDelay(new ScannerWorker(), SCAN_INTERVAL);
+        } else {
+            LOGGER.info("Process information is not available on this platform, runners will not be monitored");
+        }
+        taskScheduler.scheduleWithFixedDelay(new KillWorker(), KILL_INTERVAL);
     }
 
     private void scanProcesses() {
         lastRefresh = System.currentTimeMillis();
-        Collection<Runner> currentRunners = new ArrayList<>();
+        this.runners = scanner.scan(nodeService.getNode());
+        trackSpawned();
+    }
 
-        this.runners = currentRunners;
+    /**
+     * Remembers the processes started by this node (the drivers started by the Selenium Node and their browsers).
+     * <p>
+     * A process stays tracked after its parent dies (and it is re-parented) until it exits, so the browsers of a
+     * crashed driver can still be reaped; the start time guards against recycled process identifiers.
+     */
+    private synchronized void trackSpawned() {
+        ProcessHandle.current().descendants().forEach(handle -> spawned.putIfAbsent((int) handle.pid(), getStartTime(handle)));
+        spawned.entrySet().removeIf(entry -> !isSpawned(entry.getKey(), entry.getValue()));
     }
 
-    private void refreshWorkers() {
-        if (TimeUtils.millisSince(lastRefresh) > 3 * DEFAULT_REFRESH) new ScannerWorker().run();
-        taskScheduler.scheduleWithFixedDelay(new ScannerWorker(), Duration.ofSeconds(1));
+    private boolean isSpawned(Runner runner) {
+        Instant startTime = spawned.get(runner.getPid());
+        return startTime != null && isSpawned(runner.getPid(), startTime);
+    }
+
+    private static boolean isSpawned(int pid, Instant startTime) {
+        return ProcessHandle.of(pid).map(handle -> startTime.equals(getStartTime(handle))).orElse(false);
     }
 
-    private Runner scanProcess(Process systemInformation, long pid) {
-        return null;
+    private static Instant getStartTime(ProcessHandle handle) {
+        return handle.info().startInstant().orElse(Instant.EPOCH);
     }
 
+    private void refreshWorkers() {
+        // the scanner is late (or not scheduled), refresh on the caller
+        if (TimeUtils.millisSince(lastRefresh) > 3 * SCAN_INTERVAL.toMillis() && ProcessScanner.isSupported()) {
+            new ScannerWorker().run();
+        }
+    }
+
+    /**
+     * Kills process trees (a driver and its browsers) which are not owned by a live session.
+     * <p>
+     * Only trees started by this node are considered (see {@link RunnerManager#trackSpawned()}), browsers started by anything else
+     * on the host are never touched.
+     * <p>
+     * A tree is owned by a session when one of its processes was started with an argument which identifies the
+     * session (user data directory, profile, debugger port, see {@link NodeServiceImpl.SessionHolder#getProcessTokens()}).
+     * Trees owned by a closed session (or a session which the node does not know anymore) are killed after a short
+     * grace period after the session was closed. Trees which cannot be linked to any session are killed only with
+     * positive evidence that no live session uses them: they must be older than the browser timeout (to give sessions
+     * which are still being created a chance to register) and every session reported by the Selenium Node must be
+     * known by this node and identifiable by its processes. While the Selenium Node cannot be queried or reports a
+     * session this node does not track (or cannot identify), such trees are left alone. Trees owned by the warm pool
+     * (see {@link WarmSessionFactory}) are never killed.
+     * <p>
+     * The worker uses the processes collected by the last scan, it only queries the Selenium Node (at most once per
+     * run) when a tree cannot be linked to a session.
+     */
     class KillWorker implements Runnable {
 
+        private Map<Integer, Collection<Runner>> getTrees(Collection<Runner> runners) {
+            Map<Integer, Runner> byPid = new HashMap<>();
+            for (Runner runner : runners) {
+                byPid.put(runner.getPid(), runner);
+            }
+            Map<Integer, Collection<Runner>> trees = new HashMap<>();
+            for (Runner runner : runners) {
+                Runner root = runner;
+                for (int depth = 0; depth < 32; depth++) {
+                    Runner parent = byPid.get(root.getParentPid());
+                    if (parent == null) break;
+                    root = parent;
+                }
+                trees.computeIfAbsent(root.getPid(), pid -> new ArrayList<>()).add(runner);
+            }
+            return trees;
+        }
+
+        private NodeServiceImpl.SessionHolder findOwner(Collection<Runner> tree, Collection<NodeServiceImpl.SessionHolder> holders) {
+            for (NodeServiceImpl.SessionHolder holder : holders) {
+                if (matches(tree, holder.getProcessTokens())) return holder;
+            }
+            return null;
+        }
+
+        private boolean matches(Collection<Runner> tree, Collection<String> tokens) {
+            if (tokens.isEmpty()) return false;
+            for (Runner runner : tree) {
+                for (String argument : runner.getArguments()) {
+                    for (String token : tokens) {
+                        if (argument.contains(token)) return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns whether every session running in the Selenium Node is tracked by this node and can be linked to
+         * its processes, so a tree which cannot be linked to any session does not belong to a live session.
+         */
+        private boolean isAccounted(Collection<NodeServiceImpl.SessionHolder> holders) {
+            Collection<String> activeSessions = nodeService.getActiveSessions();
+            if (activeSessions == null) return false;
+            Map<String, NodeServiceImpl.SessionHolder> byId = new HashMap<>();
+            for (NodeServiceImpl.SessionHolder holder : holders) {
+                byId.put(holder.getId(), holder);
+            }
+            for (String id : activeSessions) {
+                NodeServiceImpl.SessionHolder holder = byId.get(id);
+                if (holder == null || holder.getProcessTokens().isEmpty()) {
+                    LOGGER.debug("Session {} cannot be linked to its processes, skip unowned process trees", id);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void kill(Collection<Runner> tree, NodeServiceImpl.SessionHolder owner) {
+            LOGGER.warn("Kill orphan process tree {} (session {}), processes: {}", tree.iterator().next().getPid(),
+                    owner != null ? owner.getId() : "unknown", tree.stream().map(r -> r.getPid() + ":" + r.getName()).toList());
+            for (Runner runner : tree) {
+                ProcessHandle.of(runner.getPid()).ifPresent(handle -> {
+                    handle.descendants().forEach(ProcessHandle::destroyForcibly);
+                    handle.destroyForcibly();
+                });
+            }
+            NodeUtilities.METRICS.count("Orphans Killed");
+            if (owner != null) nodeService.recordOrphan(owner);
+        }
+
         @Override
         public void run() {
-
+            Collection<Runner> runners = RunnerManager.this.runners;
+            if (runners.isEmpty()) return;
+            trackSpawned();
+            long browserTimeout = nodeService.getProperties().getBrowserTimeout().toMillis();
+            Collection<NodeServiceImpl.SessionHolder> holders = nodeService.getSessionHolders();
+            Collection<String> warmTokens = WarmSessionFactory.getProcessTokens();
+            Boolean accounted = null;
+            for (Map.Entry<Integer, Collection<Runner>> entry : getTrees(runners).entrySet()) {
+                Collection<Runner> tree = entry.getValue();
+                if (tree.stream().noneMatch(RunnerManager.this::isSpawned)) continue;
+                if (matches(tree, warmTokens)) continue;
+                long age = tree.stream().mapToLong(Runner::getAge).max().orElse(0);
+                NodeServiceImpl.SessionHolder owner = findOwner(tree, holders);
+                boolean orphan;
+                if (owner != null) {
+                    orphan = owner.isClosed() && millisSince(owner.getClosedTime()) > ORPHAN_GRACE_PERIOD;
+                } else if (age > browserTimeout) {
+                    if (accounted == null) accounted = isAccounted(holders);
+                    orphan = accounted;
+                } else {
+                    orphan = false;
+                }
+                if (orphan) kill(tree, owner);
+            }
         }
     }
 
@@ -67,7 +213,11 @@ class RunnerManager {
 
         @Override
         public void run() {
-            scanProcesses();
+            try {
+                scanProcesses();
+            } catch (Exception e) {
+                LOGGER.error("Failed to scan processes", e);
+            }
         }
     }
 
@@ -0,0 +1,236 @@
+package net.microfalx.zenith.node;
+
+import net.microfalx.metrics.Metrics;
+import net.microfalx.zenith.api.common.Session;
+import net.microfalx.zenith.base.archive.SessionArchive;
+import org.openqa.selenium.Capabilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Records the screen of a session, from the frames of its screen stream (see {@link ScreenStream}).
+ * <p>
+ * The recording is a MJPEG stream (the JPEG frames, one after the other) with an index, one line per frame with the
+ * time since the first frame, the offset and the length of the frame (all as text), so a player can seek without
+ * reading the whole stream. Frames identical to the previous frame are skipped.
+ * <p>
+ * When all sessions are recorded, frames are appended to a temporary file while the session runs; when only failing
+ * sessions are recorded, only the last frames (bounded by duration and size) are kept in memory and discarded unless
+ * the session failed. The recorder stays within a CPU budget (a fraction of the session duration, including the CPU
+ * used to produce the frames, plus a fixed allowance so the first frames are not dropped while the session is still
+ * young): frames received while the recorder is over budget are dropped.
+ */
+class ScreenRecorder implements Consumer<ScreenStream.Frame> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScreenRecorder.class);
+
+    private static final Metrics METRICS = NodeUtilities.METRICS.withGroup("Screen Recorder");
+
+    static final String VIDEO_NAME = "screen.mjpeg";
+    static final String INDEX_NAME = "screen.idx";
+
+    private static final String RECORD_ALL = "RECORD_ALL";
+    private static final String RECORD_FAILING = "RECORD_FAILING";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long CPU_ALLOWANCE = 500_000_000;
+
+    private final String id;
+    private final boolean failingOnly;
+    private final double cpuBudget;
+    private final long bufferDuration;
+    private final long bufferSize;
+    private final long startTime = System.nanoTime();
+
+    private final ArrayDeque<Entry> buffer = new ArrayDeque<>();
+    private final StringBuilder index = new StringBuilder();
+    private File file;
+    private OutputStream output;
+    private long bufferedBytes;
+    private long offset;
+    private long firstTimestamp;
+    private long cpuTime;
+    private byte[] previous;
+    private int frames;
+    private int dropped;
+    private boolean stopped;
+    private volatile boolean failed;
+
+    /**
+     * Creates a recorder for a session, if the session asks to be recorded.
+     *
+     * @param id           the session identifier
+     * @param capabilities the capabilities of the session
+     * @param properties   the node properties
+     * @return the recorder, null if the session is not recorded
+     */
+    static ScreenRecorder create(String id, Capabilities capabilities, NodeProperties properties) {
+        requireNonNull(id);
+        requireNonNull(capabilities);
+        requireNonNull(properties);
+        if (!(capabilities.getCapability(Session.CAPABILITY) instanceof Map<?, ?> options)) return null;
+        Object mode = options.get(Session.RECORDING_CAPABILITY);
+        if (RECORD_ALL.equals(mode)) {
+            return new ScreenRecorder(id, false, properties);
+        } else if (RECORD_FAILING.equals(mode)) {
+            return new ScreenRecorder(id, true, properties);
+        } else {
+            return null;
+        }
+    }
+
+    private ScreenRecorder(String id, boolean failingOnly, NodeProperties properties) {
+        this.id = id;
+        this.failingOnly = failingOnly;
+        this.cpuBudget = properties.getRecordingCpuBudget() / 100;
+        this.bufferDuration = properties.getRecordingBufferDuration().toMillis();
+        this.bufferSize = properties.getRecordingBufferSize();
+    }
+
+    @Override
+    public synchronized void accept(ScreenStream.Frame frame) {
+        if (stopped) return;
+        long startCpuTime = ScreenStream.getCpuTime();
+        cpuTime += frame.getCpuTime();
+        if (cpuTime > CPU_ALLOWANCE + cpuBudget * (System.nanoTime() - startTime)) {
+            dropped++;
+            METRICS.count("Dropped");
+            return;
+        }
+        byte[] data = frame.getData();
+        if (previous != null && Arrays.equals(previous, data)) return;
+        previous = data;
+        try {
+            if (failingOnly) {
+                buffer(new Entry(frame.getTimestamp(), data));
+            } else {
+                write(frame.getTimestamp(), data);
+            }
+            frames++;
+            METRICS.count("Frame");
+        } catch (IOException e) {
+            LOGGER.warn("Failed to record frame for session " + id + ", stop recording, root cause: " + e.getMessage());
+            stopped = true;
+        } finally {
+            cpuTime += ScreenStream.getCpuTime() - startCpuTime;
+        }
+    }
+
+    /**
+     * Records that the session failed, so the recording is kept.
+     */
+    void fail() {
+        failed = true;
+    }
+
+    /**
+     * Returns whether the recording is kept, when the session ends.
+     *
+     * @return {@code true} to keep the recording, {@code false} to discard it
+     */
+    boolean shouldKeep() {
+        return !failingOnly || failed;
+    }
+
+    /**
+     * Stops recording, the session ended.
+     */
+    synchronized void stop() {
+        if (stopped) return;
+        stopped = true;
+        closeOutput();
+        LOGGER.debug("Recording of session {} stopped, {} frames, {} dropped", id, frames, dropped);
+    }
+
+    /**
+     * Appends the recording (the video and its index) to the archive of the session.
+     *
+     * @param writer the archive writer
+     * @throws IOException if an I/O error occurs
+     */
+    synchronized void writeTo(SessionArchive.Writer writer) throws IOException {
+        requireNonNull(writer);
+        if (frames == 0) return;
+        if (failingOnly) {
+            StringBuilder bufferIndex = new StringBuilder();
+            ByteArrayOutputStream video = new ByteArrayOutputStream((int) bufferedBytes);
+            long first = buffer.isEmpty() ? 0 : buffer.getFirst().timestamp;
+            for (Entry entry : buffer) {
+                appendIndex(bufferIndex, entry.timestamp - first, video.size(), entry.data.length);
+                video.write(entry.data);
+            }
+            writer.addRecording(VIDEO_NAME, video.toByteArray());
+            writer.addRecording(INDEX_NAME, bufferIndex.toString().getBytes(StandardCharsets.US_ASCII));
+        } else if (file != null) {
+            writer.addRecording(VIDEO_NAME, file);
+            writer.addRecording(INDEX_NAME, index.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+        METRICS.count("Stored");
+    }
+
+    /**
+     * Releases the frames held by the recorder.
+     */
+    synchronized void discard() {
+        stopped = true;
+        closeOutput();
+        buffer.clear();
+        bufferedBytes = 0;
+        if (file != null && !file.delete()) LOGGER.debug("Failed to delete recording {}", file);
+        file = null;
+    }
+
+    private void buffer(Entry entry) {
+        buffer.addLast(entry);
+        bufferedBytes += entry.data.length;
+        while (buffer.size() > 1 && (bufferedBytes > bufferSize
+                || entry.timestamp - buffer.getFirst().timestamp > bufferDuration)) {
+            bufferedBytes -= buffer.removeFirst().data.length;
+        }
+    }
+
+    private void write(long timestamp, byte[] data) throws IOException {
+        if (output == null) {
+            file = Files.createTempFile("zenith-" + id + "-", ".mjpeg").toFile();
+            output = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+            firstTimestamp = timestamp;
+        }
+        output.write(data);
+        appendIndex(index, timestamp - firstTimestamp, offset, data.length);
+        offset += data.length;
+    }
+
+    private void closeOutput() {
+        if (output == null) return;
+        try {
+            output.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close recording for session " + id + ", root cause: " + e.getMessage());
+        }
+        output = null;
+    }
+
+    private static void appendIndex(StringBuilder index, long time, long offset, int length) {
+        index.append(time).append(' ').append(offset).append(' ').append(length).append('\n');
+    }
+
+    private static class Entry {
+
+        private final long timestamp;
+        private final byte[] data;
+
+        private Entry(long timestamp, byte[] data) {
+            this.timestamp = timestamp;
+            this.data = data;
+        }
+    }
+}
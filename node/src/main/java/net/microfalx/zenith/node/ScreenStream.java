@@ -0,0 +1,454 @@
+package net.microfalx.zenith.node;
+
+import net.microfalx.lang.ExceptionUtils;
+import net.microfalx.metrics.Metrics;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.lang.System.currentTimeMillis;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+import static net.microfalx.lang.TimeUtils.millisSince;
+
+/**
+ * Streams the screen of a session as downscaled JPEG frames, while somebody watches it.
+ * <p>
+ * Chromium browsers push frames with the DevTools screencast ({@code Page.startScreencast}), only when the screen
+ * changes and never faster than the frame rate cap (the browser waits for each frame to be acknowledged). Other
+ * browsers are polled with WebDriver screenshots, at a low rate (at most one screenshot in flight); a screenshot
+ * identical to the previous one (same checksum) is skipped before it is decoded and encoded again.
+ * <p>
+ * Only the latest frame is kept: viewers ask for it and skip the frames they missed, so a slow viewer never slows
+ * down the browser or the other viewers. The stream is started by the first request for a frame and stopped when
+ * nobody asked for a frame for a few seconds (see {@link #isIdle()}), unless somebody listens to every frame
+ * (see {@link #addListener(Consumer)}).
+ */
+class ScreenStream {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScreenStream.class);
+
+    private static final Metrics METRICS = NodeUtilities.METRICS.withGroup("Screen Stream");
+
+    static final long IDLE_TIMEOUT = 5_000;
+
+    private static final long POLLING_INTERVAL = 1_000;
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final Json JSON = new Json();
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final String id;
+    private final Capabilities capabilities;
+    private final URI nodeUri;
+    private final NodeProperties properties;
+    private final ScheduledExecutorService executor;
+    private final HttpClient client;
+    private final long frameInterval;
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Consumer<Frame>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Frame frame;
+    private volatile long lastViewed = currentTimeMillis();
+    private Source source;
+    private boolean closed;
+
+    ScreenStream(String id, Capabilities capabilities, URI nodeUri, NodeProperties properties,
+                 ScheduledExecutorService executor, HttpClient client) {
+        requireNonNull(id);
+        requireNonNull(capabilities);
+        requireNonNull(nodeUri);
+        requireNonNull(properties);
+        requireNonNull(executor);
+        requireNonNull(client);
+        this.id = id;
+        this.capabilities = capabilities;
+        this.nodeUri = nodeUri;
+        this.properties = properties;
+        this.executor = executor;
+        this.client = client;
+        this.frameInterval = 1000 / Math.max(1, properties.getScreencastMaxFps());
+    }
+
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the latest frame and keeps the stream running.
+     *
+     * @return the frame, null if the first frame was not captured yet
+     */
+    Frame getFrame() {
+        lastViewed = currentTimeMillis();
+        start();
+        return frame;
+    }
+
+    /**
+     * Registers a listener which receives every frame, and keeps the stream running until the session ends.
+     *
+     * @param listener the listener
+     */
+    void addListener(Consumer<Frame> listener) {
+        requireNonNull(listener);
+        listeners.add(listener);
+        start();
+    }
+
+    /**
+     * Returns whether nobody asked for a frame recently and nobody listens to frames.
+     *
+     * @return {@code true} if idle, {@code false} otherwise
+     */
+    boolean isIdle() {
+        return listeners.isEmpty() && millisSince(lastViewed) > IDLE_TIMEOUT;
+    }
+
+    /**
+     * Stops capturing frames; the stream starts again with the next request for a frame.
+     */
+    synchronized void stop() {
+        if (source == null) return;
+        Source current = source;
+        source = null;
+        current.stop();
+        METRICS.count("Stop");
+    }
+
+    /**
+     * Stops capturing frames for good, the session ended.
+     */
+    synchronized void close() {
+        closed = true;
+        stop();
+    }
+
+    private synchronized void start() {
+        if (closed || source != null) return;
+        String debuggerAddress = NodeUtilities.getDebuggerAddress(capabilities);
+        if (debuggerAddress != null) {
+            METRICS.count("Start DevTools");
+            source = new DevToolsSource(debuggerAddress);
+        } else {
+            METRICS.count("Start Polling");
+            source = new PollingSource();
+        }
+        source.start();
+    }
+
+    private synchronized void fallback(Source failed) {
+        if (source != failed) return;
+        METRICS.count("Start Polling");
+        source = new PollingSource();
+        source.start();
+    }
+
+    private void publish(byte[] data, long startCpuTime) {
+        Frame current = new Frame(sequence.incrementAndGet(), data, getCpuTime() - startCpuTime);
+        frame = current;
+        METRICS.count("Frame");
+        for (Consumer<Frame> listener : listeners) {
+            try {
+                listener.accept(current);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to process frame for session " + id + ", root cause: "
+                        + ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+
+    /**
+     * Returns the CPU time used by the current thread.
+     *
+     * @return the CPU time in nanoseconds
+     */
+    static long getCpuTime() {
+        return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+    }
+
+    private static long getChecksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private byte[] toJpeg(byte[] data) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+        if (image == null) throw new IOException("Unsupported screenshot format");
+        double scale = Math.min(1, Math.min((double) properties.getScreencastMaxWidth() / image.getWidth(),
+                (double) properties.getScreencastMaxHeight() / image.getHeight()));
+        int width = Math.max(1, (int) (image.getWidth() * scale));
+        int height = Math.max(1, (int) (image.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam parameters = writer.getDefaultWriteParam();
+        parameters.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        parameters.setCompressionQuality(properties.getScreencastQuality() / 100f);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(scaled, null, null), parameters);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * A frame of the screen.
+     */
+    static final class Frame {
+
+        private final long sequence;
+        private final byte[] data;
+        private final long cpuTime;
+        private final long timestamp = currentTimeMillis();
+
+        private Frame(long sequence, byte[] data, long cpuTime) {
+            this.sequence = sequence;
+            this.data = data;
+            this.cpuTime = cpuTime;
+        }
+
+        /**
+         * Returns the sequence of the frame, which increases with every frame of the stream.
+         *
+         * @return a positive integer
+         */
+        long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Returns the frame, as a JPEG image.
+         *
+         * @return a non-null instance
+         */
+        byte[] getData() {
+            return data;
+        }
+
+        /**
+         * Returns when the frame was captured.
+         *
+         * @return a timestamp in milliseconds
+         */
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Returns the CPU time used (by this JVM) to decode and encode the frame.
+         *
+         * @return the CPU time in nanoseconds
+         */
+        long getCpuTime() {
+            return cpuTime;
+        }
+    }
+
+    private abstract static class Source {
+
+        abstract void start();
+
+        abstract void stop();
+    }
+
+    /**
+     * Receives frames from the DevTools screencast of the first page of the browser.
+     */
+    private class DevToolsSource extends Source implements WebSocket.Listener {
+
+        private final String address;
+        private final AtomicInteger commandId = new AtomicInteger();
+        private final StringBuilder message = new StringBuilder();
+        private CompletableFuture<WebSocket> sending;
+        private volatile boolean stopped;
+        private volatile long lastAck;
+
+        private DevToolsSource(String address) {
+            this.address = address;
+        }
+
+        @Override
+        void start() {
+            executor.execute(this::connect);
+        }
+
+        @Override
+        synchronized void stop() {
+            stopped = true;
+            if (sending == null) return;
+            send("Page.stopScreencast", Map.of());
+            sending = sending.thenCompose(socket -> socket.sendClose(WebSocket.NORMAL_CLOSURE, ""));
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            message.append(data);
+            if (last) {
+                handle(message.toString());
+                message.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            if (stopped) return;
+            METRICS.count("DevTools Failed");
+            LOGGER.debug("DevTools screencast failed for session {}, root cause: {}", id,
+                    ExceptionUtils.getRootCauseMessage(error));
+        }
+
+        private void connect() {
+            try {
+                URI pageUri = findPage();
+                WebSocket socket = client.newWebSocketBuilder().connectTimeout(TIMEOUT).buildAsync(pageUri, this)
+                        .get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                synchronized (this) {
+                    sending = CompletableFuture.completedFuture(socket);
+                    if (stopped) {
+                        sending = sending.thenCompose(s -> s.sendClose(WebSocket.NORMAL_CLOSURE, ""));
+                        return;
+                    }
+                    send("Page.startScreencast", Map.of("format", "jpeg", "quality", properties.getScreencastQuality(),
+                            "maxWidth", properties.getScreencastMaxWidth(), "maxHeight", properties.getScreencastMaxHeight(),
+                            "everyNthFrame", 1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                METRICS.count("DevTools Failed");
+                LOGGER.debug("Failed to start DevTools screencast for session {}, fall back to screenshots, root cause: {}",
+                        id, ExceptionUtils.getRootCauseMessage(e));
+                fallback(this);
+            }
+        }
+
+        private URI findPage() throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + address + "/json/list"))
+                    .timeout(TIMEOUT).GET().build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            List<Map<String, Object>> targets = JSON.toType(response.body(), Json.LIST_OF_MAPS_TYPE);
+            for (Map<String, Object> target : targets) {
+                if ("page".equals(target.get("type")) && target.get("webSocketDebuggerUrl") instanceof String url) {
+                    return URI.create(url);
+                }
+            }
+            throw new IOException("A page is not available at " + address);
+        }
+
+        private void handle(String text) {
+            Map<String, Object> event = JSON.toType(text, Json.MAP_TYPE);
+            if (!"Page.screencastFrame".equals(event.get("method"))) return;
+            if (!(event.get("params") instanceof Map<?, ?> params)) return;
+            if (params.get("data") instanceof String data) {
+                long startCpuTime = getCpuTime();
+                publish(Base64.getDecoder().decode(data), startCpuTime);
+            }
+            Object sessionId = params.get("sessionId");
+            // the browser sends the next frame only after the current one is acknowledged, which caps the frame rate
+            long delay = Math.max(0, frameInterval - millisSince(lastAck));
+            executor.schedule(() -> acknowledge(sessionId), delay, TimeUnit.MILLISECONDS);
+        }
+
+        private synchronized void acknowledge(Object sessionId) {
+            lastAck = currentTimeMillis();
+            if (!stopped) send("Page.screencastFrameAck", Map.of("sessionId", sessionId));
+        }
+
+        private void send(String method, Map<String, Object> parameters) {
+            String command = JSON.toJson(Map.of("id", commandId.incrementAndGet(), "method", method, "params", parameters));
+            sending = sending.thenCompose(socket -> socket.sendText(command, true));
+        }
+    }
+
+    /**
+     * Captures frames with WebDriver screenshots, requested from the Selenium Node.
+     */
+    private class PollingSource extends Source {
+
+        private volatile ScheduledFuture<?> future;
+        private long lastChecksum = -1;
+
+        @Override
+        void start() {
+            long interval = Math.max(POLLING_INTERVAL, frameInterval);
+            future = executor.scheduleWithFixedDelay(this::poll, 0, interval, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        void stop() {
+            if (future != null) future.cancel(false);
+        }
+
+        private void poll() {
+            try {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(nodeUri.toASCIIString() + "/session/" + id + "/screenshot"))
+                        .timeout(TIMEOUT).GET().build();
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) return;
+                Map<String, Object> body = JSON.toType(response.body(), Json.MAP_TYPE);
+                if (body.get("value") instanceof String data) {
+                    long startCpuTime = getCpuTime();
+                    byte[] screenshot = Base64.getDecoder().decode(data);
+                    long checksum = getChecksum(screenshot);
+                    if (checksum == lastChecksum) {
+                        METRICS.count("Duplicate Frame");
+                        return;
+                    }
+                    lastChecksum = checksum;
+                    publish(toJpeg(screenshot), startCpuTime);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                METRICS.count("Polling Failed");
+                LOGGER.debug("Failed to capture screen for session {}, root cause: {}", id,
+                        ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+}
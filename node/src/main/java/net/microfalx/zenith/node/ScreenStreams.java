@@ -0,0 +1,165 @@
+package net.microfalx.zenith.node;
+
+import net.microfalx.lang.StringUtils;
+import net.microfalx.metrics.Metrics;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.remote.http.*;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static java.net.HttpURLConnection.*;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+
+/**
+ * Holds the screen streams (see {@link ScreenStream}) of the sessions running in this node and serves their frames
+ * from the Selenium Node, with {@code GET /zenith/session/{id}/screen?after=<sequence>}.
+ * <p>
+ * The endpoint never waits for a frame: it returns the latest frame (the sequence is returned with header
+ * {@link #SEQUENCE_HEADER}), {@code 304} if the caller already has it, {@code 204} if the first frame was not
+ * captured yet or {@code 404} if the session does not run on this node. Streams which are not watched anymore
+ * are stopped in the background.
+ */
+class ScreenStreams {
+
+    static final String PATH = "/zenith/session/{sessionId}/screen";
+    static final String SEQUENCE_HEADER = "X-Zenith-Frame";
+
+    private static final Metrics METRICS = NodeUtilities.METRICS.withGroup("Screen Stream");
+
+    private static final int THREADS = 2;
+
+    private final NodeProperties properties;
+    private final Function<String, Capabilities> sessions;
+    private final Map<String, ScreenStream> streams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = createExecutor();
+    private final java.net.http.HttpClient client = java.net.http.HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2)).build();
+    private volatile URI nodeUri;
+
+    /**
+     * Creates the streams.
+     *
+     * @param properties the node properties
+     * @param sessions   a function which returns the capabilities of a running session, null if the session is not
+     *                   running on this node
+     */
+    ScreenStreams(NodeProperties properties, Function<String, Capabilities> sessions) {
+        requireNonNull(properties);
+        requireNonNull(sessions);
+        this.properties = properties;
+        this.sessions = sessions;
+        executor.scheduleWithFixedDelay(this::stopIdle, ScreenStream.IDLE_TIMEOUT, ScreenStream.IDLE_TIMEOUT,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Changes the URI of the Selenium Node, used to capture screenshots of browsers without DevTools.
+     *
+     * @param nodeUri the URI
+     */
+    void setNodeUri(URI nodeUri) {
+        requireNonNull(nodeUri);
+        this.nodeUri = nodeUri;
+    }
+
+    /**
+     * Returns the route which serves the frames.
+     *
+     * @return a non-null instance
+     */
+    Routable getRoute() {
+        return Route.get(PATH).to(params -> request -> getFrame(params.get("sessionId"), request));
+    }
+
+    /**
+     * Returns the stream of a session, creating it if the session runs on this node.
+     *
+     * @param id the session identifier
+     * @return the stream, null if the session does not run on this node
+     */
+    ScreenStream get(String id) {
+        requireNonNull(id);
+        ScreenStream stream = streams.get(id);
+        if (stream != null || nodeUri == null) return stream;
+        Capabilities capabilities = sessions.apply(id);
+        if (capabilities == null) return null;
+        return streams.computeIfAbsent(id, k -> new ScreenStream(k, capabilities, nodeUri, properties, executor, client));
+    }
+
+    /**
+     * Returns the stream of a session, without creating one.
+     *
+     * @param id the session identifier
+     * @return the stream, null if the session is not streamed
+     */
+    ScreenStream find(String id) {
+        requireNonNull(id);
+        return streams.get(id);
+    }
+
+    /**
+     * Closes the stream of a session, after the session ended.
+     *
+     * @param id the session identifier
+     */
+    void close(String id) {
+        requireNonNull(id);
+        ScreenStream stream = streams.remove(id);
+        if (stream != null) stream.close();
+    }
+
+    private HttpResponse getFrame(String id, HttpRequest request) {
+        ScreenStream stream = get(id);
+        if (stream == null) return new HttpResponse().setStatus(HTTP_NOT_FOUND);
+        ScreenStream.Frame frame = stream.getFrame();
+        if (frame == null) return new HttpResponse().setStatus(HTTP_NO_CONTENT);
+        long after = getSequence(request.getQueryParameter("after"));
+        if (after >= 0 && frame.getSequence() <= after) {
+            return new HttpResponse().setStatus(HTTP_NOT_MODIFIED);
+        }
+        METRICS.count("Served");
+        return new HttpResponse().setStatus(HTTP_OK)
+                .setHeader("Content-Type", "image/jpeg")
+                .setHeader("Cache-Control", "no-cache, no-store")
+                .setHeader(SEQUENCE_HEADER, Long.toString(frame.getSequence()))
+                .setContent(Contents.bytes(frame.getData()));
+    }
+
+    /**
+     * Parses the sequence passed by the caller, which is not trusted.
+     *
+     * @param value the value of the query parameter
+     * @return the sequence, -1 if missing or invalid
+     */
+    private static long getSequence(String value) {
+        if (StringUtils.isEmpty(value)) return -1;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void stopIdle() {
+        for (ScreenStream stream : streams.values()) {
+            if (stream.isIdle()) stream.stop();
+        }
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        AtomicInteger index = new AtomicInteger(1);
+        return Executors.newScheduledThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "Zenith Screencast " + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,527 @@
+package net.microfalx.zenith.node;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.ImmutableCapabilities;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.grid.config.Config;
+import org.openqa.selenium.grid.data.CreateSessionRequest;
+import org.openqa.selenium.grid.log.LoggingOptions;
+import org.openqa.selenium.grid.node.ActiveSession;
+import org.openqa.selenium.grid.node.SessionFactory;
+import org.openqa.selenium.grid.node.config.DriverServiceSessionFactory;
+import org.openqa.selenium.grid.node.config.NodeOptions;
+import org.openqa.selenium.grid.server.NetworkOptions;
+import org.openqa.selenium.internal.Either;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.Dialect;
+import org.openqa.selenium.remote.SessionId;
+import org.openqa.selenium.remote.http.Contents;
+import org.openqa.selenium.remote.http.HttpMethod;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+import org.openqa.selenium.remote.service.DriverService;
+import org.openqa.selenium.remote.tracing.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.currentTimeMillis;
+import static net.microfalx.lang.ArgumentUtils.requireNonNull;
+import static net.microfalx.lang.TimeUtils.millisSince;
+
+/**
+ * A session factory which keeps browsers (and their drivers) started ahead of time, so new sessions do not wait for
+ * a cold start.
+ * <p>
+ * The factory is registered with the Selenium Node as a driver factory (one per slot, slots with the same stereotype
+ * share a pool). Browsers are warmed with the capabilities of the most recent session request (browser options and
+ * arguments, logging preferences and so on, without the Grid and Zenith metadata), so a request receives an idle
+ * browser under a new session identifier when it asks for exactly what the browser was started with; any other
+ * request starts a new browser, as usual, and the idle browsers started with other capabilities are replaced.
+ * <p>
+ * When the session is closed the browser is reset and returned to the pool, until it reaches the maximum reuse
+ * count: the next session runs in a new DevTools browser context (the previous context, with its cookies, cache
+ * and storage, is disposed), with the timeouts and the window size the browser was started with. Browsers which
+ * cannot be reset (anything but Chromium, or sessions which opened more than one window) are stopped instead.
+ * <p>
+ * The number of idle browsers follows the recent arrival rate of sessions: enough to cover the arrivals expected
+ * during one browser start, between the configured minimum and maximum. No browsers are warmed while the node does
+ * not accept sessions.
+ */
+public final class WarmSessionFactory implements SessionFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmSessionFactory.class);
+
+    private static final Map<String, Pool> POOLS = new ConcurrentHashMap<>();
+    private static final ExecutorService EXECUTOR = createExecutor();
+    private static final Json JSON = new Json();
+    private static final HttpClient CLIENT = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private static final double SMOOTHING = 0.3;
+    private static final Map<String, Object> DEFAULT_TIMEOUTS = Map.of("script", 30_000, "pageLoad", 300_000, "implicit", 0);
+
+    private static volatile NodeProperties properties = new NodeProperties();
+
+    private final Pool pool;
+
+    /**
+     * Creates a factory for a slot, as required by {@code NodeOptions} for driver factories.
+     *
+     * @param config     the configuration of the node
+     * @param stereotype the stereotype of the slot
+     * @return a non-null instance
+     */
+    public static SessionFactory create(Config config, Capabilities stereotype) {
+        requireNonNull(config);
+        requireNonNull(stereotype);
+        Pool pool = POOLS.computeIfAbsent(JSON.toJson(stereotype.asMap()), key -> new Pool(createDelegate(config, stereotype), stereotype));
+        return new WarmSessionFactory(pool);
+    }
+
+    /**
+     * Changes the settings used by all pools.
+     *
+     * @param properties the node properties
+     */
+    static void configure(NodeProperties properties) {
+        requireNonNull(properties);
+        WarmSessionFactory.properties = properties;
+    }
+
+    /**
+     * Adjusts the size of all pools to the recent arrival rate.
+     *
+     * @param accepting {@code true} if the node accepts new sessions, {@code false} otherwise
+     */
+    static void maintain(boolean accepting) {
+        for (Pool pool : POOLS.values()) {
+            try {
+                pool.maintain(accepting);
+            } catch (Exception e) {
+                LOGGER.error("Failed to maintain warm pool for " + pool.stereotype, e);
+            }
+        }
+    }
+
+    /**
+     * Stops all browsers owned by the pools (idle or in use).
+     */
+    static void shutdown() {
+        for (Pool pool : POOLS.values()) {
+            pool.shutdown();
+        }
+        POOLS.clear();
+    }
+
+    /**
+     * Returns the tokens which identify the processes of all browsers owned by the pools (idle or in use).
+     *
+     * @return a non-null instance
+     * @see NodeUtilities#getProcessTokens(Capabilities)
+     */
+    static Collection<String> getProcessTokens() {
+        Collection<String> tokens = new ArrayList<>();
+        for (Pool pool : POOLS.values()) {
+            for (Instance instance : pool.instances) {
+                tokens.addAll(instance.processTokens);
+            }
+        }
+        return tokens;
+    }
+
+    private WarmSessionFactory(Pool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public boolean test(Capabilities capabilities) {
+        return pool.delegate.test(capabilities);
+    }
+
+    @Override
+    public boolean isSupportingCdp() {
+        return pool.delegate.isSupportingCdp();
+    }
+
+    @Override
+    public boolean isSupportingBiDi() {
+        return pool.delegate.isSupportingBiDi();
+    }
+
+    @Override
+    public Either<WebDriverException, ActiveSession> apply(CreateSessionRequest request) {
+        pool.arrivals.incrementAndGet();
+        if (request.getDownstreamDialects().contains(Dialect.W3C)) {
+            Map<String, Object> profile = getProfile(request.getDesiredCapabilities());
+            // the next browsers are warmed for what the sessions of this node ask for
+            pool.profile = profile;
+            Instance instance = pool.take(profile);
+            if (instance != null) {
+                NodeUtilities.METRICS.count("Warm Pool Hit");
+                return Either.right(new LeasedSession(pool, instance));
+            }
+        }
+        NodeUtilities.METRICS.count("Warm Pool Miss");
+        return pool.delegate.apply(request);
+    }
+
+    /**
+     * Returns the capabilities a warm browser must be started with to serve a request: the requested capabilities,
+     * without the Grid and Zenith metadata and the empty values.
+     */
+    static Map<String, Object> getProfile(Capabilities capabilities) {
+        Map<String, Object> profile = new HashMap<>();
+        capabilities.asMap().forEach((name, value) -> {
+            if (!name.startsWith("se:") && !name.startsWith("zenith:") && !isEmpty(value)) profile.put(name, value);
+        });
+        return profile;
+    }
+
+    private static boolean isEmpty(Object value) {
+        if (value == null) return true;
+        if (value instanceof Collection<?> collection) return collection.isEmpty();
+        if (value instanceof Map<?, ?> map) {
+            // the clients send browser options with empty arguments and extensions by default
+            for (Object item : map.values()) {
+                if (!isEmpty(item)) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static SessionFactory createDelegate(Config config, Capabilities stereotype) {
+        Tracer tracer = new LoggingOptions(config).getTracer();
+        NodeOptions nodeOptions = new NodeOptions(config);
+        for (DriverService.Builder<?, ?> builder : ServiceLoader.load(DriverService.Builder.class)) {
+            if (builder.score(stereotype) <= 0) continue;
+            return new DriverServiceSessionFactory(tracer, new NetworkOptions(config).getHttpClientFactory(tracer),
+                    nodeOptions.getSessionTimeout(), stereotype, capabilities -> builder.score(capabilities) > 0, builder);
+        }
+        throw new SessionNotCreatedException("A driver is not available for " + stereotype);
+    }
+
+    private static ExecutorService createExecutor() {
+        AtomicInteger index = new AtomicInteger(1);
+        return Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "Zenith Warm Pool " + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Holds the browsers started for a stereotype.
+     */
+    private static class Pool {
+
+        private final SessionFactory delegate;
+        private final Capabilities stereotype;
+        private final Deque<Instance> idle = new ArrayDeque<>();
+        private final Set<Instance> instances = ConcurrentHashMap.newKeySet();
+        private final AtomicLong arrivals = new AtomicLong();
+        private final AtomicInteger starting = new AtomicInteger();
+
+        private volatile long lastMaintenance = currentTimeMillis();
+        private volatile double arrivalRate;
+        private volatile double startDuration = 2000;
+        private volatile Map<String, Object> profile;
+
+        private Pool(SessionFactory delegate, Capabilities stereotype) {
+            this.delegate = delegate;
+            this.stereotype = stereotype;
+            this.profile = getProfile(stereotype);
+        }
+
+        private synchronized Instance take(Map<String, Object> profile) {
+            for (Iterator<Instance> iterator = idle.iterator(); iterator.hasNext(); ) {
+                Instance instance = iterator.next();
+                if (instance.profile.equals(profile)) {
+                    iterator.remove();
+                    return instance;
+                }
+            }
+            return null;
+        }
+
+        private void release(Instance instance) {
+            if (instance.uses >= properties.getWarmPoolMaxReuse() || !instance.reset()) {
+                NodeUtilities.METRICS.count("Warm Pool Recycled");
+                stop(instance);
+                return;
+            }
+            NodeUtilities.METRICS.count("Warm Pool Reset");
+            instance.lastUsed = currentTimeMillis();
+            synchronized (this) {
+                idle.addLast(instance);
+            }
+        }
+
+        private void maintain(boolean accepting) {
+            long elapsed = Math.max(1, millisSince(lastMaintenance));
+            lastMaintenance = currentTimeMillis();
+            double rate = arrivals.getAndSet(0) * 1000d / elapsed;
+            arrivalRate = arrivalRate + SMOOTHING * (rate - arrivalRate);
+            int target = 0;
+            if (accepting) {
+                // the arrivals expected while a browser starts, at least the minimum
+                target = (int) Math.ceil(arrivalRate * startDuration / 1000);
+                target = Math.max(properties.getWarmPoolMinSize(), Math.min(properties.getWarmPoolMaxSize(), target));
+            }
+            List<Instance> extra = new ArrayList<>();
+            Map<String, Object> currentProfile = profile;
+            int missing;
+            synchronized (this) {
+                for (Iterator<Instance> iterator = idle.iterator(); iterator.hasNext(); ) {
+                    Instance instance = iterator.next();
+                    if (!instance.profile.equals(currentProfile)
+                            || millisSince(instance.lastUsed) > properties.getWarmPoolMaxIdle().toMillis()) {
+                        iterator.remove();
+                        extra.add(instance);
+                    }
+                }
+                while (idle.size() > target) extra.add(idle.pollFirst());
+                missing = target - idle.size() - starting.get();
+            }
+            for (Instance instance : extra) {
+                EXECUTOR.execute(() -> stop(instance));
+            }
+            for (int i = 0; i < missing; i++) {
+                starting.incrementAndGet();
+                EXECUTOR.execute(this::start);
+            }
+        }
+
+        private void start() {
+            long startTime = currentTimeMillis();
+            Map<String, Object> currentProfile = profile;
+            try {
+                Either<WebDriverException, ActiveSession> result = delegate.apply(new CreateSessionRequest(Set.of(Dialect.W3C),
+                        new ImmutableCapabilities(currentProfile), Collections.emptyMap()));
+                if (result.isRight()) {
+                    Instance instance = new Instance(result.right(), currentProfile);
+                    startDuration = startDuration + SMOOTHING * (millisSince(startTime) - startDuration);
+                    instances.add(instance);
+                    synchronized (this) {
+                        idle.addLast(instance);
+                    }
+                    NodeUtilities.METRICS.count("Warm Pool Started");
+                } else {
+                    LOGGER.warn("Failed to start warm browser for " + stereotype + ", root cause: " + result.left().getMessage());
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to start warm browser for " + stereotype + ", root cause: " + e.getMessage());
+            } finally {
+                starting.decrementAndGet();
+            }
+        }
+
+        private void stop(Instance instance) {
+            instances.remove(instance);
+            try {
+                instance.session.stop();
+            } catch (Exception e) {
+                LOGGER.debug("Failed to stop warm browser " + instance.session.getId() + ", root cause: " + e.getMessage());
+            }
+        }
+
+        private void shutdown() {
+            for (Instance instance : instances) {
+                stop(instance);
+            }
+            synchronized (this) {
+                idle.clear();
+            }
+        }
+    }
+
+    /**
+     * A browser owned by a pool.
+     */
+    private static class Instance {
+
+        private final ActiveSession session;
+        private final Map<String, Object> profile;
+        private final String path;
+        private final Collection<String> processTokens;
+        private final String debuggerAddress;
+        private final Map<String, Object> timeouts;
+        private final Map<String, Object> windowRect;
+        private volatile String browserContextId;
+        private volatile int uses;
+        private volatile long lastUsed = currentTimeMillis();
+
+        private Instance(ActiveSession session, Map<String, Object> profile) {
+            this.session = session;
+            this.profile = profile;
+            this.path = "/session/" + session.getId();
+            this.processTokens = NodeUtilities.getProcessTokens(session.getCapabilities());
+            this.debuggerAddress = NodeUtilities.getDebuggerAddress(session.getCapabilities());
+            this.timeouts = session.getCapabilities().getCapability("timeouts") instanceof Map<?, ?> value
+                    ? toParameters(value) : DEFAULT_TIMEOUTS;
+            this.windowRect = getWindowRect();
+        }
+
+        private boolean isChromium() {
+            return session.getCapabilities().getCapability("goog:chromeOptions") != null
+                    || session.getCapabilities().getCapability("ms:edgeOptions") != null;
+        }
+
+        private boolean reset() {
+            if (!isChromium() || debuggerAddress == null) return false;
+            try {
+                if (getWindowHandles().size() != 1) return false;
+                if (!isolate()) return false;
+                boolean reset = execute("/timeouts", timeouts);
+                if (windowRect != null) reset &= execute("/window/rect", windowRect);
+                return reset;
+            } catch (Exception e) {
+                LOGGER.debug("Failed to reset warm browser " + session.getId() + ", root cause: " + e.getMessage());
+                return false;
+            }
+        }
+
+        /**
+         * Moves the browser to a new browser context: a blank page is opened in a new context, the page of the
+         * previous session is closed and the previous context (cookies, cache, storage) is disposed.
+         */
+        private boolean isolate() throws IOException {
+            try (DevToolsConnection devTools = DevToolsConnection.open(CLIENT, debuggerAddress)) {
+                Object contextId = devTools.execute("Target.createBrowserContext", Map.of()).get("browserContextId");
+                if (contextId == null) return false;
+                devTools.execute("Target.createTarget", Map.of("url", "about:blank", "browserContextId", contextId));
+                if (!execute(HttpMethod.DELETE, "/window", null)) return false;
+                List<Object> handles = getWindowHandles();
+                if (handles.size() != 1 || !execute("/window", Map.of("handle", handles.get(0)))) return false;
+                String previousContextId = browserContextId;
+                browserContextId = contextId.toString();
+                if (previousContextId != null) {
+                    devTools.execute("Target.disposeBrowserContext", Map.of("browserContextId", previousContextId));
+                }
+                return true;
+            }
+        }
+
+        private List<Object> getWindowHandles() {
+            HttpResponse handles = session.execute(new HttpRequest(HttpMethod.GET, path + "/window/handles"));
+            if (handles.getStatus() != HttpURLConnection.HTTP_OK) return Collections.emptyList();
+            Object value = JSON.toType(Contents.string(handles), Map.class).get("value");
+            return value instanceof Collection<?> windows ? new ArrayList<>(windows) : Collections.emptyList();
+        }
+
+        private Map<String, Object> getWindowRect() {
+            try {
+                HttpResponse response = session.execute(new HttpRequest(HttpMethod.GET, path + "/window/rect"));
+                if (response.getStatus() != HttpURLConnection.HTTP_OK) return null;
+                Object value = JSON.toType(Contents.string(response), Map.class).get("value");
+                return value instanceof Map<?, ?> rect ? toParameters(rect) : null;
+            } catch (Exception e) {
+                LOGGER.debug("Failed to extract window size of warm browser " + session.getId() + ", root cause: " + e.getMessage());
+                return null;
+            }
+        }
+
+        private boolean execute(String command, Map<String, Object> parameters) {
+            return execute(HttpMethod.POST, command, parameters);
+        }
+
+        private boolean execute(HttpMethod method, String command, Map<String, Object> parameters) {
+            HttpRequest request = new HttpRequest(method, path + command);
+            if (parameters != null) request.setContent(Contents.asJson(parameters));
+            return session.execute(request).getStatus() == HttpURLConnection.HTTP_OK;
+        }
+
+        private static Map<String, Object> toParameters(Map<?, ?> values) {
+            Map<String, Object> parameters = new HashMap<>();
+            values.forEach((name, value) -> {
+                if (value != null) parameters.put(name.toString(), value);
+            });
+            return parameters;
+        }
+    }
+
+    /**
+     * A warm browser handed over to a session, under a new identifier.
+     * <p>
+     * Requests are forwarded to the browser with the identifier of the browser session; the request which closes
+     * the session is answered here, the browser returns to the pool when the node stops the session.
+     */
+    private static class LeasedSession implements ActiveSession {
+
+        private final Pool pool;
+        private final Instance instance;
+        private final SessionId id = new SessionId(UUID.randomUUID());
+        private final String path = "/session/" + id;
+        private final Instant startTime = Instant.now();
+        private volatile boolean stopped;
+
+        private LeasedSession(Pool pool, Instance instance) {
+            this.pool = pool;
+            this.instance = instance;
+            instance.uses++;
+        }
+
+        @Override
+        public SessionId getId() {
+            return id;
+        }
+
+        @Override
+        public Capabilities getStereotype() {
+            return pool.stereotype;
+        }
+
+        @Override
+        public Capabilities getCapabilities() {
+            return instance.session.getCapabilities();
+        }
+
+        @Override
+        public Instant getStartTime() {
+            return startTime;
+        }
+
+        @Override
+        public Dialect getUpstreamDialect() {
+            return instance.session.getUpstreamDialect();
+        }
+
+        @Override
+        public Dialect getDownstreamDialect() {
+            return instance.session.getDownstreamDialect();
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest req) {
+            String uri = req.getUri();
+            if (req.getMethod() == HttpMethod.DELETE && uri.equals(path)) {
+                return new HttpResponse().setContent(Contents.asJson(Collections.singletonMap("value", null)));
+            }
+            HttpRequest forward = new HttpRequest(req.getMethod(), uri.startsWith(path) ? instance.path + uri.substring(path.length()) : uri);
+            req.forEachHeader(forward::addHeader);
+            for (String name : req.getQueryParameterNames()) {
+                for (String value : req.getQueryParameters(name)) {
+                    forward.addQueryParameter(name, value);
+                }
+            }
+            forward.setContent(req.getContent());
+            return instance.session.execute(forward);
+        }
+
+        @Override
+        public void stop() {
+            if (stopped) return;
+            stopped = true;
+            EXECUTOR.execute(() -> pool.release(instance));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package net.microfalx.zenith.node;
+
+import net.microfalx.zenith.api.node.Node;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static net.microfalx.zenith.node.AdmissionController.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdmissionControllerTest {
+
+    private final List<Node.Admission> changes = new ArrayList<>();
+    private long time = 1_000_000;
+    private AdmissionController controller;
+
+    @BeforeEach
+    void setup() {
+        controller = new AdmissionController(Collections::emptyList, changes::add, () -> time);
+    }
+
+    @Test
+    void throttleAfterConsecutiveSamples() {
+        update(HIGH_WATERMARK, SAMPLES_TO_THROTTLE - 1);
+        assertEquals(Node.Admission.ACCEPTING, controller.getAdmission());
+        update(HIGH_WATERMARK, 1);
+        assertEquals(Node.Admission.THROTTLED, controller.getAdmission());
+        assertEquals(List.of(Node.Admission.THROTTLED), changes);
+    }
+
+    @Test
+    void singleDipResetsThrottle() {
+        update(HIGH_WATERMARK, SAMPLES_TO_THROTTLE - 1);
+        update(0.5f, 1);
+        update(HIGH_WATERMARK, SAMPLES_TO_THROTTLE - 1);
+        assertEquals(Node.Admission.ACCEPTING, controller.getAdmission());
+        assertEquals(0, changes.size());
+    }
+
+    @Test
+    void drainAboveCritical() {
+        update(CRITICAL_WATERMARK, SAMPLES_TO_THROTTLE);
+        assertEquals(Node.Admission.DRAINING, controller.getAdmission());
+        assertEquals(List.of(Node.Admission.DRAINING), changes);
+    }
+
+    @Test
+    void staysThrottledBetweenWatermarks() {
+        update(HIGH_WATERMARK, SAMPLES_TO_THROTTLE);
+        time += MIN_STATE_DURATION * 10;
+        update((LOW_WATERMARK + HIGH_WATERMARK) / 2, SAMPLES_TO_RECOVER * 10);
+        assertEquals(Node.Admission.THROTTLED, controller.getAdmission());
+    }
+
+    @Test
+    void recoverOnlyAfterMinimumDuration() {
+        update(HIGH_WATERMARK, SAMPLES_TO_THROTTLE);
+        update(LOW_WATERMARK, SAMPLES_TO_RECOVER);
+        assertEquals(Node.Admission.THROTTLED, controller.getAdmission());
+        time += MIN_STATE_DURATION;
+        update(LOW_WATERMARK, 1);
+        assertEquals(Node.Admission.ACCEPTING, controller.getAdmission());
+        assertEquals(List.of(Node.Admission.THROTTLED, Node.Admission.ACCEPTING), changes);
+    }
+
+    @Test
+    void recoverNeedsConsecutiveSamples() {
+        update(CRITICAL_WATERMARK, SAMPLES_TO_THROTTLE);
+        time += MIN_STATE_DURATION;
+        update(LOW_WATERMARK, SAMPLES_TO_RECOVER - 1);
+        update(HIGH_WATERMARK, 1);
+        update(LOW_WATERMARK, SAMPLES_TO_RECOVER - 1);
+        assertEquals(Node.Admission.DRAINING, controller.getAdmission());
+        update(LOW_WATERMARK, 1);
+        assertEquals(Node.Admission.ACCEPTING, controller.getAdmission());
+    }
+
+    private void update(float pressure, int samples) {
+        for (int i = 0; i < samples; i++) {
+            controller.update(pressure);
+        }
+    }
+}
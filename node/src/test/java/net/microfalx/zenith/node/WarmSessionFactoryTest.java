@@ -0,0 +1,43 @@
+package net.microfalx.zenith.node;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.ImmutableCapabilities;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class WarmSessionFactoryTest {
+
+    private static final Map<String, Object> CHROME_OPTIONS = Map.of("args", List.of("--headless=new"),
+            "extensions", List.of());
+
+    @Test
+    void requestsWithDifferentMetadataShareProfile() {
+        Capabilities first = new ImmutableCapabilities("browserName", "chrome", "goog:chromeOptions", CHROME_OPTIONS,
+                "se:name", "first", "zenith:options", Map.of("project", "a"));
+        Capabilities second = new ImmutableCapabilities("browserName", "chrome", "goog:chromeOptions", CHROME_OPTIONS,
+                "se:name", "second", "zenith:options", Map.of("project", "b"));
+        assertEquals(WarmSessionFactory.getProfile(first), WarmSessionFactory.getProfile(second));
+    }
+
+    @Test
+    void warmBrowserMatchesRequest() {
+        Capabilities request = new ImmutableCapabilities("browserName", "chrome", "goog:chromeOptions", CHROME_OPTIONS,
+                "se:name", "test");
+        Map<String, Object> profile = WarmSessionFactory.getProfile(request);
+        // a warm browser is started with the profile, the next request with the same options must match it
+        assertEquals(profile, WarmSessionFactory.getProfile(new ImmutableCapabilities(profile)));
+    }
+
+    @Test
+    void differentOptionsDoNotMatch() {
+        Capabilities headless = new ImmutableCapabilities("browserName", "chrome", "goog:chromeOptions", CHROME_OPTIONS);
+        Capabilities headful = new ImmutableCapabilities("browserName", "chrome", "goog:chromeOptions",
+                Map.of("args", List.of()));
+        assertNotEquals(WarmSessionFactory.getProfile(headless), WarmSessionFactory.getProfile(headful));
+    }
+}